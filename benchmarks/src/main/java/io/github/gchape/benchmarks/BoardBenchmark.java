@@ -0,0 +1,85 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.Move;
+import io.github.gchape.model.entities.MoveGenerator;
+import io.github.gchape.model.entities.Piece;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Board#findPiece(Piece, int, long, boolean, boolean)} for one piece type over positions taken
+ * from random legal games. Each operation is one lookup whose answer is a legal move of that piece.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private static final int POSITIONS = 1024;
+
+    @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+    public Piece piece;
+
+    private Board[] boards;
+    private int[] targets;
+    private boolean[] whites;
+    private boolean[] captures;
+    private int next = 0;
+
+    /**
+     * Walks random games and keeps a copy of every position where the side to move has a legal move of the
+     * piece, with that move's target.
+     */
+    @Setup
+    public void setUp() {
+        final SplittableRandom random = new SplittableRandom(Corpus.DEFAULT_SEED);
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        final List<Board> positions = new ArrayList<>(POSITIONS);
+        final List<Integer> chosen = new ArrayList<>(POSITIONS);
+
+        while (positions.size() < POSITIONS) {
+            final Board board = new Board();
+
+            for (int ply = 0; ply < 200 && positions.size() < POSITIONS; ply++) {
+                final boolean isWhite = board.whiteToMove();
+                final int count = MoveGenerator.generate(board, isWhite, moves);
+                if (count == 0) break;
+
+                for (int i = 0; i < count; i++) {
+                    if (Move.piece(moves[i]) == piece && !Move.is(moves[i], Move.EN_PASSANT)) {
+                        positions.add(board.copy());
+                        chosen.add(moves[i]);
+                        break;
+                    }
+                }
+
+                board.make(moves[random.nextInt(count)], isWhite);
+            }
+        }
+
+        boards = positions.toArray(Board[]::new);
+        targets = new int[POSITIONS];
+        whites = new boolean[POSITIONS];
+        captures = new boolean[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            targets[i] = Move.to(chosen.get(i));
+            whites[i] = boards[i].whiteToMove();
+            captures[i] = Move.is(chosen.get(i), Move.CAPTURE);
+        }
+    }
+
+    @Benchmark
+    public int findPiece() {
+        final int i = next;
+        next = (i + 1) & (POSITIONS - 1);
+
+        return boards[i].findPiece(piece, targets[i], -1L, whites[i], captures[i]);
+    }
+}
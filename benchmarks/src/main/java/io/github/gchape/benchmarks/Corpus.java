@@ -0,0 +1,225 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.Move;
+import io.github.gchape.model.entities.MoveGenerator;
+import io.github.gchape.model.entities.Piece;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A synthetic PGN corpus of random legal games. The same seed always gives the same games, byte for byte, so
+ * benchmarks run without downloading anything and their numbers compare across machines and commits.
+ * <p>
+ * Moves are written in SAN with check and mate marks. Disambiguation is computed against every piece that
+ * reaches the target, pinned or not, so the games replay in both lenient and strict mode.
+ * <pre>
+ * java -cp target/benchmarks.jar io.github.gchape.benchmarks.Corpus games.pgn [GAMES] [SEED]
+ * </pre>
+ */
+public final class Corpus {
+    public static final long DEFAULT_SEED = 20240101L;
+
+    private static final int LINE_LENGTH = 80;
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long RANK_1 = 0xFFL;
+
+    private final List<Entry> games;
+
+    private Corpus(final List<Entry> games) {
+        this.games = games;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: Corpus FILE [GAMES] [SEED]");
+            System.exit(2);
+        }
+
+        final int games = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        final long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        generate(games, seed).write(Path.of(args[0]));
+    }
+
+    /**
+     * Plays {@code games} random legal games. Each lasts between 40 and 200 plies unless it ends in mate or
+     * stalemate first.
+     *
+     * @param games The number of games.
+     * @param seed  The seed of the random moves.
+     * @return The corpus.
+     */
+    public static Corpus generate(final int games, final long seed) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final List<Entry> entries = new ArrayList<>(games);
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        for (int game = 1; game <= games; game++) {
+            final Board board = new Board();
+            final StringBuilder movetext = new StringBuilder(1024);
+            final int length = 40 + random.nextInt(161);
+
+            String result = "1/2-1/2";
+            int plies = 0;
+            int lineStart = 0;
+
+            for (; plies < length; plies++) {
+                final boolean isWhite = board.whiteToMove();
+                final int count = MoveGenerator.generate(board, isWhite, moves);
+                if (count == 0) {
+                    if (board.isInCheck(isWhite)) result = isWhite ? "0-1" : "1-0";
+                    break;
+                }
+
+                final int move = moves[random.nextInt(count)];
+                final String token = (isWhite ? (plies / 2 + 1) + ". " : "") + san(board, move, isWhite);
+
+                if (movetext.length() - lineStart + token.length() + 1 > LINE_LENGTH) {
+                    movetext.append('\n');
+                    lineStart = movetext.length();
+                } else if (!movetext.isEmpty()) {
+                    movetext.append(' ');
+                }
+                movetext.append(token);
+
+                board.make(move, isWhite);
+            }
+            movetext.append(movetext.length() - lineStart + result.length() + 1 > LINE_LENGTH ? '\n' : ' ')
+                    .append(result);
+
+            final Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("Event", "Synthetic " + (game % 50 + 1));
+            headers.put("Site", "?");
+            headers.put("Date", "2024.01." + String.format("%02d", game % 28 + 1));
+            headers.put("Round", Integer.toString(game));
+            headers.put("White", "Player " + (random.nextInt(500) + 1));
+            headers.put("Black", "Player " + (random.nextInt(500) + 1));
+            headers.put("Result", result);
+
+            entries.add(new Entry(headers, movetext.toString(), plies));
+        }
+
+        return new Corpus(entries);
+    }
+
+    /**
+     * Writes the SAN of a legal move, before it is played.
+     */
+    static String san(final Board board, final int move, final boolean isWhite) {
+        final StringBuilder san = new StringBuilder(8);
+        final Piece piece = Move.piece(move);
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+        final boolean isCapture = Move.is(move, Move.CAPTURE);
+
+        if (Move.is(move, Move.CASTLE)) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            if (piece == Piece.PAWN) {
+                if (isCapture) san.append(file(from)).append('x');
+            } else {
+                san.append(letter(piece));
+
+                final long others = board.origins(piece, to, isWhite, isCapture) & ~(1L << from);
+                if (others != 0) {
+                    if ((others & FILE_A << (from & 7)) == 0) {
+                        san.append(file(from));
+                    } else if ((others & RANK_1 << (from & ~7)) == 0) {
+                        san.append(rank(from));
+                    } else {
+                        san.append(file(from)).append(rank(from));
+                    }
+                }
+                if (isCapture) san.append('x');
+            }
+
+            san.append(file(to)).append(rank(to));
+            if (Move.is(move, Move.PROMOTION)) san.append('=').append(letter(Move.promotion(move)));
+        }
+
+        final Board after = board.copy();
+        after.make(move, isWhite);
+        if (after.isInCheck(!isWhite)) {
+            san.append(MoveGenerator.generate(after, !isWhite, new int[MoveGenerator.MAX_MOVES]) == 0 ? '#' : '+');
+        }
+
+        return san.toString();
+    }
+
+    private static char file(final int square) {
+        return (char) ('a' + (square & 7));
+    }
+
+    private static char rank(final int square) {
+        return (char) ('1' + (square >>> 3));
+    }
+
+    private static char letter(final Piece piece) {
+        return switch (piece) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+
+    public List<Entry> games() {
+        return games;
+    }
+
+    /**
+     * The total number of plies over every game.
+     */
+    public long plies() {
+        long plies = 0;
+        for (Entry game : games) plies += game.plies();
+
+        return plies;
+    }
+
+    /**
+     * @return The corpus as PGN text, games separated by a blank line.
+     */
+    public String text() {
+        final StringBuilder text = new StringBuilder(games.size() * 1024);
+
+        for (Entry game : games) {
+            game.headers().forEach((name, value) ->
+                    text.append('[').append(name).append(" \"").append(value).append("\"]\n"));
+            text.append('\n').append(game.movetext()).append("\n\n");
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Writes the corpus as a UTF-8 PGN file.
+     *
+     * @param file The file, created or truncated.
+     * @return The file.
+     */
+    public Path write(final Path file) throws IOException {
+        return Files.writeString(file, text(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One game of the corpus.
+     *
+     * @param headers  The tag pairs, in PGN order.
+     * @param movetext The moves and the result, wrapped at 80 columns.
+     * @param plies    The number of moves.
+     */
+    public record Entry(Map<String, String> headers, String movetext, int plies) {
+    }
+}
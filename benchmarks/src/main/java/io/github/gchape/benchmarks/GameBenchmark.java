@@ -0,0 +1,54 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.controller.logic.Game;
+import io.github.gchape.model.entities.ResultSink;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Game#run()} on one thread: every game of the corpus is decoded and replayed from its
+ * movetext. The {@code plies} counter gives the rate in plies per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameBenchmark {
+    @Param("500")
+    public int games;
+
+    @Param({"false", "true"})
+    public boolean strict;
+
+    private Corpus corpus;
+    private long plies;
+
+    @Setup
+    public void setUp() {
+        corpus = Corpus.generate(games, Corpus.DEFAULT_SEED);
+        plies = corpus.plies();
+    }
+
+    @Benchmark
+    public void run(final Throughput throughput) {
+        for (Corpus.Entry entry : corpus.games()) {
+            new Game(entry.headers(), entry.movetext(), strict, ResultSink.DISCARD).run();
+        }
+
+        throughput.plies += plies;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long plies;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            plies = 0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.controller.logic.Game;
+import io.github.gchape.controller.logic.Parser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast {@link Parser} splits a file into games: headers are parsed and movetext is decoded, but no
+ * game is replayed. The {@code megabytes} counter gives the rate in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+    @Param("2000")
+    public int games;
+
+    private Path file;
+    private double megabytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Corpus.generate(games, Corpus.DEFAULT_SEED).write(Files.createTempFile("corpus", ".pgn"));
+        megabytes = Files.size(file) / 1e6;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void parse(final Throughput throughput, final Blackhole blackhole) {
+        for (Game game : new Parser(file.toFile())) blackhole.consume(game);
+
+        throughput.megabytes += megabytes;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.controller.logic.Parser;
+import io.github.gchape.controller.logic.Pipeline;
+import io.github.gchape.model.entities.ResultSink;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole run as the CLI does it: the file is parsed and every game is replayed on a {@link Pipeline}.
+ * The {@code games} counter gives the rate in games per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param("2000")
+    public int size;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Corpus.generate(size, Corpus.DEFAULT_SEED).write(Files.createTempFile("corpus", ".pgn"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void run(final Throughput throughput) throws InterruptedException {
+        final Parser parser = new Parser(file.toFile());
+        parser.setSink(ResultSink.DISCARD);
+
+        throughput.games += new Pipeline(workers, 64 * workers).run(parser).games();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long games;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            games = 0;
+        }
+    }
+}
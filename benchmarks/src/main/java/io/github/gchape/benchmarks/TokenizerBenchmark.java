@@ -0,0 +1,57 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.controller.logic.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Tokenizer} alone: the movetext of every game of the corpus is walked token by token, with no
+ * file, header or board involved. The {@code bytes} counter gives the rate in bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenizerBenchmark {
+    @Param("2000")
+    public int games;
+
+    private List<String> moves;
+    private long bytes;
+
+    @Setup
+    public void setUp() {
+        moves = Corpus.generate(games, Corpus.DEFAULT_SEED).games().stream().map(Corpus.Entry::movetext).toList();
+        for (String text : moves) bytes += text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public void tokenize(final Throughput throughput, final Blackhole blackhole) {
+        final Tokenizer tokenizer = new Tokenizer();
+        for (String text : moves) {
+            tokenizer.reset(text);
+            for (int token = tokenizer.next(); token != Tokenizer.END; token = tokenizer.next()) {
+                blackhole.consume(tokenizer.end());
+            }
+        }
+
+        throughput.bytes += bytes;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
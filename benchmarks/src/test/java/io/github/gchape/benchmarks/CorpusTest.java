@@ -0,0 +1,44 @@
+package io.github.gchape.benchmarks;
+
+import io.github.gchape.controller.logic.Game;
+import io.github.gchape.model.entities.GameResult;
+import io.github.gchape.model.entities.ResultSink;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusTest {
+    /**
+     * Test that the same seed gives the same text and another seed different text.
+     */
+    @Test
+    void isDeterministic() {
+        assertEquals(Corpus.generate(50, 1).text(), Corpus.generate(50, 1).text());
+        assertNotEquals(Corpus.generate(50, 1).text(), Corpus.generate(50, 2).text());
+    }
+
+    /**
+     * Test that every game replays without error in both lenient and strict mode.
+     */
+    @Test
+    void replaysInBothModes() {
+        Corpus corpus = Corpus.generate(300, Corpus.DEFAULT_SEED);
+
+        for (boolean strict : new boolean[]{false, true}) {
+            List<GameResult> results = new ArrayList<>();
+            ResultSink sink = results::add;
+
+            for (Corpus.Entry entry : corpus.games()) {
+                new Game(entry.headers(), entry.movetext(), strict, sink).run();
+            }
+
+            assertEquals(300, results.size());
+            for (GameResult result : results) {
+                assertTrue(result.valid(), () -> result.errorPly() + ": " + result.errorReason());
+            }
+        }
+    }
+}
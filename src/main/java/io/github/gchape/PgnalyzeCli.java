@@ -0,0 +1,246 @@
+package io.github.gchape;
+
+import io.github.gchape.controller.logic.Deduplicator;
+import io.github.gchape.controller.logic.HeaderFilter;
+import io.github.gchape.controller.logic.GameArchive;
+import io.github.gchape.controller.logic.OpeningTree;
+import io.github.gchape.controller.logic.Parser;
+import io.github.gchape.controller.logic.PgnFiles;
+import io.github.gchape.controller.logic.Pipeline;
+import io.github.gchape.controller.logic.PositionIndex;
+import io.github.gchape.controller.logic.ValidationCache;
+import io.github.gchape.metrics.Metrics;
+import io.github.gchape.model.entities.NdjsonWriter;
+import io.github.gchape.model.entities.ResultSink;
+import io.github.gchape.model.entities.TsvSink;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless entry point: replays every game of one or more PGN files, or of the {@code *.pgn} files found in
+ * directories at any depth, and writes one line per game, as NDJSON (see {@link NdjsonWriter}) or tab-separated
+ * values (see {@link TsvSink}). Nothing here touches JavaFX, so it runs on machines without a display and starts
+ * without loading the toolkit. With {@code --metrics N} a {@link Metrics} snapshot goes to the error stream every
+ * N seconds and the metrics are exposed over JMX. The files share one worker pool, see {@link Pipeline#run(List)}.
+ * Each game is reported with its position in its file as {@code id} and the position of its file among the inputs
+ * as {@code source}, the same in every run; with several files the summary lists them by source. With
+ * {@code --archive FILE} the replayed games are also written to a {@link GameArchive}, and archives given as input
+ * report their stored results without parsing any text. With {@code --cache} each PGN file gets a
+ * {@link ValidationCache} next to it, and games seen by an earlier run are reported without being replayed; the
+ * caches are only saved if the run completes. With {@code --openings FILE} the first {@code --opening-plies} moves
+ * of every valid game build an {@link OpeningTree}, saved to the file at the end, and with
+ * {@code --positions FILE} every position they reach goes to a {@link PositionIndex}. With {@code --dedup report}
+ * games already seen in any input file are counted by a {@link Deduplicator}, and with {@code --dedup skip} they
+ * are also left out. With {@code --filter EXPRESSION} only the games whose tags a {@link HeaderFilter} accepts are
+ * replayed and reported; the others are dropped from the header bytes.
+ * <pre>
+ * java -cp target/classes io.github.gchape.PgnalyzeCli [--strict] [--workers N] [--queue N]
+ *      [--format ndjson|tsv] [--metrics SECONDS] [--glob GLOB] [--output FILE] [--archive FILE] [--cache]
+ *      [--openings FILE] [--opening-plies N] [--positions FILE] [--dedup report|skip] [--filter EXPRESSION]
+ *      FILE|DIRECTORY...
+ * </pre>
+ */
+public final class PgnalyzeCli {
+    private static final String USAGE =
+            "Usage: pgnalyze [--strict] [--workers N] [--queue N] [--format ndjson|tsv] [--metrics SECONDS]"
+                    + " [--glob GLOB] [--output FILE] [--archive FILE] [--cache] [--openings FILE]"
+                    + " [--opening-plies N] [--positions FILE] [--dedup report|skip] [--filter EXPRESSION]"
+                    + " FILE|DIRECTORY...";
+
+    private PgnalyzeCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the CLI.
+     *
+     * @param args The command-line arguments.
+     * @param out  The stream receiving the results when no output file is given.
+     * @param err  The stream receiving usage errors and the final summary, with one line per file when there
+     *             are several.
+     * @return The exit code: 0 on success, 1 if a file cannot be read or written, 2 on a usage error.
+     */
+    static int run(final String[] args, final PrintStream out, final PrintStream err) {
+        boolean strict = false;
+        boolean cached = false;
+        boolean ndjson = true;
+        Path output = null;
+        Path archivePath = null;
+        Path openingsPath = null;
+        Path positionsPath = null;
+        Deduplicator.Mode dedup = null;
+        HeaderFilter filter = null;
+        int openingPlies = OpeningTree.DEFAULT_MAX_PLIES;
+        int workers = Runtime.getRuntime().availableProcessors();
+        Integer queue = null;
+        int metricsSeconds = 0;
+        String glob = PgnFiles.DEFAULT_GLOB;
+        List<Path> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--strict" -> strict = true;
+                    case "--cache" -> cached = true;
+                    case "--workers" -> workers = Integer.parseInt(args[++i]);
+                    case "--queue" -> queue = Integer.parseInt(args[++i]);
+                    case "--metrics" -> metricsSeconds = Integer.parseInt(args[++i]);
+                    case "--glob" -> glob = args[++i];
+                    case "--output" -> output = Path.of(args[++i]);
+                    case "--archive" -> archivePath = Path.of(args[++i]);
+                    case "--openings" -> openingsPath = Path.of(args[++i]);
+                    case "--opening-plies" -> openingPlies = Integer.parseInt(args[++i]);
+                    case "--positions" -> positionsPath = Path.of(args[++i]);
+                    case "--dedup" -> dedup = switch (args[++i]) {
+                        case "report" -> Deduplicator.Mode.REPORT;
+                        case "skip" -> Deduplicator.Mode.SKIP;
+                        default -> throw new IllegalArgumentException("Unknown dedup mode " + args[i]);
+                    };
+                    case "--filter" -> filter = HeaderFilter.parse(args[++i]);
+                    case "--format" -> ndjson = switch (args[++i]) {
+                        case "ndjson" -> true;
+                        case "tsv" -> false;
+                        default -> throw new IllegalArgumentException("Unknown format " + args[i]);
+                    };
+                    default -> {
+                        if (args[i].startsWith("--")) throw new IllegalArgumentException("Unknown option " + args[i]);
+                        paths.add(Path.of(args[i]));
+                    }
+                }
+            }
+
+            if (paths.isEmpty()) throw new IllegalArgumentException("No input file");
+            if (metricsSeconds < 0) throw new IllegalArgumentException("Metrics period must not be negative");
+            if (openingPlies < 1) throw new IllegalArgumentException("Opening plies must be positive");
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        final Pipeline pipeline;
+        try {
+            pipeline = new Pipeline(workers, queue == null ? 64 * workers : queue);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+
+        if (metricsSeconds > 0) Metrics.INSTANCE.registerMBean();
+
+        final Metrics.Reporter reporter = metricsSeconds == 0 ? () -> {
+        } : Metrics.INSTANCE.report(err::println, metricsSeconds * 1000L);
+        try (WritableByteChannel channel = output == null
+                     ? Channels.newChannel(out)
+                     : FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE);
+             GameArchive.Writer archive = archivePath == null ? null : GameArchive.create(archivePath, strict);
+             PositionIndex.Writer index = positionsPath == null ? null : PositionIndex.create(positionsPath);
+             Deduplicator deduplicator = dedup == null ? null
+                     : Deduplicator.create(Path.of(System.getProperty("java.io.tmpdir")), dedup)) {
+            final Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 1 << 16);
+            final ResultSink results = ndjson ? new NdjsonWriter(channel) : new TsvSink(writer);
+
+            final AtomicLong games = new AtomicLong();
+            final AtomicLong invalid = new AtomicLong();
+            final ResultSink sink = result -> {
+                games.incrementAndGet();
+                if (!result.valid()) invalid.incrementAndGet();
+
+                results.accept(result);
+            };
+
+            final OpeningTree tree = openingsPath == null ? null : new OpeningTree(openingPlies);
+            final List<Pipeline.Source> sources = new ArrayList<>();
+            final List<ValidationCache> caches = new ArrayList<>();
+            final List<Path> files = PgnFiles.expand(paths, glob);
+            for (int source = 0; source < files.size(); source++) {
+                final Path file = files.get(source);
+                if (isArchive(file)) {
+                    final GameArchive stored = GameArchive.open(file);
+                    stored.setSink(sink);
+                    stored.setReplay(false);
+                    stored.setArchive(archive);
+                    stored.setOpeningTree(tree);
+                    stored.setPositionIndex(index);
+                    stored.setFilter(filter);
+
+                    sources.add(new Pipeline.Source(file.toString(), stored));
+                    continue;
+                }
+
+                final Parser parser = new Parser(file.toFile());
+                parser.setSource(source);
+                parser.setStrict(strict);
+                parser.setSink(sink);
+                parser.setArchive(archive);
+                parser.setOpeningTree(tree);
+                parser.setPositionIndex(index);
+                parser.setDeduplicator(deduplicator);
+                parser.setFilter(filter);
+                if (cached) {
+                    final ValidationCache cache = ValidationCache.open(ValidationCache.sidecar(file), strict);
+                    parser.setCache(cache);
+                    caches.add(cache);
+                }
+
+                for (var range : parser.split(pipeline.rangesPerFile(files.size()))) {
+                    sources.add(new Pipeline.Source(file.toString(), range));
+                }
+            }
+
+            final Pipeline.Report report;
+            try {
+                report = pipeline.run(sources);
+                results.flush();
+            } catch (InterruptedException | RuntimeException e) {
+                for (ValidationCache cache : caches) cache.abort();
+                throw e;
+            }
+            for (ValidationCache cache : caches) cache.close();
+            if (tree != null) tree.write(openingsPath);
+
+            if (files.size() > 1) {
+                int source = 0;
+                for (var entry : report.sources().entrySet()) {
+                    err.printf("%d %s: %d games, %.0f games/s%n", source++, entry.getKey(), entry.getValue().games(),
+                            entry.getValue().gamesPerSecond());
+                }
+            }
+            err.printf("%d games, %d invalid, %.0f games/s, %d file(s)%n",
+                    games.get(), invalid.get(), report.total().gamesPerSecond(), files.size());
+            if (filter != null) err.printf("%d game(s) filtered out%n", filter.rejected());
+            if (deduplicator != null) {
+                err.printf("%d duplicate(s) of %d games checked%s%n", deduplicator.duplicates(),
+                        deduplicator.games(), dedup == Deduplicator.Mode.SKIP ? ", skipped" : "");
+            }
+            return 0;
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            reporter.close();
+        }
+    }
+
+    private static boolean isArchive(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return GameArchive.isArchive(channel);
+        }
+    }
+}
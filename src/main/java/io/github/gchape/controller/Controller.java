@@ -1,22 +1,34 @@
 package io.github.gchape.controller;
 
 import io.github.gchape.controller.logic.Parser;
+import io.github.gchape.controller.logic.PgnFiles;
+import io.github.gchape.controller.logic.Pipeline;
+import io.github.gchape.metrics.Metrics;
 import io.github.gchape.model.Model;
+import io.github.gchape.model.entities.Printer;
 import io.github.gchape.view.View;
+import javafx.application.Platform;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.control.TreeItem;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Region;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 
 import java.io.File;
-import java.util.Spliterators;
-import java.util.stream.StreamSupport;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public enum Controller {
     INSTANCE;
 
+    private static final long METRICS_PERIOD_MILLIS = 1000;
+
     private final View view;
     private final Model model;
 
@@ -25,49 +37,132 @@ public enum Controller {
         model = Model.INSTANCE;
 
         model.selectedFilesProperty().addListener((__0, __1, newFiles) -> updateFileTree(newFiles));
+        model.filterColumnProperty().addListener(__ -> filterResults());
+        model.filterTextProperty().addListener(__ -> filterResults());
+        model.sortOrderProperty().addListener((__0, __1, order) -> model.getResultRows().sort(order));
         view.setSelectFilesHandlers(this::selectFilesClickAction);
+        view.setSelectFolderHandlers(this::selectFolderClickAction);
         view.setAnalyzeHandlers(this::analyzeClickAction);
+
+        Metrics.INSTANCE.registerMBean();
+        Metrics.INSTANCE.report(line -> Platform.runLater(() -> model.metricsProperty().set(line)),
+                METRICS_PERIOD_MILLIS);
     }
 
     public Region root() {
         return view.getRoot();
     }
 
+    /**
+     * Shows the selected files relative to the directory they all share.
+     */
     private void updateFileTree(final ObservableList<File> newFiles) {
         var fileTree = model.getFileTree();
 
         if (!newFiles.isEmpty()) {
-            fileTree.setValue(newFiles.getFirst().getParent());
-            newFiles.forEach(file -> fileTree.getChildren().add(new TreeItem<>(file.getName())));
+            Path parent = newFiles.getFirst().toPath().toAbsolutePath().getParent();
+            for (File file : newFiles) {
+                while (!file.toPath().toAbsolutePath().startsWith(parent)) parent = parent.getParent();
+            }
+
+            fileTree.setValue(parent.toString());
+            for (int i = 0; i < newFiles.size(); i++) {
+                var name = parent.relativize(newFiles.get(i).toPath().toAbsolutePath()).toString();
+                fileTree.getChildren().add(new TreeItem<>(i + ": " + name));
+            }
         } else {
             fileTree.getChildren().clear();
         }
     }
 
+    /**
+     * Appends the number of games and the throughput of each file to its entry in the file tree.
+     */
+    private void showFileSummaries(final List<File> files, final Map<String, Pipeline.Summary> summaries) {
+        var items = model.getFileTree().getChildren();
+
+        for (int i = 0; i < Math.min(files.size(), items.size()); i++) {
+            var summary = summaries.get(files.get(i).toString());
+            if (summary == null) continue;
+
+            var item = items.get(i);
+            var name = item.getValue().replaceFirst(" \\(\\d+ games, \\d+/s\\)$", "");
+            item.setValue("%s (%d games, %.0f/s)".formatted(name, summary.games(), summary.gamesPerSecond()));
+        }
+    }
+
+    private void select(final List<File> files) {
+        if (files.isEmpty()) return;
+
+        model.getSelectedFiles().clear();
+        model.getSelectedFiles().addAll(files);
+        model.analyzeButtonDisabledProperty().set(false);
+    }
+
+    private void filterResults() {
+        model.getResultRows().filter(model.filterColumnProperty().get(), model.filterTextProperty().get());
+    }
+
     private void selectFilesClickAction(final MouseEvent mouseEvent) {
         var stage = ((Node) mouseEvent.getSource()).getScene().getWindow();
-        var selectedFiles = new FileChooser().showOpenDialog(stage);
+        var chooser = new FileChooser();
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("PGN files", "*.pgn", "*.PGN", "*.pgn.gz", "*.pgn.zst", "*.pgn.bz2"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+
+        var selectedFiles = chooser.showOpenMultipleDialog(stage);
+        if (selectedFiles != null) select(selectedFiles);
+    }
+
+    /**
+     * Selects every PGN file below a directory, at any depth.
+     */
+    private void selectFolderClickAction(final MouseEvent mouseEvent) {
+        var stage = ((Node) mouseEvent.getSource()).getScene().getWindow();
+        var directory = new DirectoryChooser().showDialog(stage);
+        if (directory == null) return;
 
-        if (selectedFiles != null) {
-            model.getSelectedFiles().clear();
-            model.getSelectedFiles().addAll(selectedFiles);
-            model.analyzeButtonDisabledProperty().set(false);
+        try {
+            select(PgnFiles.expand(List.of(directory.toPath()), PgnFiles.DEFAULT_GLOB).stream()
+                    .map(Path::toFile)
+                    .toList());
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
         }
     }
 
     private void analyzeClickAction(final MouseEvent mouseEvent) {
         model.selectFilesButtonDisabledProperty().set(true);
 
-        var file = model.getSelectedFiles().getFirst();
-        var parser = new Parser(file);
-
-        StreamSupport.stream(
-                        Spliterators.spliteratorUnknownSize(
-                                parser.iterator(), 0),
-                        true)
-                .forEach(Thread.ofVirtual()::start);
+        var files = List.copyOf(model.getSelectedFiles());
+        var strict = model.strictValidationProperty().get();
+        var pipeline = Pipeline.fromSystemProperties();
 
         model.analyzeButtonDisabledProperty().set(true);
-        model.selectFilesButtonDisabledProperty().set(false);
+
+        Thread.ofPlatform().name("pgnalyze-parser").daemon().start(() -> {
+            try {
+                var sources = new ArrayList<Pipeline.Source>();
+                for (int i = 0; i < files.size(); i++) {
+                    var parser = new Parser(files.get(i));
+                    parser.setSource(i);
+                    parser.setStrict(strict);
+                    parser.setSink(Printer.INSTANCE);
+
+                    for (var range : parser.split(pipeline.rangesPerFile(files.size()))) {
+                        sources.add(new Pipeline.Source(files.get(i).toString(), range));
+                    }
+                }
+
+                var report = pipeline.run(sources);
+                Platform.runLater(() -> showFileSummaries(files, report.sources()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (UncheckedIOException e) {
+                System.err.println(e.getMessage());
+            } finally {
+                Platform.runLater(() -> model.selectFilesButtonDisabledProperty().set(false));
+            }
+        });
     }
 }
@@ -0,0 +1,407 @@
+package io.github.gchape.controller.logic;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens a PGN file whatever its compression. The format is told by the first bytes of the file, not by its name:
+ * gzip, Zstandard and bzip2 files are decompressed on a thread of their own, which hands chunks of
+ * {@value #CHUNK_SIZE} bytes to the reader through a queue of {@value #CHUNKS}, so decompression overlaps
+ * tokenizing and never runs more than a few megabytes ahead.
+ * <p>
+ * Formats made of independent pieces are decompressed in parallel: gzip files of BGZF blocks (as written by
+ * {@code bgzip}, each member recording its own size) and Zstandard files of several frames (as written by
+ * {@code pzstd} or the seekable format). Their pieces are grouped into segments of about {@value #SEGMENT_SIZE}
+ * compressed bytes and decompressed on {@code pgnalyze.decompressors} threads (one per core by default), then
+ * handed over in file order. A segment is decompressed in memory, so a frame of more than
+ * {@value #MAX_PARALLEL_FRAME} compressed bytes is not put in one: it is decompressed as a stream by the one thread,
+ * in its turn. Other files, including bzip2 and plain multi-member gzip, whose members can only be found by
+ * decompressing, are decompressed by the one thread.
+ */
+final class CompressedInput {
+    static final int CHUNK_SIZE = 1 << 20;
+    static final int CHUNKS = 8;
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    static final int MAX_PARALLEL_FRAME = 16 << 20;
+
+    private CompressedInput() {
+    }
+
+    enum Format {
+        PLAIN, GZIP, ZSTD, BZIP2;
+
+        static Format of(final ByteBuffer head) {
+            if (head.remaining() >= 2 && (head.get(0) & 0xFF) == 0x1F && (head.get(1) & 0xFF) == 0x8B) return GZIP;
+            if (head.remaining() >= 4 && head.order(ByteOrder.LITTLE_ENDIAN).getInt(0) == ZSTD_MAGIC) return ZSTD;
+            if (head.remaining() >= 4 && head.get(0) == 'B' && head.get(1) == 'Z' && head.get(2) == 'h'
+                    && head.get(3) >= '1' && head.get(3) <= '9') return BZIP2;
+
+            return PLAIN;
+        }
+    }
+
+    /**
+     * Opens a file for reading its decompressed bytes.
+     *
+     * @param file The file, compressed or not.
+     * @return The channel of the file itself if it is not compressed, or a channel over its decompressed bytes.
+     * @throws IOException If the file cannot be opened.
+     */
+    static ReadableByteChannel open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            final Format format = format(channel);
+            if (format == Format.PLAIN) return channel;
+
+            final boolean parallel = switch (format) {
+                case GZIP -> bgzfBlockSize(channel, 0) > 0;
+                case ZSTD -> zstdFrameSize(channel, 0) < channel.size();
+                default -> false;
+            };
+
+            return new Pump(file.getFileName().toString(), channel, format, parallel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tells the format of a file from its first bytes.
+     */
+    static Format format(final FileChannel channel) throws IOException {
+        return Format.of(readAt(channel, 0, 4));
+    }
+
+    /**
+     * Decompresses a whole stream of one format.
+     */
+    private static InputStream decompress(final Format format, final InputStream in) throws IOException {
+        return switch (format) {
+            case GZIP -> new GZIPInputStream(in, 1 << 16);
+            case ZSTD -> Zstd.stream(in);
+            case BZIP2 -> Bzip2.stream(in);
+            case PLAIN -> in;
+        };
+    }
+
+    /**
+     * Returns the size of the BGZF block at an offset, read from its {@code BC} extra field, or 0 if the gzip
+     * member there is not a BGZF block.
+     */
+    static long bgzfBlockSize(final FileChannel channel, final long offset) throws IOException {
+        final ByteBuffer header = readAt(channel, offset, 18);
+
+        if (header.remaining() < 18 || (header.get(0) & 0xFF) != 0x1F || (header.get(1) & 0xFF) != 0x8B
+                || (header.get(3) & 0x04) == 0 || header.getShort(10) != 6
+                || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2) {
+            return 0;
+        }
+
+        return (header.getShort(16) & 0xFFFF) + 1;
+    }
+
+    /**
+     * Returns the compressed size of the Zstandard frame at an offset by walking its block headers, without
+     * decompressing anything. Skippable frames, such as the seek table of the seekable format, count as frames.
+     *
+     * @throws IOException If no frame starts at the offset or the frame is cut short.
+     */
+    static long zstdFrameSize(final FileChannel channel, final long offset) throws IOException {
+        final ByteBuffer magic = readAt(channel, offset, 8);
+        if (magic.remaining() < 8) throw new IOException("Truncated Zstandard frame at " + offset);
+
+        if ((magic.getInt(0) & 0xFFFFFFF0) == SKIPPABLE_MAGIC) return 8 + (magic.getInt(4) & 0xFFFFFFFFL);
+        if (magic.getInt(0) != ZSTD_MAGIC) throw new IOException("No Zstandard frame at " + offset);
+
+        final int descriptor = magic.get(4) & 0xFF;
+        final boolean singleSegment = (descriptor & 0x20) != 0;
+        final int contentSizeFlag = descriptor >>> 6;
+
+        long position = offset + 5
+                + (singleSegment ? 0 : 1)
+                + new int[]{0, 1, 2, 4}[descriptor & 3]
+                + (contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag);
+
+        final long size = channel.size();
+        while (true) {
+            final ByteBuffer block = readAt(channel, position, 3);
+            if (block.remaining() < 3) throw new IOException("Truncated Zstandard frame at " + offset);
+
+            final int header = (block.get(0) & 0xFF) | (block.get(1) & 0xFF) << 8 | (block.get(2) & 0xFF) << 16;
+            final int type = header >>> 1 & 3;
+            if (type == 3) throw new IOException("Corrupt Zstandard block at " + position);
+
+            position += 3 + (type == 1 ? 1 : header >>> 3);
+            if (position > size) throw new IOException("Truncated Zstandard frame at " + offset);
+            if ((header & 1) != 0) break;
+        }
+
+        return position + ((descriptor & 0x04) != 0 ? 4 : 0) - offset;
+    }
+
+    private static ByteBuffer readAt(final FileChannel channel, final long offset, final int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * A channel over the chunks a decompressing thread produces.
+     */
+    private static final class Pump implements ReadableByteChannel {
+        private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+        private final FileChannel file;
+        private final Format format;
+        private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(CHUNKS);
+        private final Thread thread;
+
+        private volatile IOException failure;
+        private ByteBuffer current = END;
+        private boolean open = true;
+        private boolean ended = false;
+
+        private Pump(final String name, final FileChannel file, final Format format, final boolean parallel) {
+            this.file = file;
+            this.format = format;
+            this.thread = Thread.ofPlatform()
+                    .name("pgnalyze-decompress-" + name)
+                    .daemon()
+                    .start(() -> pump(parallel));
+        }
+
+        @Override
+        public int read(final ByteBuffer destination) throws IOException {
+            if (!open) throw new ClosedChannelException();
+
+            while (!current.hasRemaining()) {
+                if (ended) return -1;
+
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while decompressing", e);
+                }
+
+                if (current == END) {
+                    ended = true;
+                    if (failure != null) throw failure;
+                    return -1;
+                }
+            }
+
+            final int count = Math.min(destination.remaining(), current.remaining());
+            destination.put(destination.position(), current, current.position(), count);
+            destination.position(destination.position() + count);
+            current.position(current.position() + count);
+
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            thread.interrupt();
+            file.close();
+        }
+
+        private void pump(final boolean parallel) {
+            try {
+                if (parallel) {
+                    pumpSegments();
+                } else {
+                    pumpStream(decompress(format, Channels.newInputStream(file)));
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            }
+
+            try {
+                chunks.put(END);
+            } catch (InterruptedException e) {
+                // Closed by the reader, nobody waits for the end.
+            }
+        }
+
+        private void pumpStream(final InputStream in) throws IOException, InterruptedException {
+            try (in) {
+                while (true) {
+                    final byte[] chunk = in.readNBytes(CHUNK_SIZE);
+                    if (chunk.length == 0) return;
+
+                    chunks.put(ByteBuffer.wrap(chunk));
+                }
+            }
+        }
+
+        /**
+         * Cuts the file into segments of whole blocks or frames, decompresses up to two segments per thread
+         * ahead and hands them over in order. A frame too large for a segment is streamed once the segments
+         * before it are handed over.
+         */
+        private void pumpSegments() throws IOException, InterruptedException {
+            final int threads = Math.max(1,
+                    Integer.getInteger("pgnalyze.decompressors", Runtime.getRuntime().availableProcessors()));
+            final ExecutorService pool = Executors.newFixedThreadPool(threads,
+                    Thread.ofPlatform().name("pgnalyze-decompressor-", 0).daemon().factory());
+            final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+            try {
+                final long size = file.size();
+                long start = 0;
+
+                while (start < size) {
+                    long end = start;
+                    long piece = 0;
+                    while (end < size && end - start < SEGMENT_SIZE) {
+                        piece = pieceSize(end);
+                        if (piece > MAX_PARALLEL_FRAME) break;
+                        end += piece;
+                    }
+
+                    if (end == start) {
+                        while (!pending.isEmpty()) hand(pending.poll());
+                        pumpStream(decompress(format, range(start, piece)));
+                        start += piece;
+                        continue;
+                    }
+
+                    final long from = start;
+                    final int length = (int) (end - start);
+                    pending.add(pool.submit(() -> decompressSegment(from, length)));
+                    start = end;
+
+                    if (pending.size() >= 2 * threads) hand(pending.poll());
+                }
+
+                while (!pending.isEmpty()) hand(pending.poll());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private long pieceSize(final long offset) throws IOException {
+            if (format == Format.ZSTD) return zstdFrameSize(file, offset);
+
+            final long size = bgzfBlockSize(file, offset);
+            if (size == 0) throw new IOException("Not a BGZF block at " + offset);
+
+            return size;
+        }
+
+        /**
+         * A stream over a range of the file, read at absolute positions so the channel is neither moved nor closed.
+         */
+        private InputStream range(final long offset, final long length) {
+            return new InputStream() {
+                private final long end = offset + length;
+                private long position = offset;
+
+                @Override
+                public int read() throws IOException {
+                    final byte[] one = new byte[1];
+
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(final byte[] bytes, final int from, final int count) throws IOException {
+                    if (position >= end) return -1;
+
+                    final int n = file.read(ByteBuffer.wrap(bytes, from, (int) Math.min(count, end - position)),
+                            position);
+                    if (n < 0) throw new IOException("Truncated input at " + position);
+                    position += n;
+
+                    return n;
+                }
+            };
+        }
+
+        private byte[] decompressSegment(final long offset, final int length) throws IOException {
+            final ByteBuffer compressed = readAt(file, offset, length);
+            if (compressed.remaining() < length) throw new IOException("Truncated input at " + offset);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4);
+            try (InputStream in = decompress(format, new ByteArrayInputStream(compressed.array(), 0, length))) {
+                in.transferTo(out);
+            }
+
+            return out.toByteArray();
+        }
+
+        private void hand(final Future<byte[]> segment) throws IOException, InterruptedException {
+            final byte[] bytes;
+            try {
+                bytes = segment.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) throw io;
+                throw new IOException(e.getCause());
+            }
+
+            for (int i = 0; i < bytes.length; i += CHUNK_SIZE) {
+                chunks.put(ByteBuffer.wrap(bytes, i, Math.min(CHUNK_SIZE, bytes.length - i)).slice());
+            }
+        }
+    }
+
+    /**
+     * Keeps the Zstandard library out of {@link CompressedInput}, so it is only loaded for Zstandard files.
+     */
+    private static final class Zstd {
+        private static InputStream stream(final InputStream in) throws IOException {
+            return new ZstdInputStream(in);
+        }
+    }
+
+    /**
+     * Keeps the bzip2 library out of {@link CompressedInput}, so it is only loaded for bzip2 files.
+     */
+    private static final class Bzip2 {
+        private static InputStream stream(final InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in, true);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package io.github.gchape.controller.logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Finds games seen before in a run, for corpora merged from several databases. Pass it to
+ * {@link Parser#setDeduplicator(Deduplicator)}: every game is fingerprinted by its
+ * {@link #fingerprint(Map, ByteBuffer, int, int) normalized} Seven Tag Roster and SAN moves, from the bytes of
+ * the file, before a {@link Game} is built, and a game whose fingerprint is already known is counted as a
+ * duplicate and, in {@link Mode#SKIP}, never yielded. Which copy counts as the original depends on the order
+ * the games are parsed in.
+ * <p>
+ * Fingerprints go to a Bloom filter and an exact set. A game the filter has never seen is new, which is
+ * decided in memory; only games the filter may have seen are looked up in the exact set. The set keeps the
+ * latest fingerprints in an open-addressing table and spills it, sorted, to a file in the spill directory
+ * whenever it fills, so memory stays bounded for any number of games; the spilled files are mapped and
+ * binary-searched. With the defaults the filter takes 20 MB and gives about 1% false positives up to 16M games,
+ * and the table takes 32 MB.
+ * <p>
+ * Workers check games concurrently. The filter's bits are set with a compare-and-set on their word, and the
+ * table's slots likewise, so checks only share a read lock; a spill takes the write lock.
+ */
+public final class Deduplicator implements Closeable {
+    static final int DEFAULT_EXPECTED_GAMES = 1 << 24;
+    static final int DEFAULT_TABLE_ENTRIES = 1 << 21;
+
+    private static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final long SEED = 0x5EED_DED0_95L;
+    private static final int BITS_PER_GAME = 10;
+    private static final int HASHES = 7;
+
+    private final Path directory;
+    private final Mode mode;
+    private final AtomicLongArray bloom;
+    private final long bloomBits;
+    private final AtomicLongArray table;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean containsZero = new AtomicBoolean();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Path> runFiles = new ArrayList<>();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    private volatile LongBuffer[] runs = new LongBuffer[0];
+
+    /**
+     * What a parser does with a duplicate.
+     */
+    public enum Mode {
+        /**
+         * Yields the game as usual; duplicates are only counted.
+         */
+        REPORT,
+        /**
+         * Drops the game before its movetext is tokenized.
+         */
+        SKIP
+    }
+
+    Deduplicator(final Path directory, final Mode mode, final long expectedGames, final int tableEntries) {
+        this.directory = directory;
+        this.mode = mode;
+        this.bloomBits = Math.max(64, expectedGames * BITS_PER_GAME);
+        this.bloom = new AtomicLongArray((int) ((bloomBits + 63) >>> 6));
+        this.table = new AtomicLongArray(Integer.highestOneBit(Math.max(tableEntries, 8) * 2 - 1) << 1);
+    }
+
+    /**
+     * @param directory The directory the exact set spills to, for instance the system's temporary directory.
+     * @param mode      What to do with duplicates.
+     * @return A deduplicator sized for 16M games, which still works past that with more false positives.
+     */
+    public static Deduplicator create(final Path directory, final Mode mode) {
+        return new Deduplicator(directory, mode, DEFAULT_EXPECTED_GAMES, DEFAULT_TABLE_ENTRIES);
+    }
+
+    /**
+     * Fingerprints a game so that copies from different databases match: the values of the Seven Tag Roster,
+     * trimmed, lower-cased (ASCII only) and with runs of whitespace collapsed, and the SAN moves of the main line
+     * without move numbers, annotations, comments or variations. Other tags are ignored, since databases add
+     * their own. The movetext is read once, byte by byte and straight from the buffer, keeping only the words
+     * that start with a letter, which leaves out move numbers, NAGs and the result without decoding it or the
+     * cost of the full {@link Tokenizer}. Tags found by a {@link Parser} are read from their raw bytes too.
+     *
+     * @param headers The tag pairs of the game.
+     * @param buffer  The buffer holding the movetext.
+     * @param start   The offset of the movetext.
+     * @param end     The offset after the movetext.
+     * @return The 64-bit fingerprint.
+     */
+    static long fingerprint(final Map<String, String> headers, final ByteBuffer buffer, final int start,
+                            final int end) {
+        final Hasher hasher = new Hasher();
+
+        for (String tag : ROSTER) {
+            if (headers instanceof Headers raw) {
+                final int i = raw.indexOf(tag);
+                if (i >= 0) addValue(hasher, raw.bytes(), raw.valueStart(i), raw.valueEnd(i));
+            } else {
+                final String value = headers.get(tag);
+                if (value != null) {
+                    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    addValue(hasher, bytes, 0, bytes.length);
+                }
+            }
+            hasher.add('\n');
+        }
+
+        int depth = 0;
+        boolean san = false;
+        for (int i = start; i < end; i++) {
+            final byte c = buffer.get(i);
+
+            if (c == '{') {
+                while (i < end && buffer.get(i) != '}') i++;
+            } else if (c == ';' || c == '%' && (i == start || buffer.get(i - 1) == '\n')) {
+                while (i < end && buffer.get(i) != '\n') i++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (depth > 0 || c == '+' || c == '#' || c == '!' || c == '?') {
+                continue;
+            } else if (c >= 0 && c <= ' ' || c == '.' || c == '$') {
+                if (san) hasher.add(' ');
+                san = false;
+            } else if (san) {
+                hasher.add(c);
+            } else if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+                hasher.add(c);
+                san = true;
+            }
+        }
+
+        return hasher.hash();
+    }
+
+    /**
+     * Fingerprints a game whose movetext is a string, see {@link #fingerprint(Map, ByteBuffer, int, int)}.
+     */
+    static long fingerprint(final Map<String, String> headers, final CharSequence moves) {
+        final byte[] bytes = moves.toString().getBytes(StandardCharsets.UTF_8);
+        return fingerprint(headers, ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static void addValue(final Hasher hasher, final byte[] value, final int start, final int end) {
+        boolean word = false, space = false;
+        for (int i = start; i < end; i++) {
+            final byte c = value[i];
+            if (c == ' ' || c >= '\t' && c <= '\r') {
+                space = word;
+                continue;
+            }
+
+            if (space) hasher.add(' ');
+            hasher.add(c >= 'A' && c <= 'Z' ? c + 32 : c);
+            word = true;
+            space = false;
+        }
+    }
+
+    /**
+     * Hashes bytes as they come, eight at a time with the rounds of {@link XxHash64}, so a game is fingerprinted
+     * without copying its text.
+     */
+    private static final class Hasher {
+        private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+        private long hash = SEED;
+        private long word = 0;
+        private int count = 0;
+
+        private void add(final int b) {
+            word = word << 8 | b & 0xFF;
+            if ((++count & 7) == 0) {
+                hash = Long.rotateLeft(hash ^ Long.rotateLeft(word * PRIME_2, 31) * PRIME_1, 27) * PRIME_1;
+                word = 0;
+            }
+        }
+
+        private long hash() {
+            long h = Long.rotateLeft(hash ^ Long.rotateLeft(word * PRIME_2, 31) * PRIME_1, 27) * PRIME_1 + count;
+            h ^= h >>> 33;
+            h *= PRIME_2;
+            h ^= h >>> 29;
+            h *= PRIME_1;
+
+            return h ^ h >>> 32;
+        }
+    }
+
+    /**
+     * @return What a parser does with a duplicate.
+     */
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * @return The number of games checked.
+     */
+    public long games() {
+        return games.sum();
+    }
+
+    /**
+     * @return The number of games found to be duplicates.
+     */
+    public long duplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Records a fingerprint. Of several threads recording the same fingerprint at once, exactly one finds it new.
+     *
+     * @param fingerprint The fingerprint of a game.
+     * @return A boolean indicating whether the fingerprint was seen before.
+     * @throws UncheckedIOException If the exact set cannot be spilled.
+     */
+    boolean isDuplicate(final long fingerprint) {
+        games.increment();
+
+        final int spilled = runs.length;
+        final boolean seen = probe(fingerprint);
+
+        final boolean duplicate;
+        lock.readLock().lock();
+        try {
+            // A game the filter has never seen can only be in the runs spilled since, by a thread adding it
+            // at the same time.
+            duplicate = inRuns(fingerprint, seen ? 0 : spilled) || !insert(fingerprint);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (duplicate) {
+            duplicates.increment();
+        } else if (2 * size.get() > table.length()) {
+            spill();
+        }
+
+        return duplicate;
+    }
+
+    /**
+     * Sets the filter's bits for a fingerprint.
+     *
+     * @return A boolean indicating whether every bit was already set.
+     */
+    private boolean probe(final long fingerprint) {
+        final long h2 = fingerprint >>> 32 | fingerprint << 32 | 1;
+        boolean seen = true;
+        for (int i = 0; i < HASHES; i++) {
+            final long bit = Long.remainderUnsigned(fingerprint + i * h2, bloomBits);
+            final int index = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+
+            for (long word = bloom.get(index); (word & mask) == 0; word = bloom.get(index)) {
+                if (bloom.compareAndSet(index, word, word | mask)) {
+                    seen = false;
+                    break;
+                }
+            }
+        }
+
+        return seen;
+    }
+
+    private boolean inRuns(final long fingerprint, final int from) {
+        final LongBuffer[] runs = this.runs;
+        for (int r = from; r < runs.length; r++) {
+            final LongBuffer run = runs[r];
+            int low = 0, high = run.limit() - 1;
+            while (low <= high) {
+                final int middle = low + high >>> 1;
+                final long value = run.get(middle);
+
+                if (value < fingerprint) {
+                    low = middle + 1;
+                } else if (value > fingerprint) {
+                    high = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a fingerprint to the table, unless it is there already.
+     *
+     * @return A boolean indicating whether the fingerprint was added.
+     */
+    private boolean insert(final long fingerprint) {
+        if (fingerprint == 0) return !containsZero.getAndSet(true);
+
+        final int mask = table.length() - 1;
+        for (int slot = (int) fingerprint & mask; ; ) {
+            final long value = table.get(slot);
+            if (value == fingerprint) return false;
+
+            if (value != 0) {
+                slot = slot + 1 & mask;
+            } else if (table.compareAndSet(slot, 0, fingerprint)) {
+                size.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Writes the table, sorted, to a new run file, maps it and empties the table, unless another thread just
+     * did.
+     */
+    private void spill() {
+        lock.writeLock().lock();
+        try {
+            if (2 * size.get() <= table.length()) return;
+
+            final long[] sorted = new long[size.get()];
+            int n = 0;
+            for (int slot = 0; slot < table.length(); slot++) {
+                final long fingerprint = table.get(slot);
+                if (fingerprint != 0) sorted[n++] = fingerprint;
+            }
+            Arrays.sort(sorted);
+
+            final Path file = Files.createTempFile(directory, "dedup", ".run");
+            runFiles.add(file);
+
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final ByteBuffer bytes = ByteBuffer.allocate(sorted.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                bytes.asLongBuffer().put(sorted);
+                while (bytes.hasRemaining()) channel.write(bytes);
+
+                final LongBuffer[] grown = Arrays.copyOf(runs, runs.length + 1);
+                grown[runs.length] = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes.capacity())
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                runs = grown;
+            }
+
+            for (int slot = 0; slot < table.length(); slot++) table.set(slot, 0);
+            size.set(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the spilled files, or marks them for deletion on exit where a mapped file cannot be deleted. The
+     * deduplicator must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            runs = new LongBuffer[0];
+            for (Path file : runFiles) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+            runFiles.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
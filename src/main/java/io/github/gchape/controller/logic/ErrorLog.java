@@ -0,0 +1,211 @@
+package io.github.gchape.controller.logic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes game failures to a file without making the workers wait on it. Workers drop each failure into a
+ * bounded ring buffer with a single compare-and-set and return; one background thread drains the buffer and
+ * writes one tab-separated line per failure: source, game id, ply, SAN token, exception type and message.
+ * <p>
+ * When the writer falls behind and the buffer is full, new failures are dropped rather than blocking a worker;
+ * {@link #dropped()} counts them and the count is written as the last line when the log is closed.
+ * <p>
+ * The log shared by all games, see {@link #shared()}, writes to the {@code pgnalyze.errors} system property
+ * ({@code src/main/resources/errors.bad} by default) and holds {@code pgnalyze.errors.capacity} failures
+ * (8192 by default). It is drained and closed when the JVM exits.
+ */
+public final class ErrorLog implements AutoCloseable {
+    private static final long IDLE_NANOS = 1_000_000;
+    /**
+     * Set on {@link #tail} by the writer once closed and drained, so that no slot can be claimed after the last
+     * drain: a claim racing the close either lands before the seal, and is written, or fails and is dropped.
+     */
+    private static final long SEALED = 1L << 62;
+
+    private final AtomicReferenceArray<Failure> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    /**
+     * The number of failures taken off the buffer. Only the writer thread updates it.
+     */
+    private volatile long head = 0;
+    /**
+     * The value of {@link #head} when the file was last flushed.
+     */
+    private volatile long flushed = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param path     The file receiving the failures. It is created or truncated by the writer thread; if it
+     *                 cannot be opened, the failures are only counted.
+     * @param capacity The number of failures the buffer holds, rounded up to a power of two.
+     */
+    public ErrorLog(final Path path, final int capacity) {
+        this(() -> Files.newBufferedWriter(path, StandardCharsets.UTF_8), capacity);
+    }
+
+    ErrorLog(final Callable<Writer> opener, final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.writer = Thread.ofPlatform()
+                .name("pgnalyze-error-log")
+                .daemon()
+                .start(() -> drain(opener));
+    }
+
+    /**
+     * Returns the log shared by all games, creating it on first use.
+     */
+    public static ErrorLog shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Queues a failure without blocking.
+     *
+     * @param failure The failure to write.
+     * @return A boolean indicating whether the failure was queued; false if the buffer was full or the log is
+     * closed, in which case it is counted as dropped. A queued failure is always written, even if the log is
+     * closed right after.
+     */
+    public boolean log(final Failure failure) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (closed || claimed - head > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+
+        slots.set((int) claimed & mask, failure);
+        return true;
+    }
+
+    /**
+     * The number of failures dropped because the buffer was full or the log closed.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until every failure queued before this call has been written and flushed to the file.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        final long target = tail.get();
+
+        while (flushed < target && writer.isAlive()) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    /**
+     * Stops accepting failures, writes the ones still queued and closes the file.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join();
+    }
+
+    private void drain(final Callable<Writer> opener) {
+        Writer out;
+        try {
+            out = opener.call();
+        } catch (Exception e) {
+            // Outside the source tree, e.g. on a server running the CLI, failures are only counted.
+            System.err.println("Error log disabled: " + e.getMessage());
+            out = Writer.nullWriter();
+        }
+
+        try (Writer file = out) {
+            while (true) {
+                final int index = (int) head & mask;
+                final Failure failure = slots.get(index);
+
+                if (failure == null) {
+                    if (flushed != head) {
+                        file.flush();
+                        flushed = head;
+                    }
+                    if (closed && tail.compareAndSet(head, head | SEALED)) break;
+
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+
+                slots.set(index, null);
+                head++;
+                failure.write(file);
+            }
+
+            if (dropped() > 0) file.write("Dropped " + dropped() + " failures\n");
+        } catch (IOException e) {
+            System.err.println("Error log failed: " + e.getMessage());
+        } finally {
+            flushed = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * One failed game.
+     *
+     * @param source  The source of the game, the position of its file among the inputs.
+     * @param game    The id of the game, its position in its source.
+     * @param ply     The 1-based ply of the move that failed.
+     * @param san     The SAN token of that move, or null if the game failed before its first move.
+     * @param type    The simple name of the exception thrown.
+     * @param message The message of the exception, possibly null.
+     */
+    public record Failure(int source, int game, int ply, String san, String type, String message) {
+        private void write(final Writer out) throws IOException {
+            out.write(source + "\t" + game + "\t" + ply + "\t" + clean(san) + "\t" + type + "\t" + clean(message)
+                    + "\n");
+        }
+
+        private static String clean(final String value) {
+            return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    /**
+     * Holds the shared log, so its thread and file only exist once a game fails.
+     */
+    private static final class Shared {
+        private static final ErrorLog INSTANCE = new ErrorLog(
+                Path.of(System.getProperty("pgnalyze.errors", "src/main/resources/errors.bad")),
+                Integer.getInteger("pgnalyze.errors.capacity", 8192));
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    INSTANCE.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "pgnalyze-error-log-close"));
+        }
+    }
+}
@@ -1,131 +1,264 @@
 package io.github.gchape.controller.logic;
 
+import io.github.gchape.exceptions.AmbiguousMoveException;
+import io.github.gchape.exceptions.IllegalMoveException;
 import io.github.gchape.exceptions.InvalidCastlingException;
+import io.github.gchape.exceptions.InvalidMoveException;
 import io.github.gchape.exceptions.InvalidPromotionException;
 import io.github.gchape.exceptions.NoPieceFoundException;
+import io.github.gchape.metrics.Metrics;
 import io.github.gchape.model.entities.Board;
-import io.github.gchape.model.entities.Piece;
-import io.github.gchape.model.entities.Printer;
-import io.github.gchape.model.entities.Square;
+import io.github.gchape.model.entities.GameResult;
+import io.github.gchape.model.entities.ResultSink;
 
-import java.io.IOException;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.logging.FileHandler;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 public class Game implements Runnable {
-    private final static Logger logger;
-    private final static AtomicInteger id;
-
-    static {
-        id = new AtomicInteger(0);
-
-        logger = Logger.getLogger("io.gchape.github");
-        logger.setUseParentHandlers(false);
-        try {
-            logger.addHandler(new FileHandler("src/main/resources/errors.bad"));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private final Board board;
     private final String moves;
     private final Map<String, String> headers;
-    private final Map<String, Boolean> castlingCheck;
-
-    private Square lastDoubleStepPawnSquare = null;
+    private final boolean strict;
+    private final ResultSink sink;
+
+    private final ByteBuffer packed;
+    private final int packedPlies;
+    private final ErrorLog.Failure recorded;
+    private final boolean replay;
+
+    private int source = 0;
+    private int id = 0;
+    private GameArchive.Writer archive = null;
+    private ValidationCache cache = null;
+    private long hash;
+    private OpeningTree tree = null;
+    private PositionIndex.Writer index = null;
+    private int[] played = null;
+    private long[] keys = null;
+    private int playedCount = 0;
 
     public Game(final Map<String, String> headers, final String moves) {
+        this(headers, moves, false, ResultSink.DISCARD);
+    }
+
+    /**
+     * @param headers The tag pairs of the game.
+     * @param moves   The raw movetext.
+     * @param strict  A boolean indicating whether every move must be fully legal: in strict mode a move that
+     *                leaves the king in check, castles out of, through or into check, or matches several pieces
+     *                makes the game invalid.
+     * @param sink    The sink receiving the result once the game has been replayed.
+     */
+    public Game(final Map<String, String> headers, final String moves, final boolean strict,
+                final ResultSink sink) {
         this.moves = moves;
         this.headers = headers;
+        this.strict = strict;
+        this.sink = sink;
+
+        this.packed = null;
+        this.packedPlies = 0;
+        this.recorded = null;
+        this.replay = true;
 
         this.board = new Board();
-        castlingCheck = new HashMap<>(6);
     }
 
+    /**
+     * A game read back from a {@link GameArchive} or found in a {@link ValidationCache}: its moves are already
+     * decoded and were validated when the archive was written, so they are applied as they are. A cached game
+     * has no moves and is not replayed.
+     *
+     * @param headers The tag pairs of the game.
+     * @param packed  The packed moves, three little-endian bytes each.
+     * @param plies   The number of moves.
+     * @param failure The failure that ended the game when it was archived, or null if it is valid.
+     * @param replay  A boolean indicating whether the moves are applied to the board; if not, the stored result
+     *                is reported as it is.
+     * @param sink    The sink receiving the result once the game has been replayed.
+     */
+    Game(final Map<String, String> headers, final ByteBuffer packed, final int plies,
+         final ErrorLog.Failure failure, final boolean replay, final ResultSink sink) {
+        this.moves = null;
+        this.headers = headers;
+        this.strict = false;
+        this.sink = sink;
+
+        this.packed = packed;
+        this.packedPlies = plies;
+        this.recorded = failure;
+        this.replay = replay;
+
+        this.board = new Board();
+    }
+
+    /**
+     * @param source The source the game was read from, reported with its result.
+     * @param id     The position of the game in its source, from 0, in file order.
+     */
+    void setId(final int source, final int id) {
+        this.source = source;
+        this.id = id;
+    }
+
+    /**
+     * @param archive The archive the game is appended to once replayed, or null.
+     */
+    void setArchive(final GameArchive.Writer archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @param cache The cache the result is recorded in once known, or null.
+     * @param hash  The hash of the game's bytes, its key in the cache.
+     */
+    void setCache(final ValidationCache cache, final long hash) {
+        this.cache = cache;
+        this.hash = hash;
+    }
+
+    /**
+     * @param tree The opening tree the first moves are added to if the game is valid, or null.
+     */
+    void setOpeningTree(final OpeningTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * @param index The position index every position is added to if the game is valid, or null.
+     */
+    void setPositionIndex(final PositionIndex.Writer index) {
+        this.index = index;
+    }
+
+    /**
+     * Replays the movetext and reports the result to the sink. A move that fails ends the game; the failure is
+     * also queued on the {@link ErrorLog#shared() shared error log}, which never blocks the calling worker.
+     * The replay and the sink are timed for {@link Metrics}. When the game goes to an archive, its moves and
+     * failure are appended to it before the result is reported, and when it has a cache, its result is recorded
+     * in it. A valid game with an opening tree adds its first moves, each with the key of the position it was
+     * played from, and one with a position index adds every position it reached under its source and id.
+     */
     @Override
     public void run() {
-        Printer.INSTANCE.appendHead(headers);
-
-        boolean isValid = true;
+        final long started = System.nanoTime();
         boolean isWhite = false;
+        int ply = 0;
+        String san = null;
+        RuntimeException error = null;
+        if (archive != null || tree != null || index != null) played = new int[64];
+        if (tree != null || index != null) keys = new long[tree != null ? tree.maxPlies() : 64];
         try {
-            for (var move : moves.split(" ")) {
-                if (move.matches("^(1-0|0-1|1/2-1/2|\\*)$")) return;
+            if (packed != null) {
+                for (int i = 0; i < packedPlies && (replay || played != null); i++) {
+                    isWhite = !isWhite;
+                    final int move = packed.get(i * 3) & 0xFF | (packed.get(i * 3 + 1) & 0xFF) << 8
+                            | (packed.get(i * 3 + 2) & 0xFF) << 16;
+                    final long key = board.key();
+                    if (replay) board.make(move, isWhite);
+                    record(key, move);
+                }
+                ply = recorded != null ? recorded.ply() : packedPlies;
+                return;
+            }
+
+            var tokenizer = new Tokenizer().reset(moves);
+
+            for (int token = tokenizer.next(); token != Tokenizer.END; token = tokenizer.next()) {
+                if (token == Tokenizer.RESULT) return;
+                if (token != Tokenizer.SAN) continue;
 
                 isWhite = !isWhite;
-                if (move.equals("O-O")) {
-                    tryCastle(isWhite, true);
-                } else if (move.equals("O-O-O")) {
-                    tryCastle(isWhite, false);
-                } else if (move.contains("=") && move.contains("x")) {
-                    tryCaptureAndPromotion(isWhite, move);
-                } else if (move.contains("x")) {
-                    tryCapture(isWhite, move);
-                } else if (move.contains("=")) {
-                    tryPromotion(isWhite, move);
-                } else tryMove(isWhite, move);
+                ply++;
+                try {
+                    play(isWhite, moves, tokenizer.start(), tokenizer.end());
+                } catch (RuntimeException e) {
+                    san = moves.substring(tokenizer.start(), tokenizer.end());
+                    throw e;
+                }
             }
         } catch (RuntimeException e) {
-            isValid = false;
-
-            System.err.println(e.getMessage());
-            logger.log(Level.WARNING, () -> String.valueOf(e));
+            error = e;
         } finally {
-            Printer.INSTANCE.appendBody(id.incrementAndGet(), isValid);
+            final ErrorLog.Failure failure = recorded != null ? recorded : error == null ? null
+                    : new ErrorLog.Failure(0, 0, ply, san, error.getClass().getSimpleName(), error.getMessage());
+
+            final long replayed = System.nanoTime();
+            if (replay) {
+                Metrics.INSTANCE.replayed(ply, failure == null, replayed - started);
+            } else {
+                Metrics.INSTANCE.skipped();
+            }
+
+            if (keys != null) {
+                if (failure == null && tree != null) {
+                    tree.add(keys, played, Math.min(playedCount, tree.maxPlies()), headers.get("Result"));
+                }
+                if (failure == null && index != null) index.add(source, id, keys, playedCount, board.key());
+                keys = null;
+            }
+            if (archive != null) {
+                archive.append(source, id, headers, played, playedCount, failure);
+                played = null;
+            }
+            if (cache != null) cache.put(hash, failure);
+
+            if (failure == null) {
+                sink.accept(new GameResult(source, id, true, headers, 0, null));
+            } else {
+                final String reason = failure.message() != null ? failure.message() : failure.type();
+
+                ErrorLog.shared().log(new ErrorLog.Failure(source, id, ply, failure.san(), failure.type(),
+                        failure.message()));
+                sink.accept(new GameResult(source, id, false, headers, ply, reason));
+            }
+            Metrics.INSTANCE.delivered(System.nanoTime() - replayed);
         }
     }
 
     /**
-     * Attempts to capture a piece during a move. If the move is a capture, it removes the captured piece
-     * from the opponent's set of pieces and updates the current player's pieces.
+     * Decodes a SAN token into a packed move and applies it to the board. Neither step allocates, so replaying
+     * a game costs no garbage per move.
      *
      * @param isWhite A boolean indicating whether the current player is white.
-     * @param move    A string representing the move (e.g., "Nxe5").
+     * @param san     The text holding the SAN token.
+     * @param start   The offset of the first character of the token.
+     * @param end     The offset just past the last character of the token.
+     * @throws InvalidMoveException      If the token is not valid SAN.
+     * @throws InvalidCastlingException  If castling is not allowed based on the current game state.
+     * @throws InvalidPromotionException If the promotion is not valid based on the current position.
+     * @throws NoPieceFoundException     If no piece can make the move.
+     * @throws IllegalMoveException      In strict mode, if the move is not legal.
+     * @throws AmbiguousMoveException    In strict mode, if several pieces can make the move.
      */
-    private void tryCapture(final boolean isWhite, final String move) {
-        var currentPieces = isWhite ? board.getWhitePieces() : board.getBlackPieces();
-        var opponentPieces = isWhite ? board.getBlackPieces() : board.getWhitePieces();
-        var targetSquare = new Square(move.substring(move.indexOf('x') + 1));
-        var disambiguation = move.indexOf('x') - 1 == 0 ? null : move.substring(1, move.indexOf('x'));
-
-        var piece = Piece.of(move.charAt(0));
-        if (piece == Piece.PAWN) {
-            Square startSquare = board.findPiece(Piece.PAWN, targetSquare, move.substring(0, 1), isWhite, true);
+    private void play(final boolean isWhite, final CharSequence san, final int start, final int end) {
+        final int move = SanDecoder.decode(board, san, start, end, isWhite, strict);
+        final long key = board.key();
+        board.make(move, isWhite);
+        record(key, move);
+    }
 
-            if (isEnPassant(startSquare, targetSquare, isWhite)) {
-                currentPieces.get(Piece.PAWN).remove(startSquare.toChessNotation());
-                currentPieces.get(Piece.PAWN).add(targetSquare.toChessNotation());
+    private void record(final long key, final int move) {
+        if (played == null) return;
 
-                opponentPieces.get(Piece.PAWN).remove(lastDoubleStepPawnSquare.toChessNotation());
-            } else {
-                capturePiece(currentPieces, opponentPieces, startSquare, targetSquare, Piece.PAWN);
-            }
-        } else {
-            var startSquare = board.findPiece(piece, targetSquare, disambiguation, isWhite, true);
-            capturePiece(currentPieces, opponentPieces, startSquare, targetSquare, piece);
-
-            checkIfCastlePieceMoved(startSquare);
+        if (keys != null) {
+            if (playedCount == keys.length && index != null) keys = Arrays.copyOf(keys, playedCount * 2);
+            if (playedCount < keys.length) keys[playedCount] = key;
         }
+
+        if (playedCount == played.length) played = Arrays.copyOf(played, playedCount * 2);
+        played[playedCount++] = move;
     }
 
     /**
-     * Checks if a piece involved in a move is part of castling. If the piece is a king or rook,
-     * it marks it as having moved to prevent castling in future moves.
+     * Attempts to capture a piece during a move, including "en passant" captures.
      *
-     * @param startSquare The starting square of the piece that is moving.
+     * @param isWhite A boolean indicating whether the current player is white.
+     * @param move    A string representing the move (e.g., "Nxe5").
      */
-    private void checkIfCastlePieceMoved(final Square startSquare) {
-        var squares = Set.of("a1", "e1", "h1", "a8", "e8", "h8");
-
-        if (squares.contains(startSquare.toChessNotation())) {
-            castlingCheck.put(startSquare.toChessNotation(), true);
-        }
+    private void tryCapture(final boolean isWhite, final String move) {
+        play(isWhite, move, 0, move.length());
     }
 
     /**
@@ -135,86 +268,17 @@ public class Game implements Runnable {
      * @param move    A string representing the move (e.g., "Nf3").
      */
     private void tryMove(final boolean isWhite, final String move) {
-        var piece = Piece.of(move.charAt(0));
-        var currentPieces = isWhite ? board.getWhitePieces() : board.getBlackPieces();
-
-        var targetSquare = new Square(move.substring(move.length() - 2));
-        var disambiguation = move.length() > 3 ? move.substring(1, move.length() - 2) : null;
-        var startSquare = board.findPiece(piece, targetSquare, disambiguation, isWhite, false);
-
-        currentPieces.get(piece).remove(startSquare.toChessNotation());
-        currentPieces.get(piece).add(targetSquare.toChessNotation());
-
-        checkIfCastlePieceMoved(startSquare);
-        lastDoubleStepPawnSquare = Math.abs(targetSquare.y() - startSquare.y()) == 2 ? targetSquare : null;
+        play(isWhite, move, 0, move.length());
     }
 
     /**
      * Attempts to perform both a capture and a promotion in a single move (e.g., "bxa1=Q").
-     * It first performs the capture, then promotes the pawn to the specified piece.
      *
      * @param isWhite A boolean indicating whether the current player is white.
      * @param move    A string representing the move (e.g., "bxa1=Q").
      */
     private void tryCaptureAndPromotion(final boolean isWhite, final String move) {
-        final int i = move.indexOf('x'); // bxa1=Q
-        final int j = move.indexOf('=');
-
-        tryCapture(isWhite, move.substring(0, j));
-
-        var pawnSquare = move.substring(i + 1, j);
-        var currentPieces = isWhite ? board.getWhitePieces() : board.getBlackPieces();
-
-        currentPieces.get(Piece.PAWN).remove(pawnSquare);
-        currentPieces.get(Piece.of(move.charAt(j + 1))).add(pawnSquare);
-    }
-
-    /**
-     * Captures a piece by removing it from the target player's set of pieces and adding the captured
-     * piece's position to the attacking player's set of pieces.
-     *
-     * @param startPieces  The set of pieces of the attacking player.
-     * @param targetPieces The set of pieces of the defending player.
-     * @param startSquare  The starting square of the piece being captured.
-     * @param targetSquare The target square of the capture.
-     * @param piece        The type of piece performing the capture.
-     */
-    private void capturePiece(final Map<Piece, Set<String>> startPieces, final Map<Piece, Set<String>> targetPieces,
-                              final Square startSquare, final Square targetSquare, final Piece piece) {
-        startPieces.get(piece).remove(startSquare.toChessNotation());
-        startPieces.get(piece).add(targetSquare.toChessNotation());
-
-        targetPieces.values().forEach(squares -> squares.remove(targetSquare.toChessNotation()));
-    }
-
-    /**
-     * Checks if a pawn move qualifies as an "en passant" capture, where a pawn captures an opponent's
-     * pawn that has just moved two squares forward from its starting position.
-     *
-     * @param startSquare  The starting square of the pawn making the move.
-     * @param targetSquare The target square where the pawn is moving.
-     * @param isWhite      A boolean indicating whether the current player is white.
-     * @return True if the move is an en passant capture, false otherwise.
-     */
-    private boolean isEnPassant(final Square startSquare, final Square targetSquare, final boolean isWhite) {
-        final int dx = targetSquare.x() - startSquare.x();
-        final int dy = targetSquare.y() - startSquare.y();
-
-        if (Math.abs(dx) == 1 && dy == (isWhite ? 1 : -1)) {
-            final var capturedSquare = new Square(targetSquare.x(), startSquare.y());
-
-            if (!capturedSquare.equals(lastDoubleStepPawnSquare)) {
-                return false;
-            }
-
-            if (isWhite) {
-                return board.getBlackPieces().get(Piece.PAWN).contains(capturedSquare.toChessNotation());
-            } else {
-                return board.getWhitePieces().get(Piece.PAWN).contains(capturedSquare.toChessNotation());
-            }
-        }
-
-        return false;
+        play(isWhite, move, 0, move.length());
     }
 
     /**
@@ -225,37 +289,8 @@ public class Game implements Runnable {
      * @throws InvalidCastlingException If castling is not allowed based on the current game state.
      */
     public void tryCastle(final boolean isWhite, final boolean kingSide) {
-        var side = isWhite ? "White" : "Black";
-        var direction = kingSide ? "KingSide" : "QueenSide";
-
-        var squares = getCastleType(side, direction);
-
-        var currentPieces = isWhite ? board.getWhitePieces() : board.getBlackPieces();
-        currentPieces.get(Piece.KING).remove(squares[0]);
-        currentPieces.get(Piece.KING).add(squares[1]);
-        currentPieces.get(Piece.ROOK).remove(squares[2]);
-        currentPieces.get(Piece.ROOK).add(squares[3]);
-    }
-
-    /**
-     * Retrieves the appropriate squares for castling based on the player's color and castling side (king-side or queen-side).
-     *
-     * @param side      The side (either "White" or "Black").
-     * @param direction The direction (either "KingSide" or "QueenSide").
-     * @return An array of strings representing the squares for castling.
-     * @throws InvalidCastlingException If castling is not allowed for the given side and direction.
-     */
-    private String[] getCastleType(final String side, final String direction) {
-        var castlingSquares = Map.of("WhiteKingSide", new String[]{"e1", "g1", "h1", "f1"},
-                "WhiteQueenSide", new String[]{"e1", "c1", "a1", "d1"},
-                "BlackKingSide", new String[]{"e8", "g8", "h8", "f8"},
-                "BlackQueenSide", new String[]{"e8", "c8", "a8", "d8"});
-
-        String[] squares = castlingSquares.get(side + direction);
-        if (castlingCheck.containsKey(squares[0]) || castlingCheck.containsKey(squares[2]))
-            throw new InvalidCastlingException(side, direction);
-
-        return squares;
+        final String move = kingSide ? "O-O" : "O-O-O";
+        play(isWhite, move, 0, move.length());
     }
 
     /**
@@ -267,18 +302,6 @@ public class Game implements Runnable {
      * @throws NoPieceFoundException     If the pawn to promote cannot be found.
      */
     public void tryPromotion(final boolean isWhite, final String move) {
-        var square = move.substring(0, 2);
-        var piece = Piece.of(move.charAt(3));
-        var currentPieces = isWhite ? board.getWhitePieces() : board.getBlackPieces();
-
-        var pawnPosition = isWhite ? square.charAt(0) + "7" : square.charAt(0) + "2";
-        if (isWhite && square.charAt(1) != '8' || !isWhite && square.charAt(1) != '1') {
-            throw new InvalidPromotionException(square);
-        } else if (!currentPieces.get(Piece.PAWN).contains(pawnPosition)) {
-            throw new NoPieceFoundException(Piece.PAWN, pawnPosition);
-        }
-
-        currentPieces.get(piece).add(square);
-        currentPieces.get(Piece.PAWN).remove(pawnPosition);
+        play(isWhite, move, 0, move.length());
     }
 }
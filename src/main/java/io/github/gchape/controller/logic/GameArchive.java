@@ -0,0 +1,510 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.ResultSink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary archive of replayed games, read back without parsing any text. Each game is stored as its source and
+ * id, its headers, its packed moves (see {@link io.github.gchape.model.entities.Move}) and, for an invalid game,
+ * the failure that ended it, so reloading an archive replays exactly the games and results of the run that wrote
+ * it, under the same source and id.
+ * <pre>
+ * header      "PGNA", version, flags                       (12 bytes)
+ * games       per game, in the order they finished:
+ *               varint source and id
+ *               varint header count, then varint name id and value id per header
+ *               varint ply count, then 3 bytes per move
+ *               varint 0 if valid, else failing ply, then san, type and message ids, each + 1 (0 for null)
+ * index       the offset of every game, in file order      (8 bytes per game)
+ * dictionary  varint length and UTF-8 bytes per string
+ * trailer     index offset, dictionary offset, game count, string count, "PGNA"   (28 bytes)
+ * </pre>
+ * Header names and values share one dictionary, so a player or event appearing in a thousand games is stored
+ * once and every game refers to it by a varint id. All numbers are little-endian.
+ * <p>
+ * Workers finish games out of order, so the records are stored as they come but the index lists them by source
+ * and position in the source: game n of the archive is the nth archived game of the input files, whatever the
+ * number of workers that wrote it. The position of a game in the archive is not its id: a run that filtered or
+ * dropped games, or read several files, leaves gaps and restarts the ids at every source, so the stored source and
+ * id are what a reloaded game is reported under, and what a {@link PositionIndex} written from it refers to.
+ * <p>
+ * {@link #open(Path)} memory-maps the file. The index gives any game in constant time, {@link #game(int)}, and
+ * the archive iterates over its games in index order, so it can be handed to a {@link Pipeline} like a
+ * {@link Parser}.
+ * Games from an archive are not validated again: their moves are applied to the board as stored, or not at all,
+ * see {@link #setReplay(boolean)}.
+ */
+public final class GameArchive implements Iterable<Game> {
+    static final int MAGIC = 0x414E4750;
+    static final int VERSION = 2;
+    static final int STRICT = 1;
+
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 28;
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    private final Path file;
+    private final boolean strict;
+    private final String[] strings;
+    private final ByteBuffer index;
+    private final ByteBuffer[] regions;
+    private final long[] regionStarts;
+    private final int size;
+
+    private ResultSink sink = ResultSink.DISCARD;
+    private Writer archive = null;
+    private boolean replay = true;
+    private OpeningTree tree = null;
+    private PositionIndex.Writer positions = null;
+    private HeaderFilter filter = null;
+
+    private GameArchive(final Path file, final boolean strict, final String[] strings, final ByteBuffer index,
+                        final ByteBuffer[] regions, final long[] regionStarts) {
+        this.file = file;
+        this.strict = strict;
+        this.strings = strings;
+        this.index = index;
+        this.regions = regions;
+        this.regionStarts = regionStarts;
+        this.size = index.capacity() / Long.BYTES;
+    }
+
+    /**
+     * Tells whether a file is an archive from its first bytes.
+     *
+     * @param channel The channel of the file; its position is not changed.
+     * @return A boolean indicating whether the file starts like an archive.
+     */
+    public static boolean isArchive(final FileChannel channel) throws IOException {
+        final ByteBuffer head = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) ;
+
+        return !head.hasRemaining() && head.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Memory-maps an archive. The games are covered by mappings of at most {@value #MAX_REGION_SIZE} bytes, each
+     * ending on a game boundary, so archives larger than 2 GB can be read. The mappings follow the records in
+     * the file, from a sorted copy of the index.
+     *
+     * @param file The archive.
+     * @return The archive, ready to be iterated or indexed.
+     * @throws IOException If the file cannot be read or is not a complete archive.
+     */
+    public static GameArchive open(final Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + TRAILER_SIZE) throw new IOException("Not a game archive: " + file);
+
+            final ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            final ByteBuffer trailer = map(channel, fileSize - TRAILER_SIZE, TRAILER_SIZE);
+            if (header.getInt(0) != MAGIC || trailer.getInt(24) != MAGIC) {
+                throw new IOException("Not a complete game archive: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported archive version " + header.getInt(4) + ": " + file);
+            }
+
+            final long indexOffset = trailer.getLong(0);
+            final long dictionaryOffset = trailer.getLong(8);
+            final int games = trailer.getInt(16);
+            final int count = trailer.getInt(20);
+            if ((long) games * Long.BYTES > Integer.MAX_VALUE) {
+                throw new IOException("More games than one index mapping holds: " + file);
+            }
+
+            final ByteBuffer index = map(channel, indexOffset, games * Long.BYTES);
+            final ByteBuffer dictionary = map(channel, dictionaryOffset, fileSize - TRAILER_SIZE - dictionaryOffset);
+            final String[] strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                final byte[] bytes = new byte[Varint.read(dictionary)];
+                dictionary.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            final long[] offsets = new long[games];
+            boolean sorted = true;
+            for (int game = 0; game < games; game++) {
+                offsets[game] = index.getLong(game * Long.BYTES);
+                sorted &= game == 0 || offsets[game - 1] < offsets[game];
+            }
+            if (!sorted) Arrays.sort(offsets);
+
+            final List<ByteBuffer> regions = new ArrayList<>();
+            final List<Long> starts = new ArrayList<>();
+            for (int game = 0; game < games; ) {
+                final long start = offsets[game];
+
+                int next = game + 1;
+                while (next < games && offsets[next] - start <= MAX_REGION_SIZE) next++;
+                final long end = next < games ? offsets[next] : indexOffset;
+
+                regions.add(map(channel, start, end - start));
+                starts.add(start);
+                game = next;
+            }
+
+            return new GameArchive(file, (header.getInt(8) & STRICT) != 0, strings, index,
+                    regions.toArray(ByteBuffer[]::new), starts.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final long offset, final long length)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) throw new IOException("Game larger than 2 GB at offset " + offset);
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates an archive, truncating the file if it exists. Pass the writer to
+     * {@link Parser#setArchive(Writer)} and every game the parser yields is appended as it finishes.
+     *
+     * @param file   The archive to write.
+     * @param strict A boolean indicating whether the games are replayed in strict mode, recorded in the archive.
+     * @return The writer; closing it completes the archive.
+     */
+    public static Writer create(final Path file, final boolean strict) throws IOException {
+        return new Writer(file, strict);
+    }
+
+    /**
+     * @param sink The sink receiving the result of every game this archive yields. Results are dropped by default.
+     */
+    public void setSink(final ResultSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Appends every game this archive yields to another archive, for instance to merge several archives into one.
+     *
+     * @param archive The archive to write, or null to write none.
+     */
+    public void setArchive(final Writer archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Chooses whether the games this archive yields apply their moves to a board. Their moves were validated
+     * when the archive was written, so a run that only reports results can skip the board and deliver the
+     * stored results at the speed the archive is read; anything that needs the positions must replay.
+     *
+     * @param replay A boolean indicating whether the moves are replayed, true by default.
+     */
+    public void setReplay(final boolean replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Adds the first moves of every valid game this archive yields to an opening tree. The tree needs the
+     * positions, so those games are replayed whatever {@link #setReplay(boolean)} says.
+     *
+     * @param tree The tree to build, or null to build none.
+     */
+    public void setOpeningTree(final OpeningTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Adds every position of every valid game this archive yields to a position index. Like the opening tree,
+     * it needs the positions, so those games are replayed.
+     *
+     * @param positions The index to write, or null to write none.
+     */
+    public void setPositionIndex(final PositionIndex.Writer positions) {
+        this.positions = positions;
+    }
+
+    /**
+     * Makes the iterator yield only the games whose tag pairs a filter accepts; {@link #game(int)} still returns
+     * any game.
+     *
+     * @param filter The filter, or null to yield every game.
+     */
+    public void setFilter(final HeaderFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return The number of games in the archive.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A boolean indicating whether the games were replayed in strict mode when the archive was written.
+     */
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * Returns one game, found through the index without reading the games before it.
+     *
+     * @param n The position of the game in the archive, from 0, which is its position among the archived games
+     *          of the input files.
+     * @return The game, ready to be run.
+     * @throws IndexOutOfBoundsException If there is no such game.
+     */
+    public Game game(final int n) {
+        if (n < 0 || n >= size) throw new IndexOutOfBoundsException("Game " + n + " of " + size + " in " + file);
+
+        return read(record(n), false);
+    }
+
+    /**
+     * @return A buffer positioned on the record of a game, in the mapping covering it.
+     */
+    private ByteBuffer record(final int n) {
+        final long offset = index.getLong(n * Long.BYTES);
+        int region = Arrays.binarySearch(regionStarts, offset);
+        if (region < 0) region = -region - 2;
+
+        final ByteBuffer record = regions[region].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        record.position((int) (offset - regionStarts[region]));
+
+        return record;
+    }
+
+    /**
+     * Decodes the game at the position of a buffer and leaves the buffer after it. Headers map to the strings of
+     * the dictionary, so no text is decoded; the moves stay in the mapping until the game is run.
+     *
+     * @return The game, or null if it is filtered and the filter rejects it.
+     */
+    private Game read(final ByteBuffer record, final boolean filtered) {
+        final int source = Varint.read(record);
+        final int id = Varint.read(record);
+
+        final int headerCount = Varint.read(record);
+        final Map<String, String> headers = new LinkedHashMap<>(headerCount * 2);
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(strings[Varint.read(record)], strings[Varint.read(record)]);
+        }
+
+        final int plies = Varint.read(record);
+        final ByteBuffer moves = record.slice(record.position(), plies * 3).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(record.position() + plies * 3);
+
+        ErrorLog.Failure failure = null;
+        final int errorPly = Varint.read(record);
+        if (errorPly != 0) {
+            failure = new ErrorLog.Failure(0, 0, errorPly, string(Varint.read(record)), string(Varint.read(record)),
+                    string(Varint.read(record)));
+        }
+        if (filtered && filter != null && !filter.test(headers)) return null;
+
+        var game = new Game(headers, moves, plies, failure, replay || tree != null || positions != null, sink);
+        game.setArchive(archive);
+        game.setOpeningTree(tree);
+        game.setPositionIndex(positions);
+        game.setId(source, id);
+
+        return game;
+    }
+
+    private String string(final int id) {
+        return id == 0 ? null : strings[id - 1];
+    }
+
+    /**
+     * Iterates over the games in archive order, through the index, skipping the games the filter rejects.
+     */
+    @Override
+    public Iterator<Game> iterator() {
+        return new Iterator<>() {
+            private int game = 0;
+            private Game next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && game < size) {
+                    next = read(record(game), true);
+                    game++;
+                }
+
+                return next != null;
+            }
+
+            @Override
+            public Game next() {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                var result = next;
+                next = null;
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Appends games to an archive as they finish, from any number of worker threads. Appends are serialized on
+     * the writer; each is a handful of varints and three bytes per move copied into a 64 KB buffer, which is
+     * cheap next to the replay that produced them. The index stays in memory, with the source and position of
+     * every game, 16 bytes per game, and is sorted into file order and written with the dictionary on
+     * {@link #close()}. An archive that was not closed has no trailer and does not open.
+     */
+    public static final class Writer implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private long[] offsets = new long[1 << 10];
+        private long[] orders = new long[1 << 10];
+        private int games = 0;
+        private long position = 0;
+        private boolean closed = false;
+
+        private Writer(final Path file, final boolean strict) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(strict ? STRICT : 0);
+        }
+
+        /**
+         * Appends one game.
+         *
+         * @param source  The source of the game, see {@link Parser#setSource(int)}.
+         * @param id      The position of the game in its source.
+         * @param headers The tag pairs of the game.
+         * @param moves   The packed moves that were played, the first {@code plies} of the array.
+         * @param plies   The number of moves played.
+         * @param failure The failure that ended the game, or null if it is valid.
+         * @throws UncheckedIOException If the archive cannot be written.
+         */
+        synchronized void append(final int source, final int id, final Map<String, String> headers,
+                                 final int[] moves, final int plies, final ErrorLog.Failure failure) {
+            try {
+                if (closed) throw new IOException("Archive already closed");
+
+                if (games == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, games * 2);
+                    orders = Arrays.copyOf(orders, games * 2);
+                }
+                orders[games] = (long) source << 32 | id;
+                offsets[games++] = position + buffer.position();
+
+                writeVarint(source);
+                writeVarint(id);
+                writeVarint(headers.size());
+                for (var header : headers.entrySet()) {
+                    writeVarint(id(header.getKey()));
+                    writeVarint(id(header.getValue()));
+                }
+
+                writeVarint(plies);
+                for (int i = 0; i < plies; i++) {
+                    ensure(3);
+                    buffer.put((byte) moves[i]).put((byte) (moves[i] >>> 8)).put((byte) (moves[i] >>> 16));
+                }
+
+                if (failure == null) {
+                    writeVarint(0);
+                } else {
+                    writeVarint(failure.ply());
+                    writeVarint(nullableId(failure.san()));
+                    writeVarint(nullableId(failure.type()));
+                    writeVarint(nullableId(failure.message()));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int id(final String value) {
+            return ids.computeIfAbsent(value, __ -> {
+                strings.add(value);
+                return strings.size() - 1;
+            });
+        }
+
+        private int nullableId(final String value) {
+            return value == null ? 0 : id(value) + 1;
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) position += channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void writeVarint(final int value) throws IOException {
+            ensure(Varint.MAX_BYTES);
+            Varint.write(buffer, value);
+        }
+
+        private void writeBytes(final byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                if (!buffer.hasRemaining()) drain();
+
+                final int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+
+        /**
+         * @return The number of games appended so far.
+         */
+        public synchronized int size() {
+            return games;
+        }
+
+        /**
+         * Writes the index in file order, the dictionary and the trailer, then closes the file.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+
+            PositionIndex.Writer.sort(orders, offsets, 0, games);
+            try (channel) {
+                final long indexOffset = position + buffer.position();
+                for (int i = 0; i < games; i++) {
+                    ensure(Long.BYTES);
+                    buffer.putLong(offsets[i]);
+                }
+
+                final long dictionaryOffset = position + buffer.position();
+                for (String string : strings) {
+                    final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(bytes.length);
+                    writeBytes(bytes);
+                }
+
+                ensure(TRAILER_SIZE);
+                buffer.putLong(indexOffset).putLong(dictionaryOffset).putInt(games).putInt(strings.size())
+                        .putInt(MAGIC);
+                drain();
+            }
+        }
+    }
+}
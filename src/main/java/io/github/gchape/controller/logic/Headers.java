@@ -0,0 +1,200 @@
+package io.github.gchape.controller.logic;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The tag pairs of a parsed game, kept as the raw bytes of its header section with a table of where each name and
+ * value starts and ends. Finding the tags is a single byte scan with no allocation besides the table; a value is
+ * decoded the first time its tag is looked up, so a reader of five tags never decodes the others.
+ * <p>
+ * Tag names, and the values of tags that repeat across games such as {@code Event}, {@code Site},
+ * {@code Result} and the player names, are interned through a small shared cache, so a large corpus keeps one
+ * copy of each. A tag that appears twice keeps its last value. The map is read-only, and may be read from
+ * several threads: a value decoded twice by a race is the same string.
+ */
+final class Headers extends AbstractMap<String, String> {
+    private static final Set<String> INTERNED_VALUES = Set.of("Event", "Site", "Round", "White", "Black", "Result",
+            "ECO", "Opening", "Variation", "TimeControl", "Termination", "WhiteTitle", "BlackTitle");
+    private static final String[] CACHE = new String[1 << 14];
+
+    private final byte[] text;
+    private final int[] offsets;
+    private final int count;
+    private final String[] values;
+    private List<Entry<String, String>> entries = null;
+
+    private Headers(final byte[] text, final int[] offsets, final int count) {
+        this.text = text;
+        this.offsets = offsets;
+        this.count = count;
+        this.values = new String[count];
+    }
+
+    /**
+     * Finds the tag pairs, {@code [Name "value"]}, in a header section. The bytes are copied, so the buffer may
+     * be reused afterwards.
+     *
+     * @param buffer The buffer holding the header section.
+     * @param start  The offset of the header section.
+     * @param end    The offset after the header section.
+     * @return The tag pairs.
+     */
+    static Headers parse(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] text = new byte[end - start];
+        buffer.get(start, text);
+
+        int[] offsets = new int[4 * 16];
+        int count = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] != '[') continue;
+
+            int j = i + 1;
+            while (j < text.length && isWordByte(text[j])) j++;
+            final int nameEnd = j;
+            while (j < text.length && isSpace(text[j])) j++;
+            if (nameEnd == i + 1 || j == nameEnd || j == text.length || text[j] != '"') continue;
+
+            final int valueStart = ++j;
+            while (j < text.length && text[j] != '"') j++;
+            if (j + 1 >= text.length || text[j + 1] != ']') continue;
+
+            if (4 * count == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            offsets[4 * count] = i + 1;
+            offsets[4 * count + 1] = nameEnd;
+            offsets[4 * count + 2] = valueStart;
+            offsets[4 * count + 3] = j;
+            count++;
+            i = j + 1;
+        }
+
+        return new Headers(text, offsets, count);
+    }
+
+    private static boolean isWordByte(final byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b >= '\t' && b <= '\r';
+    }
+
+    /**
+     * @return The index of the last tag with the name, or -1.
+     */
+    int indexOf(final Object key) {
+        if (!(key instanceof String name)) return -1;
+
+        for (int i = count - 1; i >= 0; i--) {
+            if (regionMatches(name, text, offsets[4 * i], offsets[4 * i + 1])) return i;
+        }
+
+        return -1;
+    }
+
+    private static boolean regionMatches(final String string, final byte[] bytes, final int start, final int end) {
+        if (string.length() != end - start) return false;
+        for (int k = 0; k < string.length(); k++) {
+            if (bytes[start + k] != string.charAt(k)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The header section, in which {@link #valueStart(int)} and {@link #valueEnd(int)} are offsets.
+     */
+    byte[] bytes() {
+        return text;
+    }
+
+    int valueStart(final int i) {
+        return offsets[4 * i + 2];
+    }
+
+    int valueEnd(final int i) {
+        return offsets[4 * i + 3];
+    }
+
+    private String name(final int i) {
+        return intern(text, offsets[4 * i], offsets[4 * i + 1]);
+    }
+
+    private String value(final int i) {
+        String value = values[i];
+        if (value == null) {
+            final int start = offsets[4 * i + 2], end = offsets[4 * i + 3];
+            value = INTERNED_VALUES.contains(name(i))
+                    ? intern(text, start, end)
+                    : new String(text, start, end - start, StandardCharsets.UTF_8);
+            values[i] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns the string of a range of bytes from the shared cache, replacing the cached string with the same
+     * hash on a miss. Strings with non-ASCII bytes are decoded as UTF-8 and not cached.
+     */
+    private static String intern(final byte[] bytes, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < 0) return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            hash = 31 * hash + bytes[i];
+        }
+
+        final int slot = (hash ^ hash >>> 16) & CACHE.length - 1;
+        String string = CACHE[slot];
+        if (string == null || string.hashCode() != hash || !regionMatches(string, bytes, start, end)) {
+            string = new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+            CACHE[slot] = string;
+        }
+
+        return string;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int i = indexOf(key);
+        return i < 0 ? null : value(i);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        List<Entry<String, String>> list = entries;
+        if (list == null) {
+            final List<Entry<String, String>> distinct = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final String name = name(i);
+                if (indexOf(name) == i) distinct.add(new SimpleImmutableEntry<>(name, value(i)));
+            }
+            entries = list = List.copyOf(distinct);
+        }
+
+        final List<Entry<String, String>> tags = list;
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return tags.iterator();
+            }
+
+            @Override
+            public int size() {
+                return tags.size();
+            }
+        };
+    }
+}
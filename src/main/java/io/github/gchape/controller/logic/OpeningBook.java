@@ -0,0 +1,152 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link OpeningTree} read back from the file {@link OpeningTree#write(Path)} saved. The file is mapped, not
+ * read: opening it costs nothing whatever its size, and a query binary-searches the sorted positions, touching
+ * a few pages, so it answers in microseconds once they are cached. It is immutable and safe from any thread.
+ */
+public final class OpeningBook {
+    private static final int CHUNK_BITS = 26;
+
+    private final int maxPlies;
+    private final int positions;
+    private final int edges;
+    private final ByteBuffer[] positionChunks;
+    private final ByteBuffer[] edgeChunks;
+
+    private OpeningBook(final int maxPlies, final int positions, final int edges, final ByteBuffer[] positionChunks,
+                        final ByteBuffer[] edgeChunks) {
+        this.maxPlies = maxPlies;
+        this.positions = positions;
+        this.edges = edges;
+        this.positionChunks = positionChunks;
+        this.edgeChunks = edgeChunks;
+    }
+
+    /**
+     * @param file A file written by {@link OpeningTree#write(Path)}.
+     * @return The book.
+     * @throws IOException If the file cannot be read, is not an opening tree or is incomplete.
+     */
+    public static OpeningBook open(final Path file) throws IOException {
+        try (var channel = FileChannel.open(file)) {
+            if (channel.size() < OpeningTree.HEADER_SIZE) throw new IOException("Not an opening tree: " + file);
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, OpeningTree.HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != OpeningTree.MAGIC) throw new IOException("Not an opening tree: " + file);
+            if (header.getInt(4) != OpeningTree.VERSION) {
+                throw new IOException("Unsupported opening tree version " + header.getInt(4) + ": " + file);
+            }
+
+            final int positions = header.getInt(12), edges = header.getInt(16);
+            final long edgesStart = OpeningTree.HEADER_SIZE + (long) positions * OpeningTree.POSITION_SIZE;
+            if (channel.size() != edgesStart + (long) edges * OpeningTree.EDGE_SIZE) {
+                throw new IOException("Incomplete opening tree: " + file);
+            }
+
+            return new OpeningBook(header.getInt(8), positions, edges,
+                    map(channel, OpeningTree.HEADER_SIZE, positions, OpeningTree.POSITION_SIZE),
+                    map(channel, edgesStart, edges, OpeningTree.EDGE_SIZE));
+        }
+    }
+
+    /**
+     * Maps fixed-size records in chunks of 2<sup>26</sup>, so a chunk stays below the 2 GB a mapping can hold and
+     * record {@code i} is found in chunk {@code i >>> 26}.
+     */
+    private static ByteBuffer[] map(final FileChannel channel, final long start, final int count, final int size)
+            throws IOException {
+        final ByteBuffer[] chunks = new ByteBuffer[(count + (1 << CHUNK_BITS) - 1) >>> CHUNK_BITS];
+        for (int i = 0; i < chunks.length; i++) {
+            final long first = (long) i << CHUNK_BITS;
+            final long records = Math.min(1L << CHUNK_BITS, count - first);
+
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start + first * size, records * size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return chunks;
+    }
+
+    private static int offset(final int record, final int size) {
+        return (record & (1 << CHUNK_BITS) - 1) * size;
+    }
+
+    private long key(final int position) {
+        return positionChunks[position >>> CHUNK_BITS].getLong(offset(position, OpeningTree.POSITION_SIZE));
+    }
+
+    private int firstEdge(final int position) {
+        if (position == positions) return edges;
+
+        return positionChunks[position >>> CHUNK_BITS].getInt(offset(position, OpeningTree.POSITION_SIZE) + 8);
+    }
+
+    /**
+     * @return The number of plies of every game the tree was built from.
+     */
+    public int maxPlies() {
+        return maxPlies;
+    }
+
+    /**
+     * @return The number of positions in the book.
+     */
+    public int size() {
+        return positions;
+    }
+
+    /**
+     * @param board A position.
+     * @return The moves played from it, most played first.
+     */
+    public List<OpeningTree.Continuation> continuations(final Board board) {
+        return continuations(board.key());
+    }
+
+    /**
+     * @param key The {@link Board#key() key} of a position.
+     * @return The moves played from it, most played first, or an empty list if the position is not in the book.
+     */
+    public List<OpeningTree.Continuation> continuations(final long key) {
+        int low = 0, high = positions - 1;
+        while (low <= high) {
+            final int middle = low + high >>> 1;
+            final int order = Long.compareUnsigned(key(middle), key);
+
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return edges(firstEdge(middle), firstEdge(middle + 1));
+            }
+        }
+
+        return List.of();
+    }
+
+    private List<OpeningTree.Continuation> edges(final int first, final int end) {
+        final List<OpeningTree.Continuation> list = new ArrayList<>(end - first);
+        for (int edge = first; edge < end; edge++) {
+            final ByteBuffer chunk = edgeChunks[edge >>> CHUNK_BITS];
+            final int at = offset(edge, OpeningTree.EDGE_SIZE);
+
+            list.add(new OpeningTree.Continuation(chunk.getInt(at), chunk.getInt(at + 4), chunk.getInt(at + 8),
+                    chunk.getInt(at + 12), chunk.getInt(at + 16)));
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,344 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.Move;
+import io.github.gchape.model.entities.Piece;
+import io.github.gchape.model.entities.Square;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The opening tree of a corpus: for every position reached in the first plies of its valid games, the moves
+ * played from it with how often each was played and how the games ended. Pass it to
+ * {@link Parser#setOpeningTree(OpeningTree)} or {@link GameArchive#setOpeningTree(OpeningTree)}; each game adds
+ * its (position, move) edges once it is known to be valid, so a corpus can be aggregated by any number of
+ * workers.
+ * <p>
+ * Positions are spread over 64 stripes by the top bits of their Zobrist key, each an open-addressing table
+ * behind its own lock, so workers rarely wait on each other. Once the run is over, {@link #write(Path)} saves
+ * the tree for {@link OpeningBook#open(Path)}, which answers the same queries from a memory-mapped file.
+ * <pre>
+ * header     "PGNO", version, max plies, position count, edge count, 0       (24 bytes)
+ * positions  per position, by unsigned key: key (8 bytes), first edge (4 bytes)
+ * edges      per edge, most played first: move, games, white wins, draws, black wins (4 bytes each)
+ * </pre>
+ * All numbers are little-endian. An edge counts at most 2<sup>31</sup> - 1 games.
+ */
+public final class OpeningTree {
+    public static final int DEFAULT_MAX_PLIES = 20;
+
+    static final int MAGIC = 0x4F4E4750;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int POSITION_SIZE = 12;
+    static final int EDGE_SIZE = 20;
+
+    private static final int STRIPE_BITS = 6;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int maxPlies;
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    /**
+     * @param maxPlies The number of plies of every game added to the tree.
+     * @throws IllegalArgumentException If the number is not positive.
+     */
+    public OpeningTree(final int maxPlies) {
+        if (maxPlies < 1) throw new IllegalArgumentException("Max plies must be positive: " + maxPlies);
+
+        this.maxPlies = maxPlies;
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+    }
+
+    /**
+     * @param result The value of a game's {@code Result} tag, or null.
+     * @return The index of the counter the result goes to: white wins, draws, black wins, or -1 if the game has
+     * no result.
+     */
+    static int outcome(final String result) {
+        if (result == null) return -1;
+
+        return switch (result) {
+            case "1-0" -> 0;
+            case "1/2-1/2" -> 1;
+            case "0-1" -> 2;
+            default -> -1;
+        };
+    }
+
+    /**
+     * @return The number of plies of every game added to the tree.
+     */
+    public int maxPlies() {
+        return maxPlies;
+    }
+
+    /**
+     * Adds the first plies of a valid game.
+     *
+     * @param keys   The key of the position before each move.
+     * @param moves  The packed moves.
+     * @param plies  The number of moves to add, at most {@link #maxPlies()}.
+     * @param result The value of the game's {@code Result} tag, or null.
+     */
+    void add(final long[] keys, final int[] moves, final int plies, final String result) {
+        final int outcome = outcome(result);
+
+        for (int i = 0; i < plies; i++) stripe(keys[i]).add(keys[i], moves[i], outcome);
+    }
+
+    private Stripe stripe(final long key) {
+        return stripes[(int) (key >>> 64 - STRIPE_BITS)];
+    }
+
+    /**
+     * @return The number of positions in the tree.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @param board A position.
+     * @return The moves played from it, most played first.
+     */
+    public List<Continuation> continuations(final Board board) {
+        return continuations(board.key());
+    }
+
+    /**
+     * @param key The {@link Board#key() key} of a position.
+     * @return The moves played from it, most played first, or an empty list if the position is not in the tree.
+     */
+    public List<Continuation> continuations(final long key) {
+        final Stripe stripe = stripe(key);
+
+        synchronized (stripe) {
+            return stripe.continuations(stripe.find(key));
+        }
+    }
+
+    /**
+     * Saves the tree for {@link OpeningBook#open(Path)}. The stripes hold consecutive ranges of keys, so sorting
+     * each one in turn sorts the whole file. Call it once no game is being added.
+     *
+     * @param file The file to write, replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(final Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int positions = 0, edges = 0;
+            for (Stripe stripe : stripes) {
+                positions += stripe.size;
+                edges += stripe.edges;
+            }
+            out.putInt(MAGIC).putInt(VERSION).putInt(maxPlies).putInt(positions).putInt(edges).putInt(0);
+
+            int first = 0;
+            for (Stripe stripe : stripes) {
+                for (long key : stripe.sortedKeys()) {
+                    if (out.remaining() < POSITION_SIZE) drain(channel, out);
+                    out.putLong(key).putInt(first);
+                    first += stripe.count(stripe.find(key));
+                }
+            }
+
+            for (Stripe stripe : stripes) {
+                for (long key : stripe.sortedKeys()) {
+                    for (Continuation edge : stripe.continuations(stripe.find(key))) {
+                        if (out.remaining() < EDGE_SIZE) drain(channel, out);
+                        out.putInt(edge.move()).putInt(edge.games()).putInt(edge.whiteWins()).putInt(edge.draws())
+                                .putInt(edge.blackWins());
+                    }
+                }
+            }
+            drain(channel, out);
+        }
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * A move played from a position and how the games that played it ended.
+     *
+     * @param move      The packed move, see {@link Move}.
+     * @param games     The number of games that played it.
+     * @param whiteWins The number of those games white won.
+     * @param draws     The number of those games that were drawn.
+     * @param blackWins The number of those games black won.
+     */
+    public record Continuation(int move, int games, int whiteWins, int draws, int blackWins) {
+        static final Comparator<Continuation> MOST_PLAYED = Comparator.comparingInt(Continuation::games).reversed()
+                .thenComparingInt(Continuation::move);
+
+        /**
+         * @param white A boolean indicating whether the score is white's.
+         * @return The percentage of the points one side scored in the games with a result, a draw counting half,
+         * or NaN if none has one.
+         */
+        public double score(final boolean white) {
+            final int decided = whiteWins + draws + blackWins;
+            if (decided == 0) return Double.NaN;
+
+            return ((white ? whiteWins : blackWins) + draws / 2.0) * 100 / decided;
+        }
+
+        /**
+         * @return The move in UCI notation, for instance {@code e2e4} or {@code e7e8q}.
+         */
+        public String uci() {
+            final String squares = Square.of(Move.from(move)).toChessNotation()
+                    + Square.of(Move.to(move)).toChessNotation();
+            final Piece promotion = Move.promotion(move);
+            if (promotion == null) return squares;
+
+            return squares + (promotion == Piece.KNIGHT ? 'n' : Character.toLowerCase(promotion.name().charAt(0)));
+        }
+    }
+
+    /**
+     * The positions of one range of keys. Each position slot holds a key and the head of a list of edges, which
+     * live in parallel arrays; a position has a few dozen moves at most, so the list is walked to find one.
+     */
+    private static final class Stripe {
+        private static final int NONE = -1;
+
+        private long[] keys = new long[64];
+        private int[] heads = new int[64];
+        private int size = 0;
+
+        private int[] moves = new int[64];
+        private int[] next = new int[64];
+        private int[][] counts = new int[4][64];
+        private int edges = 0;
+
+        private Stripe() {
+            Arrays.fill(heads, NONE);
+        }
+
+        private int find(final long key) {
+            final int mask = keys.length - 1;
+            for (int slot = spread(key) & mask; heads[slot] != NONE; slot = slot + 1 & mask) {
+                if (keys[slot] == key) return slot;
+            }
+
+            return -1;
+        }
+
+        private synchronized void add(final long key, final int move, final int outcome) {
+            int slot = find(key);
+            if (slot < 0) {
+                if (2 * (size + 1) > keys.length) grow();
+
+                final int mask = keys.length - 1;
+                slot = spread(key) & mask;
+                while (heads[slot] != NONE) slot = slot + 1 & mask;
+                keys[slot] = key;
+                size++;
+            } else {
+                for (int edge = heads[slot]; edge != NONE; edge = next[edge]) {
+                    if (moves[edge] == move) {
+                        count(edge, outcome);
+                        return;
+                    }
+                }
+            }
+
+            if (edges == moves.length) {
+                moves = Arrays.copyOf(moves, edges * 2);
+                next = Arrays.copyOf(next, edges * 2);
+                for (int i = 0; i < counts.length; i++) counts[i] = Arrays.copyOf(counts[i], edges * 2);
+            }
+            moves[edges] = move;
+            next[edges] = heads[slot];
+            heads[slot] = edges;
+            count(edges++, outcome);
+        }
+
+        private void count(final int edge, final int outcome) {
+            counts[0][edge]++;
+            if (outcome >= 0) counts[outcome + 1][edge]++;
+        }
+
+        private int count(final int slot) {
+            int count = 0;
+            for (int edge = slot < 0 ? NONE : heads[slot]; edge != NONE; edge = next[edge]) count++;
+
+            return count;
+        }
+
+        private List<Continuation> continuations(final int slot) {
+            final List<Continuation> list = new ArrayList<>();
+            for (int edge = slot < 0 ? NONE : heads[slot]; edge != NONE; edge = next[edge]) {
+                list.add(new Continuation(moves[edge], counts[0][edge], counts[1][edge], counts[2][edge],
+                        counts[3][edge]));
+            }
+            list.sort(Continuation.MOST_PLAYED);
+
+            return list;
+        }
+
+        /**
+         * All keys of a stripe share their top bits, so signed order is unsigned order here.
+         */
+        private long[] sortedKeys() {
+            final long[] sorted = new long[size];
+            int n = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (heads[slot] != NONE) sorted[n++] = keys[slot];
+            }
+            Arrays.sort(sorted);
+
+            return sorted;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldHeads = heads;
+
+            keys = new long[oldKeys.length * 2];
+            heads = new int[oldKeys.length * 2];
+            Arrays.fill(heads, NONE);
+
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldHeads[i] == NONE) continue;
+
+                int slot = spread(oldKeys[i]) & mask;
+                while (heads[slot] != NONE) slot = slot + 1 & mask;
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+
+        /**
+         * The top bits of a key pick its stripe, so slots are taken from the low bits, which Zobrist keys mix
+         * as well.
+         */
+        private static int spread(final long key) {
+            return (int) key;
+        }
+    }
+}
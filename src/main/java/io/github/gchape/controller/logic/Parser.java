@@ -1,108 +1,481 @@
 package io.github.gchape.controller.logic;
 
+import io.github.gchape.metrics.Metrics;
+import io.github.gchape.model.entities.ResultSink;
+
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Parser implements Iterable<Game> {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final byte[] EVENT_TAG = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
 
-public class Parser {
-    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
-    private static final Pattern ANNOTATIONS_PATTERN = Pattern.compile("[+#?!]");
-    private static final Pattern MOVE_NUMBERS_PATTERN = Pattern.compile("\\d+\\.");
-    private static final Pattern COMMENT_PATTERN = Pattern.compile(";.*|\\{[^}]*}");
+    private static final ByteBuffer NO_MOVES = ByteBuffer.allocate(0);
 
     private final File file;
-    private final List<String> moves;
-    private final List<Map<String, String>> headers;
+    private boolean strict = false;
+    private ResultSink sink = ResultSink.DISCARD;
+    private GameArchive.Writer archive = null;
+    private ValidationCache cache = null;
+    private OpeningTree tree = null;
+    private PositionIndex.Writer index = null;
+    private Deduplicator deduplicator = null;
+    private HeaderFilter filter = null;
+    private int source = 0;
 
     public Parser(final File file) {
         this.file = file;
-        moves = new ArrayList<>();
-        headers = new ArrayList<>();
+    }
 
-        parse();
+    /**
+     * Sets the source the games of this parser are reported under, with each game's position in the file as its
+     * id, see {@link io.github.gchape.model.entities.GameResult}. Give each file of a run its own source.
+     *
+     * @param source The source, usually the position of the file among the inputs, from 0 to 65535.
+     * @throws IllegalArgumentException If the source is out of range.
+     */
+    public void setSource(final int source) {
+        if (source < 0 || source > 0xFFFF) throw new IllegalArgumentException("Source out of range: " + source);
+        this.source = source;
     }
 
-    private void parse() {
-        final List<StringBuilder> moves = new ArrayList<>();
-        final List<StringBuilder> headers = new ArrayList<>();
+    /**
+     * Makes the games this parser yields validate every move fully, see
+     * {@link Game#Game(Map, String, boolean, ResultSink)}.
+     *
+     * @param strict A boolean indicating whether strict validation is enabled.
+     */
+    public void setStrict(final boolean strict) {
+        this.strict = strict;
+    }
 
-        readLines(file, new StringBuilder(), new StringBuilder(), headers, moves);
+    /**
+     * @param sink The sink receiving the result of every game this parser yields. Results are dropped by default.
+     */
+    public void setSink(final ResultSink sink) {
+        this.sink = sink;
+    }
 
-        parseGameMoves(moves);
-        parseGameHeaders(headers);
+    /**
+     * Appends every game this parser yields to an archive once it has been replayed, so later runs can reload
+     * the games with {@link GameArchive#open} instead of parsing the text again.
+     *
+     * @param archive The archive to write, or null to write none.
+     */
+    public void setArchive(final GameArchive.Writer archive) {
+        this.archive = archive;
     }
 
-    private void parseGameHeaders(final List<StringBuilder> headers) {
-        Pattern pattern = Pattern.compile("\\[(\\w+)\\s+\"([^\"]*)\"]");
+    /**
+     * Skips the replay of games whose result an earlier run recorded: every game's bytes are hashed, and a game
+     * found in the cache is yielded with its stored result, its movetext never decoded. Every result of this run
+     * is recorded in the cache. A parser that also writes an archive, an opening tree or a position index
+     * replays every game, since they need the moves.
+     *
+     * @param cache The cache to use, or null to replay every game.
+     */
+    public void setCache(final ValidationCache cache) {
+        this.cache = cache;
+    }
 
-        for (StringBuilder header : headers) {
-            var matcher = pattern.matcher(header);
-            var gameHeaders = new HashMap<String, String>();
+    /**
+     * Adds the first moves of every valid game this parser yields to an opening tree, up to the tree's
+     * {@link OpeningTree#maxPlies() depth}.
+     *
+     * @param tree The tree to build, or null to build none.
+     */
+    public void setOpeningTree(final OpeningTree tree) {
+        this.tree = tree;
+    }
 
-            while (matcher.find()) {
-                gameHeaders.put(matcher.group(1), matcher.group(2));
-            }
+    /**
+     * Adds every position of every valid game this parser yields to a position index.
+     *
+     * @param index The index to write, or null to write none.
+     */
+    public void setPositionIndex(final PositionIndex.Writer index) {
+        this.index = index;
+    }
 
-            this.headers.add(gameHeaders);
-        }
+    /**
+     * Checks every game against the games seen before it, see {@link Deduplicator}. In
+     * {@link Deduplicator.Mode#SKIP} a duplicate is not yielded, its movetext never tokenized.
+     *
+     * @param deduplicator The deduplicator, possibly shared with other parsers, or null to check nothing.
+     */
+    public void setDeduplicator(final Deduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Yields only the games whose tag pairs a filter accepts. The filter is tested on the header bytes before
+     * anything else, so a rejected game is neither fingerprinted nor decoded, and never replayed.
+     *
+     * @param filter The filter, possibly shared with other parsers, or null to yield every game.
+     */
+    public void setFilter(final HeaderFilter filter) {
+        this.filter = filter;
+    }
+
+    private static String decode(final ByteBuffer buffer, final int start, final int end) {
+        var bytes = new byte[end - start];
+        buffer.get(start, bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
-    private void parseGameMoves(final List<StringBuilder> moves) {
-        for (final var move : moves) {
-            var __ = move.toString();
-            __ = COMMENT_PATTERN.matcher(__).replaceAll("");
-            __ = MOVE_NUMBERS_PATTERN.matcher(__).replaceAll("");
-            __ = ANNOTATIONS_PATTERN.matcher(__).replaceAll("");
-            __ = WHITESPACE_PATTERN.matcher(__).replaceAll(" ").trim();
+    /**
+     * Builds a game from the byte ranges the scanner found for it. The tag pairs are found but not decoded, see
+     * {@link Headers}; the movetext is handed over as is; {@link Game} walks it with a {@link Tokenizer}. With a
+     * filter, a game it rejects is dropped right away. With a deduplicator, the game is fingerprinted next, from
+     * the bytes in the buffer, and a duplicate may be dropped. With a cache, the game's bytes, from its first tag
+     * to the end of its movetext, are hashed, and a cached game is built from its stored result instead; a dropped
+     * game keeps its cached result, so a filtered run does not empty the cache of the games it skips.
+     *
+     * @param buffer  The buffer holding the game.
+     * @param scanner The scanner positioned on the game.
+     * @param from    The offset the scan started at, so the game's size includes the blank lines before it.
+     * @param started The {@link System#nanoTime()} at which the scan started, for {@link Metrics}.
+     * @param id      The position of the game in the file, counting dropped games too.
+     * @return The game, ready to be run, or null if it is dropped.
+     */
+    private Game toGame(final ByteBuffer buffer, final PgnScanner scanner, final int from, final long started,
+                        final int id) {
+        var headers = Headers.parse(buffer, scanner.headerStart(), scanner.headerEnd());
+        final Game game;
 
-            this.moves.add(__);
+        if (filter != null && !filter.test(headers)) return drop(buffer, scanner, from, started);
+
+        if (deduplicator != null
+                && deduplicator.isDuplicate(Deduplicator.fingerprint(headers, buffer, scanner.movesStart(),
+                scanner.movesEnd()))
+                && deduplicator.mode() == Deduplicator.Mode.SKIP) {
+            return drop(buffer, scanner, from, started);
         }
+
+        if (cache == null) {
+            game = newGame(headers, decode(buffer, scanner.movesStart(), scanner.movesEnd()));
+        } else {
+            final long hash = XxHash64.hash(buffer, scanner.headerStart(), scanner.movesEnd(), 0);
+            final int slot = archive == null && tree == null && index == null ? cache.find(hash) : -1;
+
+            game = slot >= 0
+                    ? new Game(headers, NO_MOVES, 0, cache.failure(slot), false, sink)
+                    : newGame(headers, decode(buffer, scanner.movesStart(), scanner.movesEnd()));
+            game.setCache(cache, hash);
+        }
+        game.setId(source, id);
+
+        Metrics.INSTANCE.parsed(scanner.next() - from, System.nanoTime() - started);
+        return game;
+    }
+
+    /**
+     * Drops the game the scanner is positioned on, carrying its result over to this run's cache.
+     *
+     * @return null.
+     */
+    private Game drop(final ByteBuffer buffer, final PgnScanner scanner, final int from, final long started) {
+        if (cache != null) cache.keep(XxHash64.hash(buffer, scanner.headerStart(), scanner.movesEnd(), 0));
+
+        Metrics.INSTANCE.parsed(scanner.next() - from, System.nanoTime() - started);
+        return null;
+    }
+
+    private Game newGame(final Map<String, String> headers, final String moves) {
+        var game = new Game(headers, moves, strict, sink);
+        game.setArchive(archive);
+        game.setOpeningTree(tree);
+        game.setPositionIndex(index);
+
+        return game;
     }
 
-    private void readLines(final File file, final StringBuilder header, final StringBuilder body,
-                           final List<StringBuilder> headers, final List<StringBuilder> moves) {
+    /**
+     * Streams the games of the file. The file is read through a buffered channel and each game is yielded
+     * as soon as its movetext ends, so memory stays bounded by the largest single game rather than by the file.
+     * The channel is closed once the last game has been read.
+     * <p>
+     * Files compressed with gzip, Zstandard or bzip2 are recognised by their first bytes and decompressed on
+     * the fly, see {@link CompressedInput}.
+     *
+     * @return An iterator over the games of the file, in file order.
+     * @throws UncheckedIOException If the file cannot be opened or read.
+     */
+    @Override
+    public Iterator<Game> iterator() {
         try {
-            Files.readAllLines(file.toPath()).forEach(line -> {
-                if (line.contains("[")) {
-                    header.append(line);
-                } else if (!line.isBlank()) {
-                    body.append(line).append(" ");
-                } else {
-                    if (!header.isEmpty()) {
-                        headers.add(new StringBuilder(header));
-
-                        header.setLength(0);
-                    } else {
-                        moves.add(new StringBuilder(body));
-
-                        body.setLength(0);
-                    }
+            return new StreamingIterator(CompressedInput.open(file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds the first game starting at or after a byte offset, recognised by an {@code [Event } tag at the start
+     * of a line.
+     *
+     * @param channel The channel of the file.
+     * @param from    The offset to start looking at.
+     * @param size    The size of the file.
+     * @return The offset of the game, or {@code size} if no game starts after {@code from}.
+     */
+    private static long nextGameStart(final FileChannel channel, final long from, final long size) throws IOException {
+        if (from == 0) return 0;
+
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long position = from - 1; position < size; ) {
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) ;
+
+            final int n = buffer.position();
+            for (int i = 0; i + EVENT_TAG.length <= n; i++) {
+                if (matches(buffer, i)) return position + i + 1;
+            }
+
+            if (position + n >= size) break;
+            position += n - EVENT_TAG.length + 1;
+        }
+
+        return size;
+    }
+
+    private static boolean matches(final ByteBuffer buffer, final int offset) {
+        for (int i = 0; i < EVENT_TAG.length; i++) {
+            if (buffer.get(offset + i) != EVENT_TAG[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Memory-maps the file and cuts it into byte ranges that each start on an {@code [Event } tag, to be read
+     * concurrently, for instance as {@link Pipeline.Source}s of the same name. Files larger than 2 GB are covered
+     * by several mappings, since every range gets its own mapping and no range is larger than
+     * {@value #MAX_CHUNK_SIZE} bytes before alignment.
+     * <p>
+     * The games of every range are first counted in parallel with the scanner alone, so each game still gets its
+     * position in the file as its id, as with {@link #iterator()}. A compressed file cannot be cut before it is
+     * decompressed, so it is returned whole, as this parser.
+     *
+     * @param chunks The number of ranges to cut the file into, usually the number of available cores.
+     * @return The ranges in file order, each iterating over its games in file order.
+     * @throws UncheckedIOException If the file cannot be opened, mapped or read.
+     */
+    public List<Iterable<Game>> split(final int chunks) {
+        final List<ByteBuffer> ranges = new ArrayList<>();
+
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (CompressedInput.format(channel) != CompressedInput.Format.PLAIN) return List.of(this);
+
+            final long size = channel.size();
+            final int n = (int) Math.max(Math.max(chunks, 1), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+            long start = 0;
+            for (int i = 1; i <= n && start < size; i++) {
+                final long end = i == n ? size : Math.max(start, nextGameStart(channel, size * i / n, size));
+                if (end == start) continue;
+
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("No game boundary within 2 GB after offset " + start + " in " + file);
                 }
-            });
 
-            if (!body.isEmpty())
-                moves.add(new StringBuilder(body));
+                ranges.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                start = end;
+            }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
+        }
+
+        final int[] firstIds = new int[ranges.size()];
+        final int[] counts = ranges.parallelStream().mapToInt(Parser::count).toArray();
+        for (int i = 1; i < counts.length; i++) firstIds[i] = firstIds[i - 1] + counts[i - 1];
+
+        final List<Iterable<Game>> parts = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            final ByteBuffer range = ranges.get(i);
+            final int firstId = firstIds[i];
+            parts.add(() -> new MappedIterator(range.duplicate(), firstId));
         }
+
+        return parts;
     }
 
-    public Iterator<Game> iterator() {
-        return new Iterator<>() {
-            private int i = 0;
+    /**
+     * Tokenizes the ranges of {@link #split(int)} in parallel, one range per worker. Games within a range are
+     * yielded in file order, but ranges are processed concurrently. A compressed file is read as by
+     * {@link #iterator()} and its games only handed out in parallel.
+     *
+     * @param chunks The number of ranges to cut the file into, usually the number of available cores.
+     * @return An unordered parallel stream over the games of the file.
+     * @throws UncheckedIOException If the file cannot be opened, mapped or read.
+     */
+    public Stream<Game> parallelStream(final int chunks) {
+        final List<Iterable<Game>> parts = split(chunks);
+        if (parts.size() == 1) return StreamSupport.stream(parts.getFirst().spliterator(), true);
+
+        return parts.parallelStream().flatMap(part -> StreamSupport.stream(part.spliterator(), false));
+    }
+
+    /**
+     * Counts the games of a range with the scanner alone, decoding nothing, so the games of the next ranges know
+     * their position in the file before any of them is parsed.
+     */
+    private static int count(final ByteBuffer range) {
+        final PgnScanner scanner = new PgnScanner();
+        int games = 0;
+        for (int position = start(range); scanner.scan(range, position, range.limit(), true); games++) {
+            position = scanner.next();
+        }
+
+        return games;
+    }
+
+    /**
+     * @return The offset of the first byte after a UTF-8 byte order mark at the start of a range, if any.
+     */
+    private static int start(final ByteBuffer range) {
+        return range.limit() >= 3 && range.get(0) == (byte) 0xEF
+                && range.get(1) == (byte) 0xBB && range.get(2) == (byte) 0xBF ? 3 : 0;
+    }
+
+    /**
+     * Iterates over the games of one memory-mapped range. The end of the range is the end of its last game.
+     */
+    private final class MappedIterator implements Iterator<Game> {
+        private final ByteBuffer range;
+        private final PgnScanner scanner = new PgnScanner();
+
+        private int position;
+        private int id;
+        private Game next = null;
+
+        private MappedIterator(final ByteBuffer range, final int firstId) {
+            this.range = range;
+            this.position = start(range);
+            this.id = firstId;
+        }
+
+        /**
+         * Scans up to the next game that is not dropped.
+         */
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                final long started = System.nanoTime();
+                if (!scanner.scan(range, position, range.limit(), true)) return false;
+
+                next = toGame(range, scanner, position, started, id++);
+                position = scanner.next();
+            }
+
+            return true;
+        }
+
+        @Override
+        public Game next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            var game = next;
+            next = null;
+
+            return game;
+        }
+    }
+
+    private final class StreamingIterator implements Iterator<Game> {
+        private final ReadableByteChannel channel;
+        private final PgnScanner scanner = new PgnScanner();
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        private boolean eof = false;
+        private boolean start = true;
+        private int id = 0;
+        private Game next = null;
 
-            @Override
-            public boolean hasNext() {
-                return i < headers.size();
+        private StreamingIterator(final ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Game next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            var game = next;
+            next = null;
+
+            return game;
+        }
+
+        private Game advance() {
+            long started = System.nanoTime();
+            try {
+                while (true) {
+                    if (scanner.scan(buffer, buffer.position(), buffer.limit(), eof)) {
+                        var game = toGame(buffer, scanner, buffer.position(), started, id++);
+                        buffer.position(scanner.next());
+
+                        if (game != null) return game;
+                        started = System.nanoTime();
+                        continue;
+                    }
+
+                    if (eof) {
+                        channel.close();
+                        return null;
+                    }
+
+                    fill();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }
 
-            @Override
-            public Game next() {
-                if (!hasNext()) throw new NoSuchElementException();
-                return new Game(headers.get(i), moves.get(i++));
+        /**
+         * Reads more bytes after the unconsumed ones, doubling the buffer only when a single game does not fit.
+         */
+        private void fill() throws IOException {
+            buffer.compact();
+
+            if (!buffer.hasRemaining()) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
             }
-        };
+
+            eof = channel.read(buffer) < 0;
+            buffer.flip();
+
+            if (start && buffer.remaining() >= 3) {
+                start = false;
+                skipByteOrderMark();
+            }
+        }
+
+        private void skipByteOrderMark() {
+            final int i = buffer.position();
+
+            if (buffer.get(i) == (byte) 0xEF && buffer.get(i + 1) == (byte) 0xBB && buffer.get(i + 2) == (byte) 0xBF) {
+                buffer.position(i + 3);
+            }
+        }
     }
 }
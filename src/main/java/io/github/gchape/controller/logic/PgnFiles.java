@@ -0,0 +1,54 @@
+package io.github.gchape.controller.logic;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Turns the paths a user selected into the files to analyze.
+ */
+public final class PgnFiles {
+    public static final String DEFAULT_GLOB = "*.{pgn,PGN,pgn.gz,pgn.zst,pgn.bz2}";
+
+    private PgnFiles() {
+    }
+
+    /**
+     * Expands directories into the files below them, at any depth, whose name matches a glob. Files given
+     * directly are kept whatever their name. Each file appears once, in the order of the given paths, and the
+     * files of a directory are sorted by path.
+     *
+     * @param paths The selected files and directories.
+     * @param glob  The glob file names in directories must match, such as {@value #DEFAULT_GLOB}.
+     * @return The files.
+     * @throws IOException If a path does not exist or a directory cannot be walked.
+     */
+    public static List<Path> expand(final List<Path> paths, final String glob) throws IOException {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final Set<Path> files = new LinkedHashSet<>();
+
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> matcher.matches(file.getFileName()))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else if (Files.exists(path)) {
+                files.add(path);
+            } else {
+                throw new IOException("No such file or directory: " + path);
+            }
+        }
+
+        return new ArrayList<>(files);
+    }
+}
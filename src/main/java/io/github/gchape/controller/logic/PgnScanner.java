@@ -0,0 +1,161 @@
+package io.github.gchape.controller.logic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds game boundaries in raw PGN bytes. A game is a block of tag-pair lines followed by its movetext;
+ * the movetext ends at the next blank line, at the next tag-pair line or at the end of the input.
+ * <p>
+ * The scanner only records offsets into the buffer it was given, so one instance can be reused for every game.
+ */
+final class PgnScanner {
+    private static final int BLANK = 0;
+    private static final int TAG = 1;
+    private static final int TEXT = 2;
+
+    private static final int SEEKING = 0;
+    private static final int HEADERS = 1;
+    private static final int GAP = 2;
+    private static final int MOVES = 3;
+
+    private int headerStart;
+    private int headerEnd;
+    private int movesStart;
+    private int movesEnd;
+    private int next;
+
+    /**
+     * Classifies a line as blank, tag pair or movetext by its first non-whitespace byte.
+     *
+     * @param buffer The buffer holding the line.
+     * @param start  The offset of the first byte of the line.
+     * @param end    The offset just past the last byte of the line, excluding the line feed.
+     * @return One of {@code BLANK}, {@code TAG} or {@code TEXT}.
+     */
+    private static int classify(final ByteBuffer buffer, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.get(i);
+
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return b == '[' ? TAG : TEXT;
+            }
+        }
+
+        return BLANK;
+    }
+
+    private static int indexOfLineFeed(final ByteBuffer buffer, final int from, final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Scans for the next complete game between {@code from} and {@code limit}.
+     *
+     * @param buffer The buffer holding the PGN bytes; its position and limit are not used or changed.
+     * @param from   The offset to start scanning at.
+     * @param limit  The offset just past the last readable byte.
+     * @param eof    Whether {@code limit} is the end of the input, which then terminates the last game.
+     * @return true if a complete game was found, false if more input is needed or the input is exhausted.
+     */
+    boolean scan(final ByteBuffer buffer, final int from, final int limit, final boolean eof) {
+        int state = SEEKING;
+        headerStart = headerEnd = movesStart = movesEnd = from;
+
+        for (int i = from; i < limit; ) {
+            int end = indexOfLineFeed(buffer, i, limit);
+            if (end < 0) {
+                if (!eof) return false;
+                end = limit;
+            }
+
+            final int kind = classify(buffer, i, end);
+            final int nextLine = Math.min(end + 1, limit);
+
+            switch (state) {
+                case SEEKING -> {
+                    if (kind == TAG) {
+                        headerStart = i;
+                        state = HEADERS;
+                    } else if (kind == TEXT) {
+                        headerStart = headerEnd = movesStart = i;
+                        state = MOVES;
+                    }
+                }
+                case HEADERS -> {
+                    if (kind != TAG) {
+                        headerEnd = i;
+
+                        if (kind == TEXT) {
+                            movesStart = i;
+                            state = MOVES;
+                        } else state = GAP;
+                    }
+                }
+                case GAP -> {
+                    if (kind == TAG) {
+                        return complete(i, i, i);
+                    } else if (kind == TEXT) {
+                        movesStart = i;
+                        state = MOVES;
+                    }
+                }
+                case MOVES -> {
+                    if (kind == BLANK) {
+                        return complete(movesStart, i, nextLine);
+                    } else if (kind == TAG) {
+                        return complete(movesStart, i, i);
+                    }
+                }
+            }
+
+            i = nextLine;
+        }
+
+        if (!eof) return false;
+
+        return switch (state) {
+            case HEADERS -> {
+                headerEnd = limit;
+                yield complete(limit, limit, limit);
+            }
+            case GAP -> complete(limit, limit, limit);
+            case MOVES -> complete(movesStart, limit, limit);
+            default -> false;
+        };
+    }
+
+    private boolean complete(final int movesStart, final int movesEnd, final int next) {
+        this.movesStart = movesStart;
+        this.movesEnd = movesEnd;
+        this.next = next;
+
+        return true;
+    }
+
+    int headerStart() {
+        return headerStart;
+    }
+
+    int headerEnd() {
+        return headerEnd;
+    }
+
+    int movesStart() {
+        return movesStart;
+    }
+
+    int movesEnd() {
+        return movesEnd;
+    }
+
+    /**
+     * @return The offset at which scanning for the game after the last one found should resume.
+     */
+    int next() {
+        return next;
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs games on a fixed pool of worker threads fed through a bounded queue. The thread calling
+ * {@link #run(Iterable)} is the producer: it pulls games from the source and blocks as soon as the queue is full,
+ * so at most {@code capacity + workers} games are in memory however large the file is.
+ * <p>
+ * Several sources, usually one per file, run on the same pool through {@link #run(List)}: each is read by a
+ * reader thread of its own, and the readers take turns on the shared queue, so a huge file does not starve the
+ * others. A file cut by {@link Parser#split(int)} gives one source per range, all under the file's name, so its
+ * ranges are parsed by several readers at once and reported together. Cut each file into
+ * {@link #rangesPerFile(int)} ranges, so the ranges of the first file do not take every reader.
+ * <p>
+ * The pool size and queue capacity default to the {@code pgnalyze.workers} and {@code pgnalyze.queue} system
+ * properties, see {@link #fromSystemProperties()}.
+ */
+public final class Pipeline {
+    private static final Runnable STOP = () -> {
+    };
+
+    private final int workers;
+    private final int capacity;
+
+    /**
+     * @param workers  The number of worker threads.
+     * @param capacity The number of games that may wait in the queue before the producer blocks.
+     */
+    public Pipeline(final int workers, final int capacity) {
+        if (workers < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Workers and capacity must be positive: " + workers + ", " + capacity);
+        }
+
+        this.workers = workers;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Builds a pipeline from {@code pgnalyze.workers} (one worker per core by default) and {@code pgnalyze.queue}
+     * (64 games per worker by default).
+     */
+    public static Pipeline fromSystemProperties() {
+        final int workers = Integer.getInteger("pgnalyze.workers", Runtime.getRuntime().availableProcessors());
+
+        return new Pipeline(workers, Integer.getInteger("pgnalyze.queue", 64 * workers));
+    }
+
+    public int workers() {
+        return workers;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Tells how finely to cut files run together. Sources are read in list order, so if every file were cut
+     * into {@code workers} ranges the first file would take every reader and the others would wait for it;
+     * cutting each into its share of the workers starts them all at once.
+     *
+     * @param files The number of files run together.
+     * @return The number of ranges to pass to {@link Parser#split(int)} for each file, at least 1.
+     */
+    public int rangesPerFile(final int files) {
+        return Math.max(1, workers / Math.max(1, files));
+    }
+
+    /**
+     * Runs every game of the source and waits for all of them to finish. A game that throws does not stop its
+     * worker. If the source itself fails, the games already queued still run before the failure is rethrown.
+     *
+     * @param games The games to run, pulled one at a time.
+     * @return The number of games run and the time it took.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public Summary run(final Iterable<? extends Runnable> games) throws InterruptedException {
+        final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity);
+        Metrics.INSTANCE.watch(queue);
+
+        final long start = System.nanoTime();
+        final List<Thread> threads = startWorkers(queue);
+
+        long count = 0;
+        try {
+            for (Runnable game : games) {
+                queue.put(game);
+                count++;
+            }
+        } finally {
+            try {
+                stop(queue, threads);
+            } finally {
+                Metrics.INSTANCE.unwatch(queue);
+            }
+        }
+
+        return new Summary(count, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs every game of several sources on the shared pool and waits for all of them to finish.
+     * <p>
+     * Up to {@code workers} sources are read at a time, each by its own reader thread; the next source starts
+     * as soon as one is exhausted. The queue is fair, so readers blocked on a full queue get a slot in the order
+     * they asked for one: while several sources are being read they share the workers about equally, however
+     * many games each holds. A source that fails does not stop the others; once they are done, the first
+     * failure is rethrown.
+     *
+     * @param sources The sources, started in list order.
+     * @return The number of games run and the time it took, overall and per source name, sources sharing a
+     * name being timed from the first one opened to the last game finished.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the readers or workers.
+     */
+    public Report run(final List<Source> sources) throws InterruptedException {
+        final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(capacity, true);
+        final Queue<Tally> pending = new ConcurrentLinkedQueue<>();
+        final List<Tally> tallies = new ArrayList<>(sources.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        for (Source source : sources) tallies.add(new Tally(source));
+        pending.addAll(tallies);
+        Metrics.INSTANCE.watch(queue);
+
+        final long start = System.nanoTime();
+        final List<Thread> threads = startWorkers(queue);
+        final List<Thread> readers = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < Math.min(workers, sources.size()); i++) {
+                readers.add(Thread.ofPlatform()
+                        .name("pgnalyze-reader-", i)
+                        .daemon()
+                        .start(() -> read(pending, queue, failure)));
+            }
+
+            try {
+                for (Thread reader : readers) reader.join();
+            } catch (InterruptedException e) {
+                readers.forEach(Thread::interrupt);
+                throw e;
+            }
+        } finally {
+            try {
+                stop(queue, threads);
+            } finally {
+                Metrics.INSTANCE.unwatch(queue);
+            }
+        }
+
+        if (failure.get() != null) throw failure.get();
+
+        final Map<String, List<Tally>> byName = new LinkedHashMap<>();
+        for (Tally tally : tallies) byName.computeIfAbsent(tally.source.name(), __ -> new ArrayList<>()).add(tally);
+
+        final Map<String, Summary> summaries = new LinkedHashMap<>();
+        long count = 0;
+        for (var entry : byName.entrySet()) {
+            final Summary summary = Tally.summary(entry.getValue());
+
+            summaries.put(entry.getKey(), summary);
+            count += summary.games();
+        }
+
+        return new Report(new Summary(count, System.nanoTime() - start), Collections.unmodifiableMap(summaries));
+    }
+
+    private List<Thread> startWorkers(final BlockingQueue<Runnable> queue) {
+        final List<Thread> threads = new ArrayList<>(workers);
+
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofPlatform()
+                    .name("pgnalyze-worker-", i)
+                    .daemon()
+                    .start(() -> work(queue)));
+        }
+
+        return threads;
+    }
+
+    /**
+     * Feeds the games of one pending source after another into the queue, until none is left.
+     */
+    private static void read(final Queue<Tally> pending, final BlockingQueue<Runnable> queue,
+                             final AtomicReference<RuntimeException> failure) {
+        try {
+            for (Tally tally = pending.poll(); tally != null; tally = pending.poll()) {
+                tally.started = System.nanoTime();
+
+                try {
+                    for (Runnable game : tally.source.games()) queue.put(tally.wrap(game));
+                } catch (RuntimeException e) {
+                    if (!failure.compareAndSet(null, e)) failure.get().addSuppressed(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lets the workers drain the queue and waits for them. If the wait is interrupted the workers are
+     * interrupted too, so none is left blocked on an abandoned queue.
+     */
+    private static void stop(final BlockingQueue<Runnable> queue, final List<Thread> threads)
+            throws InterruptedException {
+        try {
+            for (int i = 0; i < threads.size(); i++) queue.put(STOP);
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            throw e;
+        }
+    }
+
+    private static void work(final BlockingQueue<Runnable> queue) {
+        try {
+            for (Runnable game = queue.take(); game != STOP; game = queue.take()) {
+                try {
+                    game.run();
+                } catch (RuntimeException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A named source of games, usually the games of one file.
+     *
+     * @param name  The name the source is reported under.
+     * @param games The games, pulled one at a time.
+     */
+    public record Source(String name, Iterable<? extends Runnable> games) {
+    }
+
+    /**
+     * @param total   The games of every source, timed from the first worker starting to the last one finishing.
+     * @param sources The games of each source by name, in the order the sources were given, each timed from
+     *                the source being opened to its last game finishing.
+     */
+    public record Report(Summary total, Map<String, Summary> sources) {
+    }
+
+    /**
+     * Counts the games of one source as the workers finish them.
+     */
+    private static final class Tally {
+        private final Source source;
+        private final LongAdder games = new LongAdder();
+        private final AtomicLong finished = new AtomicLong();
+        private volatile long started;
+
+        private Tally(final Source source) {
+            this.source = source;
+        }
+
+        private Runnable wrap(final Runnable game) {
+            return () -> {
+                try {
+                    game.run();
+                } finally {
+                    games.increment();
+                    finished.accumulateAndGet(System.nanoTime(), Math::max);
+                }
+            };
+        }
+
+        /**
+         * Sums the games of tallies, timed from the first that started to the last game finished.
+         */
+        private static Summary summary(final List<Tally> tallies) {
+            long count = 0, started = Long.MAX_VALUE, finished = Long.MIN_VALUE;
+            for (Tally tally : tallies) {
+                final long games = tally.games.sum();
+                if (games == 0) continue;
+
+                count += games;
+                started = Math.min(started, tally.started);
+                finished = Math.max(finished, tally.finished.get());
+            }
+
+            return new Summary(count, count == 0 ? 0 : finished - started);
+        }
+    }
+
+    /**
+     * @param games The number of games run.
+     * @param nanos The wall-clock time from the first worker starting to the last one finishing.
+     */
+    public record Summary(long games, long nanos) {
+        public double gamesPerSecond() {
+            return nanos == 0 ? 0 : games * 1e9 / nanos;
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An inverted index from position to the games that reached it: for every {@link Board#key() key}, the
+ * (game, ply) pairs of the positions with that key. It is built while games are replayed, see
+ * {@link Parser#setPositionIndex(Writer)}, and answers {@link #find(String)} for a FEN by binary search, without
+ * replaying anything. A game is named by its source and its position in the source, as reported with its result,
+ * so a hit points at the same game whatever the number of workers, and at {@link GameArchive#game(int)} for an
+ * archive written from that source.
+ * <pre>
+ * header    "PGNP", version                                                  (8 bytes)
+ * postings  per position, by unsigned key: per pair, by game then ply, varint game number minus the previous
+ *           one in the list, varint ply; a game number is its source times 2^31 plus its id
+ * keys      per position, by unsigned key: key (8 bytes), offset of its postings (8 bytes)
+ * trailer   offset of the keys, position count, pair count, "PGNP"           (28 bytes)
+ * </pre>
+ * All numbers are little-endian. The key table is mapped and costs 16 bytes per position on disk only; a pair
+ * mostly takes two or three bytes, since games that share a position are close together in a corpus.
+ */
+public final class PositionIndex implements Closeable {
+    static final int MAGIC = 0x504E4750;
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 28;
+    private static final int KEY_SIZE = 16;
+    private static final int CHUNK_BITS = 26;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] keyChunks;
+    private final long keysOffset;
+    private final long positions;
+    private final long pairs;
+
+    private PositionIndex(final FileChannel channel, final ByteBuffer[] keyChunks, final long keysOffset,
+                          final long positions, final long pairs) {
+        this.channel = channel;
+        this.keyChunks = keyChunks;
+        this.keysOffset = keysOffset;
+        this.positions = positions;
+        this.pairs = pairs;
+    }
+
+    /**
+     * Starts a new index. Pairs are sorted in memory and spilled to temporary files next to it, which
+     * {@link Writer#close()} merges into the index.
+     *
+     * @param file The index file, replaced if it exists.
+     * @return The writer.
+     */
+    public static Writer create(final Path file) {
+        return new Writer(file, Writer.BUFFER_PAIRS);
+    }
+
+    static Writer create(final Path file, final int bufferPairs) {
+        return new Writer(file, bufferPairs);
+    }
+
+    /**
+     * Opens an index. The key table is mapped; the postings are read from the file as queries need them, so
+     * the index stays open until {@link #close()}.
+     *
+     * @param file A file written by {@link Writer#close()}.
+     * @return The index.
+     * @throws IOException If the file cannot be read or is not a complete index.
+     */
+    public static PositionIndex open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + TRAILER_SIZE) throw new IOException("Not a position index: " + file);
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            final ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - TRAILER_SIZE,
+                    TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || trailer.getInt(24) != MAGIC) {
+                throw new IOException("Not a complete position index: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported position index version " + header.getInt(4) + ": " + file);
+            }
+
+            final long keysOffset = trailer.getLong(0), positions = trailer.getLong(8);
+            if (keysOffset + positions * KEY_SIZE != fileSize - TRAILER_SIZE) {
+                throw new IOException("Not a complete position index: " + file);
+            }
+
+            final ByteBuffer[] chunks = new ByteBuffer[(int) (positions + (1 << CHUNK_BITS) - 1 >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long first = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, keysOffset + first * KEY_SIZE,
+                        Math.min(1L << CHUNK_BITS, positions - first) * KEY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new PositionIndex(channel, chunks, keysOffset, positions, trailer.getLong(16));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of distinct positions in the index.
+     */
+    public long size() {
+        return positions;
+    }
+
+    /**
+     * @return The number of (game, ply) pairs in the index.
+     */
+    public long pairs() {
+        return pairs;
+    }
+
+    /**
+     * @param fen A FEN record, see {@link Board#fromFen(String)}.
+     * @return The games that reached the position, see {@link #find(long)}.
+     * @throws IOException If the postings cannot be read.
+     */
+    public List<Hit> find(final String fen) throws IOException {
+        return find(Board.fromFen(fen).key());
+    }
+
+    /**
+     * @param key The {@link Board#key() key} of a position.
+     * @return Every time a game reached the position, by game then ply, or an empty list.
+     * @throws IOException If the postings cannot be read.
+     */
+    public List<Hit> find(final long key) throws IOException {
+        long low = 0, high = positions - 1;
+        while (low <= high) {
+            final long middle = low + high >>> 1;
+            final int order = Long.compareUnsigned(key(middle), key);
+
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return postings(offset(middle), middle + 1 < positions ? offset(middle + 1) : keysOffset);
+            }
+        }
+
+        return List.of();
+    }
+
+    private long key(final long position) {
+        return keyChunks[(int) (position >>> CHUNK_BITS)].getLong(slot(position));
+    }
+
+    private long offset(final long position) {
+        return keyChunks[(int) (position >>> CHUNK_BITS)].getLong(slot(position) + 8);
+    }
+
+    private static int slot(final long position) {
+        return (int) (position & (1 << CHUNK_BITS) - 1) * KEY_SIZE;
+    }
+
+    private List<Hit> postings(final long start, final long end) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(end - start));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, start + bytes.position()) < 0) throw new IOException("Truncated position index");
+        }
+        bytes.flip();
+
+        final List<Hit> hits = new ArrayList<>();
+        long game = 0;
+        while (bytes.hasRemaining()) {
+            game += Varint.readLong(bytes);
+            hits.add(new Hit((int) (game >>> 31), (int) game & Integer.MAX_VALUE, Varint.read(bytes)));
+        }
+
+        return hits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A game reaching a position.
+     *
+     * @param source The source of the game.
+     * @param game   The id of the game, its position in the source.
+     * @param ply    The number of moves played before the position, 0 for the initial position.
+     */
+    public record Hit(int source, int game, int ply) {
+    }
+
+    /**
+     * Collects the positions of replayed games into an index. A pair is kept as two {@code long}s, the key and
+     * the source, game id and ply, in a buffer that is sorted and spilled to a run file whenever it fills;
+     * closing merges the runs, {@link #FAN_IN} at a time, so memory stays bounded however many positions the
+     * corpus has. Positions may be added from any thread. The worker that fills a buffer swaps in a second one
+     * and sorts and writes the full one outside the lock, so the others keep adding; they only wait if the
+     * second buffer fills before the spill ends. Both buffers are allocated on first use.
+     */
+    public static final class Writer implements Closeable {
+        static final int BUFFER_PAIRS = 1 << 22;
+        static final int FAN_IN = 64;
+
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final int BUFFERS = 2;
+
+        private final Path file;
+        private final int capacity;
+        private final List<Path> runs = new ArrayList<>();
+
+        private long[] keys = null;
+        private long[] values = null;
+        private long[] spareKeys = null;
+        private long[] spareValues = null;
+        private int buffers = 0;
+        private int size = 0;
+        private int runCount = 0;
+        private int spilling = 0;
+        private IOException failure = null;
+        private boolean closed = false;
+
+        private Writer(final Path file, final int bufferPairs) {
+            this.file = file;
+            this.capacity = bufferPairs;
+        }
+
+        /**
+         * Adds the positions of a valid game. Plies past 65535 are not indexed.
+         *
+         * @param source   The source of the game, below 65536.
+         * @param game     The id of the game.
+         * @param keys     The key of the position before each move.
+         * @param plies    The number of moves.
+         * @param finalKey The key of the position after the last move.
+         * @throws UncheckedIOException If a run cannot be spilled.
+         */
+        void add(final int source, final int game, final long[] keys, final int plies, final long finalKey) {
+            final long number = (long) source << 31 | game;
+            final int positions = Math.min(plies, 0xFFFF) + 1;
+
+            for (int ply = 0; ply < positions; ) {
+                final Run full;
+                synchronized (this) {
+                    try {
+                        if (!fill()) return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    final int end = Math.min(positions, ply + capacity - size);
+                    for (; ply < end; ply++) {
+                        this.keys[size] = ply < plies ? keys[ply] : finalKey;
+                        values[size++] = number << 16 | ply;
+                    }
+                    full = size == capacity ? detach() : null;
+                }
+
+                if (full != null) spill(full);
+            }
+        }
+
+        /**
+         * Makes a buffer current, the spare one or a new one while fewer than {@value #BUFFERS} exist, waiting for
+         * a spill to hand one back otherwise.
+         *
+         * @return A boolean indicating whether the writer is still open.
+         */
+        private boolean fill() throws InterruptedException {
+            while (keys == null && !closed) {
+                if (spareKeys != null) {
+                    keys = spareKeys;
+                    values = spareValues;
+                    spareKeys = spareValues = null;
+                } else if (buffers < BUFFERS) {
+                    keys = new long[capacity];
+                    values = new long[capacity];
+                    buffers++;
+                } else {
+                    wait();
+                }
+            }
+
+            return !closed;
+        }
+
+        /**
+         * Takes the current buffer, and a run file for it, out of the writer.
+         */
+        private Run detach() {
+            final Run run = new Run(file.resolveSibling(file.getFileName() + ".run" + runCount++), keys, values,
+                    size);
+            keys = values = null;
+            size = 0;
+            spilling++;
+
+            return run;
+        }
+
+        /**
+         * Sorts a detached buffer and writes it to its run file, without holding the lock, then hands the buffer
+         * back as the spare one.
+         */
+        private void spill(final Run run) {
+            IOException error = null;
+            try {
+                sort(run.keys, run.values, 0, run.size);
+                try (var output = new RunOutput(run.file)) {
+                    for (int i = 0; i < run.size; i++) output.accept(run.keys[i], run.values[i]);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                runs.add(run.file);
+                if (run.keys != null) {
+                    spareKeys = run.keys;
+                    spareValues = run.values;
+                }
+                if (error != null && failure == null) failure = error;
+                spilling--;
+                notifyAll();
+            }
+
+            if (error != null) throw new UncheckedIOException(error);
+        }
+
+        private record Run(Path file, long[] keys, long[] values, int size) {
+        }
+
+        /**
+         * Waits for the spills in progress, spills what is left and merges every run into the index, then deletes
+         * the runs.
+         *
+         * @throws IOException If a run could not be spilled, or the index cannot be written.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+
+            try {
+                while (spilling > 0) wait();
+                if (failure != null) throw failure;
+
+                if (size > 0 || runs.isEmpty()) spill(detach());
+
+                while (runs.size() > FAN_IN) {
+                    final List<Path> group = new ArrayList<>(runs.subList(0, FAN_IN));
+                    runs.subList(0, FAN_IN).clear();
+
+                    final Path merged = file.resolveSibling(file.getFileName() + ".run" + runCount++);
+                    try (var output = new RunOutput(merged)) {
+                        merge(group, output);
+                    }
+                    runs.add(merged);
+                }
+
+                try (var output = new IndexOutput(file)) {
+                    merge(runs, output);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a spill");
+            } finally {
+                for (Path run : runs) Files.deleteIfExists(run);
+            }
+        }
+
+        /**
+         * Merges sorted runs into an output and deletes them.
+         */
+        private static void merge(final List<Path> runs, final Output output) throws IOException {
+            final PriorityQueue<RunInput> queue = new PriorityQueue<>((a, b) -> compare(a.key, a.value, b.key,
+                    b.value));
+            try {
+                for (Path run : runs) {
+                    final RunInput input = new RunInput(run);
+                    if (input.next()) {
+                        queue.add(input);
+                    } else {
+                        input.close();
+                    }
+                }
+
+                while (!queue.isEmpty()) {
+                    final RunInput input = queue.poll();
+                    output.accept(input.key, input.value);
+
+                    if (input.next()) {
+                        queue.add(input);
+                    } else {
+                        input.close();
+                    }
+                }
+            } finally {
+                for (RunInput input : queue) input.close();
+            }
+
+            for (Path run : runs) Files.deleteIfExists(run);
+        }
+
+        private static int compare(final long key, final long value, final long otherKey, final long otherValue) {
+            final int order = Long.compareUnsigned(key, otherKey);
+
+            return order != 0 ? order : Long.compare(value, otherValue);
+        }
+
+        /**
+         * Sorts the pairs in {@code [from, to)} by key, then game and ply: a quicksort on the two arrays, with
+         * Hoare partitioning so the many pairs of a common position split evenly.
+         */
+        static void sort(final long[] keys, final long[] values, int from, int to) {
+            while (to - from > 16) {
+                final int middle = from + to - 1 >>> 1;
+                final long pivotKey = keys[middle], pivotValue = values[middle];
+
+                int i = from - 1, j = to;
+                while (true) {
+                    do i++; while (compare(keys[i], values[i], pivotKey, pivotValue) < 0);
+                    do j--; while (compare(keys[j], values[j], pivotKey, pivotValue) > 0);
+                    if (i >= j) break;
+
+                    final long key = keys[i], value = values[i];
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    keys[j] = key;
+                    values[j] = value;
+                }
+
+                if (j + 1 - from < to - j - 1) {
+                    sort(keys, values, from, j + 1);
+                    from = j + 1;
+                } else {
+                    sort(keys, values, j + 1, to);
+                    to = j + 1;
+                }
+            }
+
+            for (int i = from + 1; i < to; i++) {
+                final long key = keys[i], value = values[i];
+                int j = i - 1;
+                for (; j >= from && compare(keys[j], values[j], key, value) > 0; j--) {
+                    keys[j + 1] = keys[j];
+                    values[j + 1] = values[j];
+                }
+                keys[j + 1] = key;
+                values[j + 1] = value;
+            }
+        }
+
+        private interface Output extends Closeable {
+            void accept(long key, long value) throws IOException;
+        }
+
+        /**
+         * Writes pairs as they are, 16 bytes each.
+         */
+        private static final class RunOutput implements Output {
+            private final FileChannel channel;
+            private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            private RunOutput(final Path run) throws IOException {
+                channel = FileChannel.open(run, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+            }
+
+            @Override
+            public void accept(final long key, final long value) throws IOException {
+                if (out.remaining() < 16) drain(channel, out);
+                out.putLong(key).putLong(value);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (channel) {
+                    drain(channel, out);
+                }
+            }
+        }
+
+        /**
+         * Writes pairs in the index format: the postings go straight to the index and the key table to a file
+         * next to it, which is appended once the postings end.
+         */
+        private static final class IndexOutput implements Output {
+            private final FileChannel channel;
+            private final Path keyFile;
+            private final FileChannel keyChannel;
+            private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            private final ByteBuffer keyOut = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            private long position = 0;
+            private long positions = 0;
+            private long pairs = 0;
+            private long lastKey;
+            private long lastGame;
+
+            private IndexOutput(final Path file) throws IOException {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+                keyFile = file.resolveSibling(file.getFileName() + ".keys");
+                keyChannel = FileChannel.open(keyFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+                out.putInt(MAGIC).putInt(VERSION);
+                position = HEADER_SIZE;
+            }
+
+            @Override
+            public void accept(final long key, final long value) throws IOException {
+                if (positions == 0 || key != lastKey) {
+                    if (keyOut.remaining() < KEY_SIZE) drain(keyChannel, keyOut);
+                    keyOut.putLong(key).putLong(position);
+
+                    lastKey = key;
+                    lastGame = 0;
+                    positions++;
+                }
+
+                final long game = value >>> 16;
+                if (out.remaining() < Varint.MAX_LONG_BYTES + Varint.MAX_BYTES) drain(channel, out);
+                final int before = out.position();
+                Varint.writeLong(out, game - lastGame);
+                Varint.write(out, (int) value & 0xFFFF);
+                position += out.position() - before;
+
+                lastGame = game;
+                pairs++;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (channel; keyChannel) {
+                    drain(keyChannel, keyOut);
+                    drain(channel, out);
+
+                    final long keysOffset = position;
+                    for (long sent = 0, size = keyChannel.size(); sent < size; ) {
+                        sent += keyChannel.transferTo(sent, size - sent, channel);
+                    }
+
+                    out.putLong(keysOffset).putLong(positions).putLong(pairs).putInt(MAGIC);
+                    drain(channel, out);
+                } finally {
+                    Files.deleteIfExists(keyFile);
+                }
+            }
+        }
+
+        /**
+         * Reads back a run written by {@link RunOutput}.
+         */
+        private static final class RunInput implements Closeable {
+            private final FileChannel channel;
+            private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            private long key;
+            private long value;
+
+            private RunInput(final Path run) throws IOException {
+                channel = FileChannel.open(run, StandardOpenOption.READ);
+                in.limit(0);
+            }
+
+            private boolean next() throws IOException {
+                if (in.remaining() < 16) {
+                    in.compact();
+                    while (in.position() < 16 && channel.read(in) > 0) ;
+                    in.flip();
+                    if (in.remaining() < 16) return false;
+                }
+
+                key = in.getLong();
+                value = in.getLong();
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        }
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+}
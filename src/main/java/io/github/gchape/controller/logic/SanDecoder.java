@@ -0,0 +1,217 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.exceptions.AmbiguousMoveException;
+import io.github.gchape.exceptions.IllegalMoveException;
+import io.github.gchape.exceptions.InvalidCastlingException;
+import io.github.gchape.exceptions.InvalidMoveException;
+import io.github.gchape.exceptions.InvalidPromotionException;
+import io.github.gchape.exceptions.NoPieceFoundException;
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.Move;
+import io.github.gchape.model.entities.Piece;
+import io.github.gchape.model.entities.Square;
+
+/**
+ * Decodes SAN tokens into packed moves (see {@link Move}) against the current board. Decoding reads the token
+ * in place and allocates nothing unless the token is rejected.
+ * <p>
+ * By default the decoder is lenient: it takes the first piece that reaches the target square and does not look at
+ * king safety. Strict decoding also requires the move to be fully legal, with pins, checks and castling through
+ * attacked squares taken into account, and rejects tokens that more than one legal move matches.
+ */
+public final class SanDecoder {
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long RANK_1 = 0xFFL;
+
+    private SanDecoder() {
+    }
+
+    /**
+     * Decodes a SAN token leniently; see {@link #decode(Board, CharSequence, int, int, boolean, boolean)}.
+     */
+    public static int decode(final Board board, final CharSequence san, final int start, final int end,
+                             final boolean isWhite) {
+        return decode(board, san, start, end, isWhite, false);
+    }
+
+    /**
+     * Decodes a SAN token without trailing annotations.
+     *
+     * @param board   The board the move is played on.
+     * @param san     The text holding the token.
+     * @param start   The offset of the first character of the token.
+     * @param end     The offset just past the last character of the token.
+     * @param isWhite A boolean indicating whether white is moving.
+     * @param strict  A boolean indicating whether the move must be fully legal and unambiguous.
+     * @return The packed move, ready for {@link Board#make(int, boolean)}.
+     * @throws InvalidMoveException      If the token is not valid SAN.
+     * @throws InvalidCastlingException  If castling is not allowed based on the current game state.
+     * @throws InvalidPromotionException If the promotion does not reach the last rank or names an invalid piece.
+     * @throws NoPieceFoundException     If no piece can make the move.
+     * @throws IllegalMoveException      In strict mode, if the move breaks a rule lenient decoding ignores.
+     * @throws AmbiguousMoveException    In strict mode, if several legal moves match the token.
+     */
+    public static int decode(final Board board, final CharSequence san, final int start, final int end,
+                             final boolean isWhite, final boolean strict) {
+        if (isCastle(san, start, end, 3)) return castle(board, san, start, end, isWhite, true, strict);
+        if (isCastle(san, start, end, 5)) return castle(board, san, start, end, isWhite, false, strict);
+        if (end - start < 2) throw invalid(san, start, end);
+
+        final char first = san.charAt(start);
+        final Piece piece = "KQRBN".indexOf(first) >= 0 ? Piece.of(first) : Piece.PAWN;
+        final int body = Character.isUpperCase(first) ? start + 1 : start;
+
+        int squareEnd = end;
+        Piece promotion = null;
+        if (end - body >= 4 && san.charAt(end - 2) == '=') {
+            promotion = Piece.of(san.charAt(end - 1));
+            squareEnd = end - 2;
+        } else if (piece == Piece.PAWN && end - body >= 3 && "QRBN".indexOf(san.charAt(end - 1)) >= 0) {
+            promotion = Piece.of(san.charAt(end - 1));
+            squareEnd = end - 1;
+        }
+
+        if (squareEnd - body < 2) throw invalid(san, start, end);
+
+        final int file = san.charAt(squareEnd - 2) - 'a';
+        final int rank = san.charAt(squareEnd - 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) throw invalid(san, start, end);
+
+        final int to = rank * 8 + file;
+
+        boolean isCapture = false;
+        long candidates = -1L;
+        for (int i = body; i < squareEnd - 2; i++) {
+            final char c = san.charAt(i);
+
+            if (c == 'x' || c == ':') {
+                isCapture = true;
+            } else if (c >= 'a' && c <= 'h') {
+                candidates &= FILE_A << (c - 'a');
+            } else if (c >= '1' && c <= '8') {
+                candidates &= RANK_1 << 8 * (c - '1');
+            } else if (c != '-') {
+                throw invalid(san, start, end);
+            }
+        }
+
+        if (promotion != null) {
+            if (piece != Piece.PAWN) throw invalid(san, start, end);
+
+            if (rank != (isWhite ? 7 : 0) || promotion == Piece.KING || promotion == Piece.PAWN) {
+                throw new InvalidPromotionException(san.subSequence(squareEnd - 2, squareEnd).toString());
+            }
+        }
+
+        if (strict) return resolveLegal(board, san, start, end, piece, to, candidates, promotion, isWhite, isCapture);
+
+        return move(board, piece, board.findPiece(piece, to, candidates, isWhite, isCapture), to, promotion,
+                isWhite, isCapture);
+    }
+
+    private static int move(final Board board, final Piece piece, final int from, final int to, final Piece promotion,
+                            final boolean isWhite, final boolean isCapture) {
+        int flags = isCapture ? Move.CAPTURE : 0;
+        if (piece == Piece.PAWN) {
+            if (isCapture && isEnPassant(board, from, to, isWhite)) flags |= Move.EN_PASSANT;
+            if (Math.abs(to - from) == 16) flags |= Move.DOUBLE_PUSH;
+        }
+
+        return promotion == null
+                ? Move.of(from, to, piece, flags)
+                : Move.of(from, to, piece, promotion, flags);
+    }
+
+    /**
+     * Resolves a move strictly: the capture marker must match the target square, pawns reaching the last rank
+     * must promote, and exactly one candidate may leave its own king safe.
+     */
+    private static int resolveLegal(final Board board, final CharSequence san, final int start, final int end,
+                                    final Piece piece, final int to, final long candidates, final Piece promotion,
+                                    final boolean isWhite, final boolean isCapture) {
+        final long target = 1L << to;
+
+        if ((board.occupancy(isWhite) & target) != 0) {
+            throw illegal(san, start, end, "the target square holds a piece of the same colour");
+        }
+        if ((board.pieces(!isWhite, Piece.KING) & target) != 0) {
+            throw illegal(san, start, end, "the king cannot be captured");
+        }
+        if (!isCapture && (board.occupancy(!isWhite) & target) != 0) {
+            throw illegal(san, start, end, "the capture is not marked");
+        }
+        if (isCapture && (board.occupancy(!isWhite) & target) == 0
+                && (piece != Piece.PAWN || to != board.enPassant())) {
+            throw illegal(san, start, end, "there is nothing to capture");
+        }
+        if (piece == Piece.PAWN && promotion == null && to >>> 3 == (isWhite ? 7 : 0)) {
+            throw illegal(san, start, end, "the pawn must promote");
+        }
+
+        final long origins = board.origins(piece, to, isWhite, isCapture) & candidates;
+        if (origins == 0) throw new NoPieceFoundException(piece, Square.of(to).toChessNotation());
+
+        int legal = 0;
+        int resolved = 0;
+        for (long bits = origins; bits != 0; bits &= bits - 1) {
+            final int move = move(board, piece, Long.numberOfTrailingZeros(bits), to, promotion, isWhite, isCapture);
+
+            if (board.isLegal(move, isWhite)) {
+                legal++;
+                resolved = move;
+            }
+        }
+
+        if (legal == 0) throw illegal(san, start, end, "it leaves the king in check");
+        if (legal > 1) throw new AmbiguousMoveException(san.subSequence(start, end).toString(), legal);
+
+        return resolved;
+    }
+
+    /**
+     * Checks if a pawn capture qualifies as "en passant": it lands on the square the opponent's pawn skipped with
+     * its double step on the previous move, and that pawn is still beside the capturing one.
+     */
+    private static boolean isEnPassant(final Board board, final int from, final int to, final boolean isWhite) {
+        return to == board.enPassant()
+                && (board.occupancy(!isWhite) & 1L << to) == 0
+                && board.contains(!isWhite, Piece.PAWN, (from & ~7) | (to & 7));
+    }
+
+    private static int castle(final Board board, final CharSequence san, final int start, final int end,
+                              final boolean isWhite, final boolean kingSide, final boolean strict) {
+        if (!board.canCastle(isWhite, kingSide)) {
+            throw new InvalidCastlingException(isWhite ? "White" : "Black", kingSide ? "KingSide" : "QueenSide");
+        }
+        if (strict && !board.isCastlingLegal(isWhite, kingSide)) {
+            throw illegal(san, start, end, "the path is blocked or the king is in, passes through or lands in check");
+        }
+
+        final int from = isWhite ? 4 : 60;
+        return Move.of(from, kingSide ? from + 2 : from - 2, Piece.KING, Move.CASTLE);
+    }
+
+    /**
+     * Matches {@code O-O} or {@code O-O-O} of the given length; zeros are accepted in place of the letter O.
+     */
+    private static boolean isCastle(final CharSequence san, final int start, final int end, final int length) {
+        if (end - start != length) return false;
+
+        for (int i = 0; i < length; i++) {
+            final char c = san.charAt(start + i);
+
+            if (i % 2 == 0 ? c != 'O' && c != '0' : c != '-') return false;
+        }
+
+        return true;
+    }
+
+    private static IllegalMoveException illegal(final CharSequence san, final int start, final int end,
+                                                final String reason) {
+        return new IllegalMoveException(san.subSequence(start, end).toString(), reason);
+    }
+
+    private static InvalidMoveException invalid(final CharSequence san, final int start, final int end) {
+        return new InvalidMoveException(san.subSequence(start, end).toString());
+    }
+}
@@ -0,0 +1,173 @@
+package io.github.gchape.controller.logic;
+
+/**
+ * Single-pass movetext tokenizer. Each call to {@link #next()} classifies the next token and records its bounds,
+ * so walking a game allocates nothing per token.
+ * <p>
+ * SAN tokens exclude move numbers and trailing {@code + # ! ?} annotations, comments exclude their delimiters,
+ * NAGs exclude the {@code $} and variations span their outermost parentheses.
+ */
+public final class Tokenizer {
+    public static final int END = 0;
+    public static final int SAN = 1;
+    public static final int COMMENT = 2;
+    public static final int NAG = 3;
+    public static final int VARIATION = 4;
+    public static final int RESULT = 5;
+
+    private CharSequence text = "";
+    private int length;
+    private int position;
+
+    private int start;
+    private int end;
+
+    private static boolean isDelimiter(final char c) {
+        return c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == ';' || c == '$';
+    }
+
+    private static boolean isAnnotation(final char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    /**
+     * Points the tokenizer at the start of a new movetext.
+     *
+     * @param text The movetext to tokenize.
+     * @return This tokenizer.
+     */
+    public Tokenizer reset(final CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+        this.position = 0;
+        this.start = this.end = 0;
+
+        return this;
+    }
+
+    /**
+     * Advances to the next token. Move numbers, escaped lines and stray punctuation are skipped.
+     *
+     * @return The type of the token, or {@link #END} once the movetext is exhausted.
+     */
+    public int next() {
+        while (position < length) {
+            final char c = text.charAt(position);
+
+            if (c <= ' ' || c == ')' || c == '}' || c == '.') {
+                position++;
+            } else if (c == '{') {
+                return span(COMMENT, position + 1, '}');
+            } else if (c == ';') {
+                return span(COMMENT, position + 1, '\n');
+            } else if (c == '%' && (position == 0 || text.charAt(position - 1) == '\n')) {
+                span(COMMENT, position, '\n');
+            } else if (c == '(') {
+                return variation();
+            } else if (c == '$') {
+                start = ++position;
+                while (position < length && Character.isDigit(text.charAt(position))) position++;
+                end = position;
+
+                return NAG;
+            } else if (Character.isDigit(c) && isMoveNumber()) {
+                while (position < length && text.charAt(position) == '.') position++;
+            } else {
+                return word();
+            }
+        }
+
+        start = end = length;
+        return END;
+    }
+
+    /**
+     * @return The offset of the first character of the current token.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return The offset just past the last character of the current token.
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Consumes a run of digits and reports whether it is a move number, i.e. followed by a dot.
+     * The position is left after the digits only for move numbers.
+     */
+    private boolean isMoveNumber() {
+        int i = position;
+        while (i < length && Character.isDigit(text.charAt(i))) i++;
+
+        if (i < length && text.charAt(i) == '.') {
+            position = i;
+            return true;
+        }
+
+        return false;
+    }
+
+    private int span(final int type, final int from, final char terminator) {
+        int i = from;
+        while (i < length && text.charAt(i) != terminator) i++;
+
+        start = from;
+        end = i;
+        position = Math.min(i + 1, length);
+
+        return type;
+    }
+
+    private int variation() {
+        start = position;
+
+        int depth = 0;
+        while (position < length) {
+            final char c = text.charAt(position++);
+
+            if (c == '{') {
+                while (position < length && text.charAt(position) != '}') position++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                break;
+            }
+        }
+
+        end = position;
+        return VARIATION;
+    }
+
+    private int word() {
+        start = position;
+        while (position < length && !isDelimiter(text.charAt(position))) position++;
+
+        end = position;
+        while (end > start && isAnnotation(text.charAt(end - 1))) end--;
+
+        if (end == start) {
+            end = position;
+            return NAG;
+        }
+
+        return isResult() ? RESULT : SAN;
+    }
+
+    private boolean isResult() {
+        return is("*") || is("1-0") || is("0-1") || is("1/2-1/2");
+    }
+
+    private boolean is(final String token) {
+        if (end - start != token.length()) return false;
+
+        for (int i = 0; i < token.length(); i++) {
+            if (text.charAt(start + i) != token.charAt(i)) return false;
+        }
+
+        return true;
+    }
+}
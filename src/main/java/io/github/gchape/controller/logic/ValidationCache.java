@@ -0,0 +1,313 @@
+package io.github.gchape.controller.logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Remembers the result of every game of a PGN file across runs, keyed by the {@link XxHash64} of the game's raw
+ * bytes, so a run over a file that mostly grew or barely changed only replays the games it has not seen. Pass
+ * it to {@link Parser#setCache(ValidationCache)}: a game whose bytes hash to a known key is reported with its
+ * stored result, without decoding or replaying its movetext.
+ * <p>
+ * The cache lives in a sidecar file next to the PGN, see {@link #sidecar(Path)}. It is loaded once when opened;
+ * the results of the current run, hits and misses alike, are collected separately and replace the file on
+ * {@link #close()}, so games removed from the PGN drop out of the cache; games the run drops, through a filter
+ * or as duplicates, are carried over, see {@link #keep(long)}. A run that fails part way calls
+ * {@link #abort()} instead, which keeps the file as it was. Results depend on strict mode, which the
+ * file records: a cache written in the other mode is ignored.
+ * <pre>
+ * header   "PGNC", version, flags, entry count                 (16 bytes)
+ * entries  per game: hash (8 bytes), varint failing ply or 0 if valid, then for an invalid game
+ *          san, type and message, each a varint length + 1 (0 for null) and UTF-8 bytes
+ * </pre>
+ * Two different games share a key with a probability of about n&sup2; / 2<sup>65</sup>, far below one in a
+ * million for a hundred million games.
+ */
+public final class ValidationCache implements Closeable {
+    static final int MAGIC = 0x434E4750;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final boolean strict;
+    private final Table previous;
+    private Table current = new Table(1 << 10);
+
+    private boolean closed = false;
+
+    private ValidationCache(final Path file, final boolean strict, final Table previous) {
+        this.file = file;
+        this.strict = strict;
+        this.previous = previous;
+    }
+
+    /**
+     * @param pgn A PGN file.
+     * @return The sidecar file of its cache: the same name with {@code .cache} appended.
+     */
+    public static Path sidecar(final Path pgn) {
+        return pgn.resolveSibling(pgn.getFileName() + ".cache");
+    }
+
+    /**
+     * Loads a cache. A missing file, or one written in the other mode, gives an empty cache. The file is read
+     * rather than mapped, so that {@link #close()} can replace it on every platform.
+     *
+     * @param file   The sidecar file, created on {@link #close()} if it does not exist.
+     * @param strict A boolean indicating whether the games are replayed in strict mode.
+     * @return The cache.
+     * @throws IOException If the file exists but cannot be read or is not a cache.
+     */
+    public static ValidationCache open(final Path file, final boolean strict) throws IOException {
+        final ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return new ValidationCache(file, strict, new Table(0));
+        }
+
+        if (in.limit() < HEADER_SIZE || in.getInt(0) != MAGIC) throw new IOException("Not a cache: " + file);
+        if (in.getInt(4) != VERSION || (in.getInt(8) & GameArchive.STRICT) != (strict ? GameArchive.STRICT : 0)) {
+            return new ValidationCache(file, strict, new Table(0));
+        }
+
+        final int count = in.getInt(12);
+        final Table table = new Table(count);
+        in.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            final long hash = in.getLong();
+            final int ply = Varint.read(in);
+
+            table.put(hash, ply == 0 ? null : new ErrorLog.Failure(0, 0, ply, readString(in), readString(in),
+                    readString(in)));
+        }
+
+        return new ValidationCache(file, strict, table);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final int length = Varint.read(in) - 1;
+        if (length < 0) return null;
+
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The number of games loaded from the sidecar file.
+     */
+    public int size() {
+        return previous.size;
+    }
+
+    /**
+     * Looks up a game in the results loaded from the sidecar file. Safe from any thread, since those results
+     * never change once loaded.
+     *
+     * @param hash The hash of the game's bytes.
+     * @return The slot of the game, or -1 if it is not cached.
+     */
+    int find(final long hash) {
+        return previous.find(hash);
+    }
+
+    /**
+     * @param slot A slot returned by {@link #find(long)}.
+     * @return The failure that ended the game, or null if it is valid.
+     */
+    ErrorLog.Failure failure(final int slot) {
+        return previous.failure(slot);
+    }
+
+    /**
+     * Records the result of a game in this run, to be saved on {@link #close()}.
+     *
+     * @param hash    The hash of the game's bytes.
+     * @param failure The failure that ended the game, or null if it is valid.
+     */
+    synchronized void put(final long hash, final ErrorLog.Failure failure) {
+        if (!closed) current.put(hash, failure);
+    }
+
+    /**
+     * Carries the result of a game this run does not report over from the sidecar file, such as a game a filter
+     * drops, so that it stays in the cache.
+     *
+     * @param hash The hash of the game's bytes.
+     */
+    synchronized void keep(final long hash) {
+        if (closed) return;
+
+        final int slot = previous.find(hash);
+        if (slot >= 0) current.put(hash, previous.failure(slot));
+    }
+
+    /**
+     * Discards the results of this run and leaves the sidecar file untouched, for a run that did not reach every
+     * game: saving its partial results would drop the others from the cache. Closing afterwards does nothing.
+     */
+    public synchronized void abort() {
+        closed = true;
+        current = null;
+    }
+
+    /**
+     * Replaces the sidecar file with the results of this run, which must have reached every game of the file;
+     * otherwise call {@link #abort()}. The file is written next to it and moved into place, so a run
+     * interrupted while saving leaves the previous cache intact.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+            out.putInt(MAGIC).putInt(VERSION).putInt(strict ? GameArchive.STRICT : 0).putInt(current.size);
+
+            for (int slot = 0; slot < current.keys.length; slot++) {
+                if (!current.used(slot)) continue;
+
+                if (out.remaining() < Long.BYTES + Varint.MAX_BYTES) drain(channel, out);
+                out.putLong(current.keys[slot]);
+
+                final ErrorLog.Failure failure = current.failure(slot);
+                if (failure == null) {
+                    Varint.write(out, 0);
+                } else {
+                    Varint.write(out, failure.ply());
+                    writeString(channel, out, failure.san());
+                    writeString(channel, out, failure.type());
+                    writeString(channel, out, failure.message());
+                }
+            }
+            drain(channel, out);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(final FileChannel channel, final ByteBuffer out, final String value)
+            throws IOException {
+        final byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+
+        if (out.remaining() < Varint.MAX_BYTES) drain(channel, out);
+        Varint.write(out, value == null ? 0 : bytes.length + 1);
+
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!out.hasRemaining()) drain(channel, out);
+
+            final int n = Math.min(out.remaining(), bytes.length - offset);
+            out.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    /**
+     * An open-addressing hash table from game hash to result: a {@code long} key and an {@code int} value per
+     * slot, the value being -1 for a valid game or the index of its failure. Invalid games are rare, so the
+     * table costs about 24 bytes per game at its load factor of one half.
+     */
+    private static final class Table {
+        private static final int VALID = -1;
+        private static final int EMPTY = -2;
+
+        private final List<ErrorLog.Failure> failures = new ArrayList<>();
+
+        private long[] keys;
+        private int[] values;
+        private int size = 0;
+
+        private Table(final int expected) {
+            final int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1;
+
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, EMPTY);
+        }
+
+        private boolean used(final int slot) {
+            return values[slot] != EMPTY;
+        }
+
+        private ErrorLog.Failure failure(final int slot) {
+            return values[slot] == VALID ? null : failures.get(values[slot]);
+        }
+
+        private int find(final long hash) {
+            final int mask = keys.length - 1;
+            for (int slot = spread(hash) & mask; used(slot); slot = slot + 1 & mask) {
+                if (keys[slot] == hash) return slot;
+            }
+
+            return -1;
+        }
+
+        private void put(final long hash, final ErrorLog.Failure failure) {
+            if (find(hash) >= 0) return;
+            if (2 * (size + 1) > keys.length) grow();
+
+            final int mask = keys.length - 1;
+            int slot = spread(hash) & mask;
+            while (used(slot)) slot = slot + 1 & mask;
+
+            keys[slot] = hash;
+            if (failure == null) {
+                values[slot] = VALID;
+            } else {
+                values[slot] = failures.size();
+                failures.add(failure);
+            }
+            size++;
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(values, EMPTY);
+
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == EMPTY) continue;
+
+                int slot = spread(oldKeys[i]) & mask;
+                while (used(slot)) slot = slot + 1 & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        /**
+         * The keys are xxHash values, whose low bits are already well mixed.
+         */
+        private static int spread(final long hash) {
+            return (int) hash;
+        }
+    }
+}
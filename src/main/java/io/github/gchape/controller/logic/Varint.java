@@ -0,0 +1,61 @@
+package io.github.gchape.controller.logic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unsigned LEB128 integers, as stored in {@link GameArchive} and {@link ValidationCache} files: seven bits per
+ * byte, low bits first, the high bit set on every byte but the last. Values below 128 take one byte.
+ */
+final class Varint {
+    /**
+     * The most bytes an {@code int} takes.
+     */
+    static final int MAX_BYTES = 5;
+    /**
+     * The most bytes a {@code long} takes.
+     */
+    static final int MAX_LONG_BYTES = 10;
+
+    private Varint() {
+    }
+
+    static int read(final ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Writes a value, which the caller makes room for: up to {@value #MAX_BYTES} bytes.
+     */
+    static void write(final ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long readLong(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Writes a value, which the caller makes room for: up to {@value #MAX_LONG_BYTES} bytes.
+     */
+    static void writeLong(final ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.gchape.exceptions;
+
+public class AmbiguousMoveException extends RuntimeException {
+    public AmbiguousMoveException(final String move, final int candidates) {
+        super("Ambiguous move '" + move + "': " + candidates + " pieces can make it.");
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.gchape.exceptions;
+
+public class IllegalMoveException extends RuntimeException {
+    public IllegalMoveException(final String move, final String reason) {
+        super("Illegal move '" + move + "': " + reason + ".");
+    }
+}
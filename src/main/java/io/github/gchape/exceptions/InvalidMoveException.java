@@ -0,0 +1,7 @@
+package io.github.gchape.exceptions;
+
+public class InvalidMoveException extends RuntimeException {
+    public InvalidMoveException(final String move) {
+        super("Invalid move '" + move + "'. It is not valid SAN.");
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.gchape.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-linear histogram of non-negative values, in the manner of HdrHistogram: every power of two is cut into
+ * {@value #SUB_BUCKETS} equal buckets, so any recorded value is known to within about 3% whatever its
+ * magnitude. Values from 0 to 2^{@value #MAX_EXPONENT} are tracked; larger ones count in the last bucket.
+ * <p>
+ * Recording is one atomic increment on a fixed array, without allocation or locks. Threads are spread over a
+ * few stripes of buckets by thread id so that workers rarely touch the same cache line; {@link #snapshot()}
+ * adds the stripes up.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray sums;
+
+    public Histogram() {
+        this(Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 16) * 2 - 1));
+    }
+
+    /**
+     * @param stripes The number of stripes, a power of two.
+     */
+    Histogram(final int stripes) {
+        this.stripeMask = stripes - 1;
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.sums = new AtomicLongArray(stripes * 8);
+    }
+
+    /**
+     * Returns the bucket of a value: values below {@code 2 * SUB_BUCKETS} have a bucket each, larger ones share a
+     * bucket with the values that have the same {@code SUB_BITS + 1} leading bits.
+     */
+    static int bucket(final long value) {
+        final long clamped = Math.min(Math.max(value, 0), MAX_VALUE);
+        final int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(clamped) - SUB_BITS);
+
+        return (shift << SUB_BITS) + (int) (clamped >>> shift);
+    }
+
+    /**
+     * @return The largest value that falls into a bucket.
+     */
+    static long highestValue(final int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+
+        final int shift = (bucket >>> SUB_BITS) - 1;
+        final long top = bucket - ((long) shift << SUB_BITS);
+
+        return ((top + 1) << shift) - 1;
+    }
+
+    public void record(final long value) {
+        final int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+
+        counts.getAndIncrement(stripe * BUCKETS + bucket(value));
+        // Sums sit 64 bytes apart so stripes do not share a cache line.
+        sums.getAndAdd(stripe * 8, Math.max(value, 0));
+    }
+
+    /**
+     * Adds up the stripes. Values recorded while the snapshot is taken may or may not be included.
+     */
+    public Snapshot snapshot() {
+        final long[] merged = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                final long n = counts.get(stripe * BUCKETS + bucket);
+
+                merged[bucket] += n;
+                count += n;
+            }
+            sum += sums.get(stripe * 8);
+        }
+
+        return new Snapshot(merged, count, sum);
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(final long[] counts, final long count, final long sum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100.
+         * @return The highest value of the bucket holding that percentile, or 0 if nothing was recorded.
+         */
+        public long percentile(final double percentile) {
+            if (count == 0) return 0;
+
+            final long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) return highestValue(bucket);
+            }
+
+            return highestValue(counts.length - 1);
+        }
+
+        public long max() {
+            return percentile(100);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.gchape.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counts what the analysis does while it runs: games and bytes parsed, games and plies replayed, results handed
+ * to the sink, with latency histograms for parsing, replaying and delivering each game, and the depth of the
+ * work queue. Recording costs a few uncontended atomic increments per game, so it is always on.
+ * <p>
+ * The numbers can be read through {@link #snapshot()}, printed periodically with {@link #report(Consumer, long)}
+ * or browsed over JMX once {@link #registerMBean()} has been called.
+ */
+public enum Metrics implements MetricsMXBean {
+    INSTANCE;
+
+    public static final String OBJECT_NAME = "io.github.gchape:type=Metrics";
+
+    private final long started = System.nanoTime();
+
+    private final LongAdder gamesParsed = new LongAdder();
+    private final LongAdder bytesParsed = new LongAdder();
+    private final LongAdder gamesReplayed = new LongAdder();
+    private final LongAdder invalidGames = new LongAdder();
+    private final LongAdder gamesSkipped = new LongAdder();
+    private final LongAdder plies = new LongAdder();
+    private final LongAdder resultsDelivered = new LongAdder();
+
+    private final Histogram parseNanos = new Histogram();
+    private final Histogram replayNanos = new Histogram();
+    private final Histogram sinkNanos = new Histogram();
+
+    private final AtomicReference<BlockingQueue<?>> queue = new AtomicReference<>();
+
+    /**
+     * Records one game split off the input.
+     *
+     * @param bytes The size of the game in the input.
+     * @param nanos The time spent finding and decoding it.
+     */
+    public void parsed(final long bytes, final long nanos) {
+        gamesParsed.increment();
+        bytesParsed.add(bytes);
+        parseNanos.record(nanos);
+    }
+
+    /**
+     * Records one game replayed.
+     *
+     * @param plies The number of plies played, including the one that failed.
+     * @param valid A boolean indicating whether every move could be replayed.
+     * @param nanos The time spent replaying it.
+     */
+    public void replayed(final int plies, final boolean valid, final long nanos) {
+        gamesReplayed.increment();
+        this.plies.add(plies);
+        if (!valid) invalidGames.increment();
+        replayNanos.record(nanos);
+    }
+
+    /**
+     * Records one game whose result was known from an earlier run, so it was reported without being replayed.
+     */
+    public void skipped() {
+        gamesSkipped.increment();
+    }
+
+    /**
+     * Records one result handed to a sink.
+     *
+     * @param nanos The time the sink took to accept it.
+     */
+    public void delivered(final long nanos) {
+        resultsDelivered.increment();
+        sinkNanos.record(nanos);
+    }
+
+    /**
+     * Reports the depth of a work queue until {@link #unwatch(BlockingQueue)} is called with it.
+     */
+    public void watch(final BlockingQueue<?> queue) {
+        this.queue.set(queue);
+    }
+
+    public void unwatch(final BlockingQueue<?> queue) {
+        this.queue.compareAndSet(queue, null);
+    }
+
+    public Snapshot snapshot() {
+        final BlockingQueue<?> watched = queue.get();
+
+        return new Snapshot(System.nanoTime(),
+                gamesParsed.sum(), bytesParsed.sum(), gamesReplayed.sum(), invalidGames.sum(), gamesSkipped.sum(),
+                plies.sum(), resultsDelivered.sum(),
+                watched == null ? 0 : watched.size(),
+                watched == null ? 0 : watched.size() + watched.remainingCapacity(),
+                parseNanos.snapshot(), replayNanos.snapshot(), sinkNanos.snapshot());
+    }
+
+    /**
+     * Passes a one-line summary to {@code out} every {@code periodMillis} ms, on a daemon thread. Rates are
+     * computed over the last period.
+     *
+     * @return A handle that stops the reports when closed.
+     */
+    public Reporter report(final Consumer<String> out, final long periodMillis) {
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("pgnalyze-metrics").daemon().factory());
+        final AtomicReference<Snapshot> previous = new AtomicReference<>(snapshot());
+
+        reporter.scheduleAtFixedRate(() -> {
+            final Snapshot current = snapshot();
+            out.accept(current.format(previous.getAndSet(current)));
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+
+        return reporter::shutdownNow;
+    }
+
+    /**
+     * Registers this instance on the platform MBean server as {@value #OBJECT_NAME}, unless it already is.
+     */
+    public synchronized void registerMBean() {
+        try {
+            final var server = ManagementFactory.getPlatformMBeanServer();
+            final var name = new ObjectName(OBJECT_NAME);
+
+            if (!server.isRegistered(name)) server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Metrics not exposed over JMX: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public long getGamesParsed() {
+        return gamesParsed.sum();
+    }
+
+    @Override
+    public long getBytesParsed() {
+        return bytesParsed.sum();
+    }
+
+    @Override
+    public long getGamesReplayed() {
+        return gamesReplayed.sum();
+    }
+
+    @Override
+    public long getInvalidGames() {
+        return invalidGames.sum();
+    }
+
+    @Override
+    public long getGamesSkipped() {
+        return gamesSkipped.sum();
+    }
+
+    @Override
+    public long getPlies() {
+        return plies.sum();
+    }
+
+    @Override
+    public long getResultsDelivered() {
+        return resultsDelivered.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        final BlockingQueue<?> watched = queue.get();
+        return watched == null ? 0 : watched.size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        final BlockingQueue<?> watched = queue.get();
+        return watched == null ? 0 : watched.size() + watched.remainingCapacity();
+    }
+
+    @Override
+    public long getParseNanosP50() {
+        return parseNanos.snapshot().percentile(50);
+    }
+
+    @Override
+    public long getParseNanosP99() {
+        return parseNanos.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getReplayNanosP50() {
+        return replayNanos.snapshot().percentile(50);
+    }
+
+    @Override
+    public long getReplayNanosP99() {
+        return replayNanos.snapshot().percentile(99);
+    }
+
+    @Override
+    public long getReplayNanosMax() {
+        return replayNanos.snapshot().max();
+    }
+
+    @Override
+    public long getSinkNanosP99() {
+        return sinkNanos.snapshot().percentile(99);
+    }
+
+    @Override
+    public String getSnapshot() {
+        return snapshot().format(null);
+    }
+
+    /**
+     * A periodic report, stopped by {@link #close()}.
+     */
+    public interface Reporter extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * The metrics at one point in time.
+     *
+     * @param nanoTime      The {@link System#nanoTime()} of the snapshot.
+     * @param queueDepth    The number of games waiting for a worker, or 0 when no analysis runs.
+     * @param queueCapacity The capacity of the work queue, or 0 when no analysis runs.
+     */
+    public record Snapshot(long nanoTime, long gamesParsed, long bytesParsed, long gamesReplayed,
+                           long invalidGames, long gamesSkipped, long plies, long resultsDelivered,
+                           int queueDepth, int queueCapacity,
+                           Histogram.Snapshot parse, Histogram.Snapshot replay, Histogram.Snapshot sink) {
+        /**
+         * Formats the snapshot on one line, for example
+         * <pre>
+         * games 120000 (41250/s) invalid 12 skipped 0 plies 6.1M/s parse 48.2 MB/s queue 64/64 |
+         * parse p50 4.1us p99 18us | replay p50 21us p99 95us max 1.2ms | sink p99 0.9us
+         * </pre>
+         *
+         * @param previous The snapshot to compute rates from, or null for rates since the JVM started.
+         */
+        public String format(final Snapshot previous) {
+            final long since = previous == null ? INSTANCE.started : previous.nanoTime;
+            final double seconds = Math.max(nanoTime - since, 1) / 1e9;
+
+            final long games = gamesReplayed - (previous == null ? 0 : previous.gamesReplayed);
+            final long played = plies - (previous == null ? 0 : previous.plies);
+            final long bytes = bytesParsed - (previous == null ? 0 : previous.bytesParsed);
+
+            return String.format(Locale.ROOT,
+                    "games %d (%.0f/s) invalid %d skipped %d plies %.1fM/s parse %.1f MB/s queue %d/%d"
+                            + " | parse p50 %s p99 %s | replay p50 %s p99 %s max %s | sink p99 %s",
+                    gamesReplayed, games / seconds, invalidGames, gamesSkipped, played / seconds / 1e6,
+                    bytes / seconds / 1e6,
+                    queueDepth, queueCapacity,
+                    duration(parse.percentile(50)), duration(parse.percentile(99)),
+                    duration(replay.percentile(50)), duration(replay.percentile(99)), duration(replay.max()),
+                    duration(sink.percentile(99)));
+        }
+
+        private static String duration(final long nanos) {
+            if (nanos < 1_000) return nanos + "ns";
+            if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+            if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+
+            return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+        }
+    }
+}
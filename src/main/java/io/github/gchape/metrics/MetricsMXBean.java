@@ -0,0 +1,42 @@
+package io.github.gchape.metrics;
+
+/**
+ * The JMX view of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}. Counters are totals since the
+ * JVM started; latencies are in nanoseconds.
+ */
+public interface MetricsMXBean {
+    long getGamesParsed();
+
+    long getBytesParsed();
+
+    long getGamesReplayed();
+
+    long getInvalidGames();
+
+    long getGamesSkipped();
+
+    long getPlies();
+
+    long getResultsDelivered();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getParseNanosP50();
+
+    long getParseNanosP99();
+
+    long getReplayNanosP50();
+
+    long getReplayNanosP99();
+
+    long getReplayNanosMax();
+
+    long getSinkNanosP99();
+
+    /**
+     * @return The same one-line summary the periodic report prints, with rates since the JVM started.
+     */
+    String getSnapshot();
+}
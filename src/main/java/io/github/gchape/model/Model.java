@@ -1,5 +1,7 @@
 package io.github.gchape.model;
 
+import io.github.gchape.model.entities.ResultIndex;
+import io.github.gchape.model.entities.ResultStore.Column;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -10,12 +12,19 @@ import java.io.File;
 public enum Model {
     INSTANCE;
 
-    private final StringProperty textInput;
+    private final ResultRows resultRows;
     private final ListProperty<File> selectedFiles;
     private final ObjectProperty<TreeItem<String>> fileTree;
 
     private final BooleanProperty analyzeButtonDisabled;
     private final BooleanProperty selectFilesButtonDisabled;
+    private final BooleanProperty strictValidation;
+
+    private final ObjectProperty<Column> filterColumn;
+    private final StringProperty filterText;
+    private final ObjectProperty<ResultIndex.Order> sortOrder;
+
+    private final StringProperty metrics;
 
     Model() {
         fileTree = new SimpleObjectProperty<>(new TreeItem<>());
@@ -23,8 +32,15 @@ public enum Model {
 
         analyzeButtonDisabled = new SimpleBooleanProperty(true);
         selectFilesButtonDisabled = new SimpleBooleanProperty(false);
+        strictValidation = new SimpleBooleanProperty(false);
+
+        resultRows = new ResultRows();
+
+        filterColumn = new SimpleObjectProperty<>(Column.EVENT);
+        filterText = new SimpleStringProperty("");
+        sortOrder = new SimpleObjectProperty<>(new ResultIndex.Order(null, true));
 
-        textInput = new SimpleStringProperty("");
+        metrics = new SimpleStringProperty("");
     }
 
     public ObservableList<File> getSelectedFiles() {
@@ -51,7 +67,27 @@ public enum Model {
         return selectFilesButtonDisabled;
     }
 
-    public StringProperty textInputProperty() {
-        return textInput;
+    public BooleanProperty strictValidationProperty() {
+        return strictValidation;
+    }
+
+    public ResultRows getResultRows() {
+        return resultRows;
+    }
+
+    public ObjectProperty<Column> filterColumnProperty() {
+        return filterColumn;
+    }
+
+    public StringProperty filterTextProperty() {
+        return filterText;
+    }
+
+    public ObjectProperty<ResultIndex.Order> sortOrderProperty() {
+        return sortOrder;
+    }
+
+    public StringProperty metricsProperty() {
+        return metrics;
     }
 }
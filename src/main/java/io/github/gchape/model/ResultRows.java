@@ -0,0 +1,85 @@
+package io.github.gchape.model;
+
+import io.github.gchape.model.entities.GameResult;
+import io.github.gchape.model.entities.ResultIndex;
+import io.github.gchape.model.entities.ResultStore;
+import io.github.gchape.model.entities.ResultStore.Column;
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Observable list of the store rows a {@link ResultIndex} currently shows, for a virtualized table. Elements are
+ * row numbers; cells read their values from {@link #store()}, so only visible rows are ever turned into objects.
+ * <p>
+ * Must be used on the FX thread.
+ */
+public final class ResultRows extends ObservableListBase<Integer> {
+    private final ResultStore store = new ResultStore();
+    private final ResultIndex index = new ResultIndex(store);
+
+    public ResultStore store() {
+        return store;
+    }
+
+    @Override
+    public Integer get(final int position) {
+        return index.row(position);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Appends a batch of results and reports the rows it adds to the current order.
+     */
+    public void append(final List<GameResult> results) {
+        final int before = index.size();
+
+        results.forEach(store::add);
+        changed(index.update(), before);
+    }
+
+    public void filter(final Column column, final String text) {
+        final int before = index.size();
+
+        index.filter(column, text);
+        changed(0, before);
+    }
+
+    public void sort(final ResultIndex.Order order) {
+        final int before = index.size();
+
+        index.sort(order.column(), order.ascending());
+        changed(0, before);
+    }
+
+    /**
+     * Reports everything from {@code first} on as replaced: the old rows up to the old size are removed and the
+     * new rows up to the new size are added.
+     */
+    private void changed(final int first, final int before) {
+        final int after = index.size();
+        if (first >= before && first >= after) return;
+
+        beginChange();
+        if (first < before) {
+            nextRemove(first, new AbstractList<Integer>() {
+                @Override
+                public Integer get(final int i) {
+                    return index.previousRow(first + i);
+                }
+
+                @Override
+                public int size() {
+                    return before - first;
+                }
+            });
+        }
+        if (first < after) nextAdd(first, after);
+        endChange();
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.gchape.model.entities;
+
+/**
+ * Precomputed attack tables. Knight, king and pawn attacks are plain lookups; sliding pieces use one ray per
+ * direction, cut at the first blocker, so every lookup is constant time and allocation free.
+ * <p>
+ * Squares are bitboard indices, see {@link Square#index()}.
+ */
+public final class Attacks {
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final boolean[] ASCENDING = {true, true, true, false, false, false, false, true};
+
+    private static final int[] ROOK_DIRECTIONS = {0, 2, 4, 6};
+    private static final int[] BISHOP_DIRECTIONS = {1, 3, 5, 7};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+        final int[][] knightJumps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+
+        for (int square = 0; square < 64; square++) {
+            final int x = square & 7;
+            final int y = square >>> 3;
+
+            for (int[] jump : knightJumps) {
+                KNIGHT[square] |= bit(x + jump[0], y + jump[1]);
+            }
+
+            for (int direction = 0; direction < 8; direction++) {
+                KING[square] |= bit(x + DX[direction], y + DY[direction]);
+
+                for (int i = 1; i < 8; i++) {
+                    RAYS[direction][square] |= bit(x + i * DX[direction], y + i * DY[direction]);
+                }
+            }
+
+            PAWN[0][square] = bit(x - 1, y + 1) | bit(x + 1, y + 1);
+            PAWN[1][square] = bit(x - 1, y - 1) | bit(x + 1, y - 1);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    private static long bit(final int x, final int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8 ? 1L << (y * 8 + x) : 0;
+    }
+
+    /**
+     * Returns the squares a ray reaches, up to and including its first blocker. The nearest blocker is the lowest
+     * set bit on rays running towards higher indices and the highest set bit on the others.
+     */
+    private static long ray(final int direction, final int square, final long occupancy) {
+        long attacks = RAYS[direction][square];
+        final long blockers = attacks & occupancy;
+
+        if (blockers != 0) {
+            final int blocker = ASCENDING[direction]
+                    ? Long.numberOfTrailingZeros(blockers)
+                    : 63 - Long.numberOfLeadingZeros(blockers);
+
+            attacks ^= RAYS[direction][blocker];
+        }
+
+        return attacks;
+    }
+
+    public static long knight(final int square) {
+        return KNIGHT[square];
+    }
+
+    public static long king(final int square) {
+        return KING[square];
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the pawn is white.
+     * @param square  The square of the pawn.
+     * @return The squares the pawn attacks.
+     */
+    public static long pawn(final boolean isWhite, final int square) {
+        return PAWN[isWhite ? 0 : 1][square];
+    }
+
+    public static long rook(final int square, final long occupancy) {
+        long attacks = 0;
+        for (int direction : ROOK_DIRECTIONS) attacks |= ray(direction, square, occupancy);
+
+        return attacks;
+    }
+
+    public static long bishop(final int square, final long occupancy) {
+        long attacks = 0;
+        for (int direction : BISHOP_DIRECTIONS) attacks |= ray(direction, square, occupancy);
+
+        return attacks;
+    }
+
+    public static long queen(final int square, final long occupancy) {
+        return rook(square, occupancy) | bishop(square, occupancy);
+    }
+
+    /**
+     * Returns the squares a piece other than a pawn attacks. Since these attacks are symmetric, this is also
+     * the set of squares from which such a piece would attack {@code square}.
+     *
+     * @param piece     The type of piece; pawns are not supported.
+     * @param square    The square of the piece.
+     * @param occupancy The mask of all occupied squares, used to cut sliding rays.
+     * @return The attacked squares.
+     */
+    public static long of(final Piece piece, final int square, final long occupancy) {
+        return switch (piece) {
+            case KING -> KING[square];
+            case QUEEN -> queen(square, occupancy);
+            case ROOK -> rook(square, occupancy);
+            case BISHOP -> bishop(square, occupancy);
+            case KNIGHT -> KNIGHT[square];
+            case PAWN -> throw new IllegalArgumentException("Pawn attacks depend on colour");
+        };
+    }
+}
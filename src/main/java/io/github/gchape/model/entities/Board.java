@@ -2,40 +2,339 @@ package io.github.gchape.model.entities;
 
 import io.github.gchape.exceptions.NoPieceFoundException;
 
-import java.util.EnumMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.IntStream;
+import java.util.*;
 
+/**
+ * Chess board stored as bitboards: one {@code long} per piece type and colour, where bit {@code i} is the square
+ * with index {@code i} (see {@link Square#index()}), plus one occupancy mask per colour.
+ * <p>
+ * {@link #getWhitePieces()} and {@link #getBlackPieces()} expose the same state as maps of square names; they
+ * read and write the bitboards directly and are meant for setup and inspection, not for replaying moves.
+ * Games are replayed with {@link #make(int, boolean)}, which also tracks castling rights and the en-passant square.
+ * <p>
+ * Every change, through moves or the views, also updates the position's {@link Zobrist} key, see {@link #key()}.
+ */
 public class Board {
-    private final Map<Piece, Set<String>> blackPieces = new EnumMap<>(Piece.class);
-    private final Map<Piece, Set<String>> whitePieces = new EnumMap<>(Piece.class);
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    private static final int WHITE = 0;
+    private static final int BLACK = 1;
+    private static final Piece[] PIECES = Piece.values();
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long RANK_1 = 0xFFL;
+
+    /**
+     * Castling rights kept when a piece moves from or to each square: moving a king or rook off its starting
+     * square, or capturing a rook on it, gives up the matching rights.
+     */
+    private static final int[] CASTLING_RIGHTS_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_KEPT, 15);
+
+        CASTLING_RIGHTS_KEPT[0] = 15 & ~WHITE_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[4] = 15 & ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[7] = 15 & ~WHITE_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[56] = 15 & ~BLACK_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[60] = 15 & ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[63] = 15 & ~BLACK_KING_SIDE;
+    }
+
+    private final long[] bitboards = new long[2 * PIECES.length];
+    private final long[] occupancy = new long[2];
+
+    private int castlingRights = 15;
+    private int enPassant = -1;
+    private boolean whiteToMove = true;
+
+    private long key = Zobrist.castling(15);
+    private long enPassantKey = 0;
+
+    private Map<Piece, Set<String>> blackPieces = null;
+    private Map<Piece, Set<String>> whitePieces = null;
+
+    /**
+     * The starting position. New boards copy its bitboards and key rather than placing 32 pieces by name.
+     */
+    private static final Board START = new Board(null);
 
     public Board() {
-        whitePieces.put(Piece.KING, new HashSet<>(Set.of("e1")));
-        whitePieces.put(Piece.QUEEN, new HashSet<>(Set.of("d1")));
-        whitePieces.put(Piece.ROOK, new HashSet<>(Set.of("a1", "h1")));
-        whitePieces.put(Piece.BISHOP, new HashSet<>(Set.of("c1", "f1")));
-        whitePieces.put(Piece.KNIGHT, new HashSet<>(Set.of("b1", "g1")));
-        whitePieces.put(Piece.PAWN, new HashSet<>(Set.of("a2", "b2", "c2", "d2", "e2", "f2", "g2", "h2")));
+        this(START);
+    }
 
-        blackPieces.put(Piece.KING, new HashSet<>(Set.of("e8")));
-        blackPieces.put(Piece.QUEEN, new HashSet<>(Set.of("d8")));
-        blackPieces.put(Piece.ROOK, new HashSet<>(Set.of("a8", "h8")));
-        blackPieces.put(Piece.BISHOP, new HashSet<>(Set.of("c8", "f8")));
-        blackPieces.put(Piece.KNIGHT, new HashSet<>(Set.of("b8", "g8")));
-        blackPieces.put(Piece.PAWN, new HashSet<>(Set.of("a7", "b7", "c7", "d7", "e7", "f7", "g7", "h7")));
+    /**
+     * @param start The board to copy the pieces and key of, or null to set up the starting position square by
+     *              square, which is done once, for {@link #START}.
+     */
+    private Board(final Board start) {
+        if (start != null) {
+            System.arraycopy(start.bitboards, 0, bitboards, 0, bitboards.length);
+            System.arraycopy(start.occupancy, 0, occupancy, 0, occupancy.length);
+            key = start.key;
+            return;
+        }
+
+        final Map<Piece, Set<String>> whitePieces = getWhitePieces();
+        final Map<Piece, Set<String>> blackPieces = getBlackPieces();
+
+        whitePieces.put(Piece.KING, Set.of("e1"));
+        whitePieces.put(Piece.QUEEN, Set.of("d1"));
+        whitePieces.put(Piece.ROOK, Set.of("a1", "h1"));
+        whitePieces.put(Piece.BISHOP, Set.of("c1", "f1"));
+        whitePieces.put(Piece.KNIGHT, Set.of("b1", "g1"));
+        whitePieces.put(Piece.PAWN, Set.of("a2", "b2", "c2", "d2", "e2", "f2", "g2", "h2"));
+
+        blackPieces.put(Piece.KING, Set.of("e8"));
+        blackPieces.put(Piece.QUEEN, Set.of("d8"));
+        blackPieces.put(Piece.ROOK, Set.of("a8", "h8"));
+        blackPieces.put(Piece.BISHOP, Set.of("c8", "f8"));
+        blackPieces.put(Piece.KNIGHT, Set.of("b8", "g8"));
+        blackPieces.put(Piece.PAWN, Set.of("a7", "b7", "c7", "d7", "e7", "f7", "g7", "h7"));
     }
 
+    private static int colour(final boolean isWhite) {
+        return isWhite ? WHITE : BLACK;
+    }
+
+    private static int index(final int colour, final Piece piece) {
+        return colour * PIECES.length + piece.ordinal();
+    }
+
+    private static int index(final String notation) {
+        if (notation.length() != 2) return -1;
+
+        final int x = notation.charAt(0) - 'a';
+        final int y = notation.charAt(1) - '1';
+
+        return x >= 0 && x < 8 && y >= 0 && y < 8 ? y * 8 + x : -1;
+    }
+
+    /**
+     * Translates a SAN disambiguation (a file, a rank or both) into the mask of squares it allows.
+     *
+     * @param disambiguation The disambiguation, or null for none.
+     * @return The mask of allowed starting squares.
+     */
+    private static long disambiguationMask(final String disambiguation) {
+        long mask = -1L;
+        if (disambiguation == null) return mask;
+
+        for (int i = 0; i < disambiguation.length(); i++) {
+            final char c = disambiguation.charAt(i);
+
+            if (c >= 'a' && c <= 'h') {
+                mask &= FILE_A << (c - 'a');
+            } else if (c >= '1' && c <= '8') {
+                mask &= RANK_1 << 8 * (c - '1');
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * @return A live view of black's pieces by name, created on first use; replaying games never needs it.
+     */
     public Map<Piece, Set<String>> getBlackPieces() {
+        if (blackPieces == null) blackPieces = new PieceMap(BLACK);
+
         return blackPieces;
     }
 
+    /**
+     * @return A live view of white's pieces by name, created on first use; replaying games never needs it.
+     */
     public Map<Piece, Set<String>> getWhitePieces() {
+        if (whitePieces == null) whitePieces = new PieceMap(WHITE);
+
         return whitePieces;
     }
 
+    /**
+     * @return The castling rights still available, as a combination of {@link #WHITE_KING_SIDE},
+     * {@link #WHITE_QUEEN_SIDE}, {@link #BLACK_KING_SIDE} and {@link #BLACK_QUEEN_SIDE}.
+     */
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    public boolean canCastle(final boolean isWhite, final boolean kingSide) {
+        final int right = kingSide ? WHITE_KING_SIDE : WHITE_QUEEN_SIDE;
+
+        return (castlingRights & (isWhite ? right : right << 2)) != 0;
+    }
+
+    /**
+     * @return The Zobrist key of the position: pieces, side to move, castling rights and, when a capture is
+     * possible, the en-passant file. The side to move is the opposite of the side that made the last move.
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * @return true unless the last move was made by white.
+     */
+    public boolean whiteToMove() {
+        return whiteToMove;
+    }
+
+    /**
+     * @return The index of the square a pawn skipped with its double step on the last move, or -1.
+     */
+    public int enPassant() {
+        return enPassant;
+    }
+
+    /**
+     * Applies a packed move, see {@link Move}. The move is trusted: it is expected to come from a decoder that
+     * already resolved its starting square.
+     *
+     * @param move    The packed move.
+     * @param isWhite A boolean indicating whether the moving side is white.
+     */
+    public void make(final int move, final boolean isWhite) {
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+        final Piece piece = Move.piece(move);
+
+        if (Move.is(move, Move.CASTLE)) {
+            final boolean kingSide = to > from;
+
+            move(isWhite, Piece.KING, from, to);
+            move(isWhite, Piece.ROOK, kingSide ? from + 3 : from - 4, kingSide ? from + 1 : from - 1);
+        } else if (Move.is(move, Move.EN_PASSANT)) {
+            move(isWhite, Piece.PAWN, from, to);
+            remove(!isWhite, Piece.PAWN, (from & ~7) | (to & 7));
+        } else if (Move.is(move, Move.CAPTURE)) {
+            capture(isWhite, piece, from, to);
+        } else {
+            move(isWhite, piece, from, to);
+        }
+
+        if (Move.is(move, Move.PROMOTION)) {
+            remove(isWhite, Piece.PAWN, to);
+            put(isWhite, Move.promotion(move), to);
+        }
+
+        final int rights = castlingRights & CASTLING_RIGHTS_KEPT[from] & CASTLING_RIGHTS_KEPT[to];
+        if (rights != castlingRights) {
+            key ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights);
+            castlingRights = rights;
+        }
+
+        if (whiteToMove == isWhite) {
+            whiteToMove = !isWhite;
+            key ^= Zobrist.blackToMove();
+        }
+
+        enPassant = Move.is(move, Move.DOUBLE_PUSH) ? (from + to) >>> 1 : -1;
+        key ^= enPassantKey;
+        enPassantKey = Zobrist.enPassant(this, whiteToMove);
+        key ^= enPassantKey;
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the pieces are white.
+     * @return The mask of squares occupied by that side.
+     */
+    public long occupancy(final boolean isWhite) {
+        return occupancy[colour(isWhite)];
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the pieces are white.
+     * @param piece   The type of piece.
+     * @return The mask of squares holding that piece.
+     */
+    public long pieces(final boolean isWhite, final Piece piece) {
+        return bitboards[index(colour(isWhite), piece)];
+    }
+
+    public boolean contains(final boolean isWhite, final Piece piece, final int square) {
+        return (pieces(isWhite, piece) & 1L << square) != 0;
+    }
+
+    public void put(final boolean isWhite, final Piece piece, final int square) {
+        final int colour = colour(isWhite);
+
+        final int bitboard = index(colour, piece);
+
+        if ((bitboards[bitboard] & 1L << square) == 0) key ^= Zobrist.piece(bitboard, square);
+        bitboards[bitboard] |= 1L << square;
+        occupancy[colour] |= 1L << square;
+    }
+
+    public void remove(final boolean isWhite, final Piece piece, final int square) {
+        final int colour = colour(isWhite);
+
+        final int bitboard = index(colour, piece);
+
+        if ((bitboards[bitboard] & 1L << square) != 0) key ^= Zobrist.piece(bitboard, square);
+        bitboards[bitboard] &= ~(1L << square);
+        occupancy[colour] &= ~(1L << square);
+    }
+
+    /**
+     * Moves a piece without capturing.
+     *
+     * @param isWhite A boolean indicating whether the piece is white.
+     * @param piece   The type of piece to move.
+     * @param from    The index of the starting square.
+     * @param to      The index of the target square.
+     */
+    public void move(final boolean isWhite, final Piece piece, final int from, final int to) {
+        final int colour = colour(isWhite);
+        final int bitboard = index(colour, piece);
+
+        bitboards[bitboard] = bitboards[bitboard] & ~(1L << from) | 1L << to;
+        occupancy[colour] = occupancy[colour] & ~(1L << from) | 1L << to;
+        key ^= Zobrist.piece(bitboard, from) ^ Zobrist.piece(bitboard, to);
+    }
+
+    /**
+     * Moves a piece and removes whatever opposing piece stands on the target square.
+     *
+     * @param isWhite A boolean indicating whether the capturing piece is white.
+     * @param piece   The type of piece performing the capture.
+     * @param from    The index of the starting square.
+     * @param to      The index of the target square.
+     */
+    public void capture(final boolean isWhite, final Piece piece, final int from, final int to) {
+        final int opponent = colour(!isWhite);
+        final long keep = ~(1L << to);
+
+        for (int i = index(opponent, Piece.KING), end = i + PIECES.length; i < end; i++) {
+            if ((bitboards[i] & ~keep) != 0) key ^= Zobrist.piece(i, to);
+            bitboards[i] &= keep;
+        }
+        occupancy[opponent] &= keep;
+
+        move(isWhite, piece, from, to);
+    }
+
+    /**
+     * Toggles the key for every square of {@code squares} on one bitboard.
+     */
+    private void toggle(final int bitboard, long squares) {
+        for (; squares != 0; squares &= squares - 1) {
+            key ^= Zobrist.piece(bitboard, Long.numberOfTrailingZeros(squares));
+        }
+    }
+
+    private void refreshOccupancy(final int colour) {
+        long mask = 0;
+        for (int i = index(colour, Piece.KING), end = i + PIECES.length; i < end; i++) {
+            mask |= bitboards[i];
+        }
+
+        occupancy[colour] = mask;
+    }
+
     /**
      * Validates whether a move is legal for a specific piece, considering its type, position, and whether it's a capture.
      *
@@ -48,55 +347,59 @@ public class Board {
      */
     public boolean isValidMove(final Square startSquare, final Square targetSquare,
                                final Piece piece, final boolean isWhite, final boolean isCapture) {
-        return switch (piece) {
-            case KING -> startSquare.isKingMoveTo(targetSquare);
-            case QUEEN -> startSquare.isQueenMoveTo(targetSquare);
-            case BISHOP -> startSquare.isBishopMoveTo(targetSquare);
-            case ROOK -> isVacant(startSquare, targetSquare, piece) && startSquare.isRookMoveTo(targetSquare);
-            case KNIGHT -> startSquare.isKnightMoveTo(targetSquare);
-            case PAWN -> {
-                if (isCapture) {
-                    yield startSquare.isPawnCaptureTo(targetSquare, isWhite);
-                } else {
-                    yield startSquare.isPawnMoveTo(targetSquare, isWhite);
-                }
-            }
+        return isValidMove(startSquare.index(), targetSquare.index(), piece, isWhite, isCapture);
+    }
+
+    /**
+     * Validates a move between two square indices; see {@link #isValidMove(Square, Square, Piece, boolean, boolean)}.
+     * Sliding pieces must have a clear path and pawns may not push through an occupied square.
+     */
+    public boolean isValidMove(final int from, final int to, final Piece piece, final boolean isWhite,
+                               final boolean isCapture) {
+        final long occupied = occupancy[WHITE] | occupancy[BLACK];
+
+        final long attacks = switch (piece) {
+            case PAWN -> isCapture ? Attacks.pawn(isWhite, from) : pawnPushes(from, isWhite, occupied);
+            default -> Attacks.of(piece, from, occupied);
         };
+
+        return (attacks & 1L << to) != 0;
+    }
+
+    /**
+     * @return The squares a pawn can push to: one square forward, or two from its starting rank if both are free.
+     */
+    private static long pawnPushes(final int from, final boolean isWhite, final long occupied) {
+        final int forward = isWhite ? 8 : -8;
+        final int rank = from >>> 3;
+
+        if (rank == (isWhite ? 7 : 0)) return 0;
+
+        final long single = 1L << from + forward;
+        if ((single & occupied) != 0 || rank != (isWhite ? 1 : 6)) return single;
+
+        return single | 1L << from + 2 * forward;
     }
 
     /**
-     * Checks if the path for a rook's move is clear (i.e., no pieces are blocking its path).
+     * Returns the squares from which a pawn could reach the target square.
      *
-     * @param startSquare  The starting square of the rook.
-     * @param targetSquare The target square to move the rook to.
-     * @param piece        The type of piece (in this case, a rook).
-     * @return true if the path is clear for the rook's move, false otherwise.
-     */
-    private boolean isVacant(final Square startSquare, final Square targetSquare, final Piece piece) {
-        Set<String> allOccupiedSquares = new HashSet<>();
-        whitePieces.values().forEach(allOccupiedSquares::addAll);
-        blackPieces.values().forEach(allOccupiedSquares::addAll);
-
-        if (piece == Piece.ROOK) {
-            if (startSquare.x() == targetSquare.x()) {
-                int yStart = Math.min(startSquare.y(), targetSquare.y()) + 1;
-                int yEnd = Math.max(startSquare.y(), targetSquare.y());
-
-                return IntStream.range(yStart, yEnd)
-                        .mapToObj(y -> (char) (startSquare.x() + 'a') + Integer.toString(y))
-                        .noneMatch(allOccupiedSquares::contains);
-
-            } else if (startSquare.y() == targetSquare.y()) {
-                int xStart = Math.min(startSquare.x(), targetSquare.x()) + 1;
-                int xEnd = Math.max(startSquare.x(), targetSquare.x());
-
-                return IntStream.range(xStart, xEnd)
-                        .mapToObj(x -> (char) (x + 'a') + Integer.toString(startSquare.y()))
-                        .noneMatch(allOccupiedSquares::contains);
-            }
-        }
+     * @param to        The index of the target square.
+     * @param isWhite   A boolean indicating whether the pawn is white.
+     * @param isCapture A boolean indicating whether the move is a capture.
+     * @return The mask of candidate starting squares.
+     */
+    private long pawnOrigins(final int to, final boolean isWhite, final boolean isCapture) {
+        if (isCapture) return Attacks.pawn(!isWhite, to);
+
+        final int backward = isWhite ? -8 : 8;
+        final int single = to + backward;
+        if (single < 0 || single > 63) return 0;
+
+        final long occupied = occupancy[WHITE] | occupancy[BLACK];
+        if ((occupied & 1L << single) != 0 || (to >>> 3) != (isWhite ? 3 : 4)) return 1L << single;
 
-        return false;
+        return 1L << single | 1L << single + backward;
     }
 
     /**
@@ -112,13 +415,385 @@ public class Board {
      */
     public Square findPiece(final Piece piece, final Square targetSquare, final String disambiguation,
                             final boolean isWhite, final boolean isCapture) {
-        return (isWhite ? whitePieces : blackPieces).get(piece)
-                .stream()
-                .map(Square::new)
-                .filter(startSquare -> isValidMove(startSquare, targetSquare, piece, isWhite, isCapture))
-                .filter(startSquare -> disambiguation == null
-                        || startSquare.toChessNotation().contains(disambiguation))
-                .findFirst()
-                .orElseThrow(() -> new NoPieceFoundException(piece, targetSquare.toChessNotation()));
+        return Square.of(findPiece(piece, targetSquare.index(), disambiguationMask(disambiguation), isWhite, isCapture));
+    }
+
+    /**
+     * Finds the piece to move among the squares of a disambiguation mask. The candidates are the squares from which
+     * the piece reaches the target, intersected with the piece's bitboard, so no square is tested individually.
+     *
+     * @param piece      The type of piece to move.
+     * @param target     The index of the target square.
+     * @param candidates The mask of squares the piece may start from, or {@code -1L} for any.
+     * @param isWhite    A boolean indicating whether the piece is white.
+     * @param isCapture  A boolean indicating whether the move is a capture.
+     * @return The index of the starting square of the piece to move.
+     * @throws NoPieceFoundException If no valid piece is found.
+     */
+    public int findPiece(final Piece piece, final int target, final long candidates,
+                         final boolean isWhite, final boolean isCapture) {
+        final long origins = piece == Piece.PAWN
+                ? pawnOrigins(target, isWhite, isCapture)
+                : Attacks.of(piece, target, occupancy[WHITE] | occupancy[BLACK]);
+
+        final long mask = pieces(isWhite, piece) & candidates & origins;
+        if (mask == 0) throw new NoPieceFoundException(piece, Square.of(target).toChessNotation());
+
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Returns the starting squares from which a piece could reach the target, ignoring king safety. Pawn origins
+     * follow the same rules as {@link #findPiece(Piece, int, long, boolean, boolean)}.
+     *
+     * @param piece     The type of piece to move.
+     * @param target    The index of the target square.
+     * @param isWhite   A boolean indicating whether the piece is white.
+     * @param isCapture A boolean indicating whether the move is a capture.
+     * @return The mask of squares holding such a piece.
+     */
+    public long origins(final Piece piece, final int target, final boolean isWhite, final boolean isCapture) {
+        final long origins = piece == Piece.PAWN
+                ? pawnOrigins(target, isWhite, isCapture)
+                : Attacks.of(piece, target, occupancy[WHITE] | occupancy[BLACK]);
+
+        return pieces(isWhite, piece) & origins;
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the king is white.
+     * @return The index of that side's king, or 64 if it has none.
+     */
+    public int king(final boolean isWhite) {
+        return Long.numberOfTrailingZeros(pieces(isWhite, Piece.KING));
+    }
+
+    /**
+     * Returns the pieces of one side attacking a square on a hypothetical occupancy. Sliding attacks are cut by
+     * {@code occupied}, and only pieces inside {@code mask} count, so a move can be tested without playing it.
+     *
+     * @param square   The index of the attacked square.
+     * @param byWhite  A boolean indicating whether the attackers are white.
+     * @param occupied The mask of occupied squares to slide through.
+     * @param mask     The mask of squares whose pieces may attack.
+     * @return The mask of attacking pieces.
+     */
+    private long attackers(final int square, final boolean byWhite, final long occupied, final long mask) {
+        final long queens = pieces(byWhite, Piece.QUEEN);
+
+        return mask & (Attacks.knight(square) & pieces(byWhite, Piece.KNIGHT)
+                | Attacks.king(square) & pieces(byWhite, Piece.KING)
+                | Attacks.pawn(!byWhite, square) & pieces(byWhite, Piece.PAWN)
+                | Attacks.bishop(square, occupied) & (pieces(byWhite, Piece.BISHOP) | queens)
+                | Attacks.rook(square, occupied) & (pieces(byWhite, Piece.ROOK) | queens));
+    }
+
+    /**
+     * @param square  The index of the square.
+     * @param byWhite A boolean indicating whether the attackers are white.
+     * @return true if any piece of that side attacks the square.
+     */
+    public boolean isAttacked(final int square, final boolean byWhite) {
+        return attackers(square, byWhite, occupancy[WHITE] | occupancy[BLACK], -1L) != 0;
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the king is white.
+     * @return true if that side's king is attacked. A side without a king is never in check.
+     */
+    public boolean isInCheck(final boolean isWhite) {
+        final int king = king(isWhite);
+
+        return king < 64 && isAttacked(king, !isWhite);
+    }
+
+    /**
+     * Checks whether castling is allowed right now: the rights are intact, the king and rook are on their
+     * starting squares, the squares between them are empty, and the king is not in check and does not pass
+     * through or land on an attacked square.
+     *
+     * @param isWhite  A boolean indicating whether the player is white.
+     * @param kingSide A boolean indicating whether the castling is king-side (true) or queen-side (false).
+     * @return true if castling is legal.
+     */
+    public boolean isCastlingLegal(final boolean isWhite, final boolean kingSide) {
+        final int king = isWhite ? 4 : 60;
+        final int rook = kingSide ? king + 3 : king - 4;
+        final long between = kingSide ? 3L << king + 1 : 7L << rook + 1;
+
+        if (!canCastle(isWhite, kingSide)
+                || !contains(isWhite, Piece.KING, king)
+                || !contains(isWhite, Piece.ROOK, rook)
+                || ((occupancy[WHITE] | occupancy[BLACK]) & between) != 0) {
+            return false;
+        }
+
+        final int step = kingSide ? 1 : -1;
+        for (int square = king; square != king + 3 * step; square += step) {
+            if (isAttacked(square, !isWhite)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether a pseudo-legal move leaves the mover's own king safe. The move is not played: the occupancy
+     * after the move is computed directly, which also catches pinned pieces and en-passant discoveries.
+     *
+     * @param move    The packed move, see {@link Move}.
+     * @param isWhite A boolean indicating whether the moving side is white.
+     * @return true if the mover's king is not attacked after the move.
+     */
+    public boolean isLegal(final int move, final boolean isWhite) {
+        final int from = Move.from(move);
+        final int to = Move.to(move);
+
+        if (Move.is(move, Move.CASTLE)) return isCastlingLegal(isWhite, to > from);
+
+        final int king = Move.piece(move) == Piece.KING ? to : king(isWhite);
+        if (king == 64) return true;
+
+        final long captured = Move.is(move, Move.EN_PASSANT)
+                ? 1L << ((from & ~7) | (to & 7))
+                : Move.is(move, Move.CAPTURE) ? 1L << to : 0;
+        final long occupied = ((occupancy[WHITE] | occupancy[BLACK]) & ~(1L << from) & ~captured) | 1L << to;
+
+        return attackers(king, !isWhite, occupied, ~captured & ~(1L << to)) == 0;
+    }
+
+    /**
+     * Copies the whole position, castling rights and en-passant square included, so a move can be tried on
+     * the copy without touching this board.
+     *
+     * @return A new board in the same state.
+     */
+    public Board copy() {
+        final Board copy = new Board();
+
+        System.arraycopy(bitboards, 0, copy.bitboards, 0, bitboards.length);
+        System.arraycopy(occupancy, 0, copy.occupancy, 0, occupancy.length);
+        copy.castlingRights = castlingRights;
+        copy.enPassant = enPassant;
+        copy.whiteToMove = whiteToMove;
+        copy.key = key;
+        copy.enPassantKey = enPassantKey;
+
+        return copy;
+    }
+
+    /**
+     * Sets up the position of a FEN record. Only the placement, side to move, castling and en-passant fields
+     * are read; the move counters are optional and ignored, as they are not part of the {@link #key()}.
+     *
+     * @param fen The FEN record, for instance
+     *            {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}.
+     * @return The board in that position.
+     * @throws IllegalArgumentException If the record is malformed.
+     */
+    public static Board fromFen(final String fen) {
+        final String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) throw new IllegalArgumentException("Incomplete FEN: " + fen);
+
+        final Board board = new Board();
+        Arrays.fill(board.bitboards, 0);
+        Arrays.fill(board.occupancy, 0);
+
+        final String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) throw new IllegalArgumentException("FEN needs 8 ranks: " + fen);
+        for (int rank = 0; rank < 8; rank++) {
+            int file = 0;
+            for (char symbol : ranks[7 - rank].toCharArray()) {
+                if (symbol >= '1' && symbol <= '8') {
+                    file += symbol - '0';
+                } else if ("KQRBNPkqrbnp".indexOf(symbol) >= 0 && file < 8) {
+                    final boolean isWhite = Character.isUpperCase(symbol);
+                    final int bitboard = index(colour(isWhite), Piece.of(Character.toUpperCase(symbol)));
+                    board.bitboards[bitboard] |= 1L << rank * 8 + file;
+                    board.occupancy[colour(isWhite)] |= 1L << rank * 8 + file++;
+                } else {
+                    throw new IllegalArgumentException("Bad FEN rank " + ranks[7 - rank] + ": " + fen);
+                }
+            }
+            if (file != 8) throw new IllegalArgumentException("Bad FEN rank " + ranks[7 - rank] + ": " + fen);
+        }
+
+        board.whiteToMove = switch (fields[1]) {
+            case "w" -> true;
+            case "b" -> false;
+            default -> throw new IllegalArgumentException("Bad FEN side to move " + fields[1] + ": " + fen);
+        };
+
+        board.castlingRights = 0;
+        if (!fields[2].equals("-")) {
+            for (char right : fields[2].toCharArray()) {
+                board.castlingRights |= switch (right) {
+                    case 'K' -> WHITE_KING_SIDE;
+                    case 'Q' -> WHITE_QUEEN_SIDE;
+                    case 'k' -> BLACK_KING_SIDE;
+                    case 'q' -> BLACK_QUEEN_SIDE;
+                    default -> throw new IllegalArgumentException("Bad FEN castling " + fields[2] + ": " + fen);
+                };
+            }
+        }
+
+        board.enPassant = fields[3].equals("-") ? -1 : index(fields[3]);
+        if (board.enPassant < 0 && !fields[3].equals("-")) {
+            throw new IllegalArgumentException("Bad FEN en-passant square " + fields[3] + ": " + fen);
+        }
+
+        board.enPassantKey = Zobrist.enPassant(board, board.whiteToMove);
+        board.key = Zobrist.of(board, board.whiteToMove);
+
+        return board;
+    }
+
+    /**
+     * Live view of one side's pieces keyed by type. Every type is always present, possibly with no squares.
+     */
+    private final class PieceMap extends AbstractMap<Piece, Set<String>> {
+        private final int colour;
+        private final List<Entry<Piece, Set<String>>> entries = new ArrayList<>(PIECES.length);
+
+        private PieceMap(final int colour) {
+            this.colour = colour;
+
+            for (Piece piece : PIECES) {
+                entries.add(new SimpleImmutableEntry<>(piece, new SquareSet(index(colour, piece))));
+            }
+        }
+
+        @Override
+        public Set<String> get(final Object key) {
+            return key instanceof Piece piece ? entries.get(piece.ordinal()).getValue() : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return key instanceof Piece;
+        }
+
+        @Override
+        public Set<String> put(final Piece piece, final Set<String> squares) {
+            var squareSet = get(piece);
+            var previous = new HashSet<>(squareSet);
+            var next = List.copyOf(squares);
+
+            squareSet.clear();
+            squareSet.addAll(next);
+
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = index(colour, Piece.KING), end = i + PIECES.length; i < end; i++) {
+                toggle(i, bitboards[i]);
+                bitboards[i] = 0;
+            }
+
+            occupancy[colour] = 0;
+        }
+
+        @Override
+        public Set<Entry<Piece, Set<String>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Piece, Set<String>>> iterator() {
+                    return Collections.unmodifiableList(entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return entries.size();
+                }
+            };
+        }
+
+        /**
+         * Live view of the squares of one bitboard, by name.
+         */
+        private final class SquareSet extends AbstractSet<String> {
+            private final int bitboard;
+
+            private SquareSet(final int bitboard) {
+                this.bitboard = bitboard;
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                final int square = o instanceof String notation ? index(notation) : -1;
+
+                return square >= 0 && (bitboards[bitboard] & 1L << square) != 0;
+            }
+
+            @Override
+            public boolean add(final String notation) {
+                final int square = index(notation);
+                if (square < 0) throw new IllegalArgumentException("Not a square: " + notation);
+
+                final long before = bitboards[bitboard];
+                bitboards[bitboard] |= 1L << square;
+                toggle(bitboard, before ^ bitboards[bitboard]);
+                refreshOccupancy(colour);
+
+                return before != bitboards[bitboard];
+            }
+
+            @Override
+            public boolean remove(final Object o) {
+                if (!contains(o)) return false;
+
+                toggle(bitboard, 1L << index((String) o));
+                bitboards[bitboard] &= ~(1L << index((String) o));
+                refreshOccupancy(colour);
+
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                toggle(bitboard, bitboards[bitboard]);
+                bitboards[bitboard] = 0;
+                refreshOccupancy(colour);
+            }
+
+            @Override
+            public int size() {
+                return Long.bitCount(bitboards[bitboard]);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private long remaining = bitboards[bitboard];
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return remaining != 0;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (remaining == 0) throw new NoSuchElementException();
+
+                        last = Long.numberOfTrailingZeros(remaining);
+                        remaining &= remaining - 1;
+
+                        return Square.of(last).toChessNotation();
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) throw new IllegalStateException();
+
+                        toggle(bitboard, 1L << last);
+                        bitboards[bitboard] &= ~(1L << last);
+                        refreshOccupancy(colour);
+                        last = -1;
+                    }
+                };
+            }
+        }
     }
 }
@@ -0,0 +1,27 @@
+package io.github.gchape.model.entities;
+
+import java.util.Map;
+
+/**
+ * The outcome of replaying one game.
+ *
+ * @param source      The source the game was read from, usually the position of its file among the inputs.
+ * @param id          The position of the game in its source, from 0, in file order. It does not depend on the
+ *                    number of workers or on the order games finish in, so together with the source it names
+ *                    the same game in every run.
+ * @param valid       A boolean indicating whether every move could be replayed.
+ * @param headers     The tag pairs of the game.
+ * @param errorPly    The 1-based ply of the move that failed, or 0 if the game is valid.
+ * @param errorReason Why that move failed, or null if the game is valid.
+ */
+public record GameResult(int source, int id, boolean valid, Map<String, String> headers, int errorPly,
+                         String errorReason) {
+    public GameResult(final int id, final boolean valid, final Map<String, String> headers, final int errorPly,
+                      final String errorReason) {
+        this(0, id, valid, headers, errorPly, errorReason);
+    }
+
+    public GameResult(final int id, final boolean valid, final Map<String, String> headers) {
+        this(0, id, valid, headers, 0, null);
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.gchape.model.entities;
+
+/**
+ * Packed {@code int} move encoding, so moves can be decoded, stored and applied without allocating.
+ * <pre>
+ * bits  0-5   starting square index
+ * bits  6-11  target square index
+ * bits 12-14  moving piece ordinal
+ * bits 15-17  promotion piece ordinal, meaningful only with {@link #PROMOTION}
+ * bits 18-22  flags
+ * </pre>
+ */
+public final class Move {
+    public static final int CAPTURE = 1 << 18;
+    public static final int EN_PASSANT = 1 << 19;
+    public static final int CASTLE = 1 << 20;
+    public static final int DOUBLE_PUSH = 1 << 21;
+    public static final int PROMOTION = 1 << 22;
+
+    private static final Piece[] PIECES = Piece.values();
+
+    private Move() {
+    }
+
+    public static int of(final int from, final int to, final Piece piece, final int flags) {
+        return from | to << 6 | piece.ordinal() << 12 | flags;
+    }
+
+    public static int of(final int from, final int to, final Piece piece, final Piece promotion, final int flags) {
+        return of(from, to, piece, flags | PROMOTION) | promotion.ordinal() << 15;
+    }
+
+    public static int from(final int move) {
+        return move & 63;
+    }
+
+    public static int to(final int move) {
+        return move >>> 6 & 63;
+    }
+
+    public static Piece piece(final int move) {
+        return PIECES[move >>> 12 & 7];
+    }
+
+    /**
+     * @return The promotion piece, or null if the move is not a promotion.
+     */
+    public static Piece promotion(final int move) {
+        return is(move, PROMOTION) ? PIECES[move >>> 15 & 7] : null;
+    }
+
+    public static boolean is(final int move, final int flag) {
+        return (move & flag) != 0;
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.gchape.model.entities;
+
+/**
+ * Generates the legal moves of a position as packed moves, see {@link Move}. Pseudo-legal moves come from the
+ * attack tables and are kept only if {@link Board#isLegal(int, boolean)} finds the mover's king safe, so pins,
+ * checks and en-passant discoveries are all handled by the same test.
+ */
+public final class MoveGenerator {
+    /**
+     * No position has more legal moves than this, so a buffer of this size never overflows.
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final Piece[] PROMOTIONS = {Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT};
+    private static final Piece[] OFFICERS = {Piece.KING, Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Writes every legal move of one side into a buffer.
+     *
+     * @param board   The position.
+     * @param isWhite A boolean indicating whether white is to move.
+     * @param moves   The buffer receiving the moves, at least {@link #MAX_MOVES} long.
+     * @return The number of moves written.
+     */
+    public static int generate(final Board board, final boolean isWhite, final int[] moves) {
+        final long own = board.occupancy(isWhite);
+        final long enemy = board.occupancy(!isWhite);
+        final long occupied = own | enemy;
+
+        int count = 0;
+        for (Piece piece : OFFICERS) {
+            for (long from = board.pieces(isWhite, piece); from != 0; from &= from - 1) {
+                final int square = Long.numberOfTrailingZeros(from);
+
+                for (long to = Attacks.of(piece, square, occupied) & ~own; to != 0; to &= to - 1) {
+                    final int target = Long.numberOfTrailingZeros(to);
+                    final int flags = (enemy & 1L << target) != 0 ? Move.CAPTURE : 0;
+
+                    count = add(board, isWhite, moves, count, Move.of(square, target, piece, flags));
+                }
+            }
+        }
+
+        final int forward = isWhite ? 8 : -8;
+        final int lastRank = isWhite ? 7 : 0;
+        for (long from = board.pieces(isWhite, Piece.PAWN); from != 0; from &= from - 1) {
+            final int square = Long.numberOfTrailingZeros(from);
+
+            long captures = Attacks.pawn(isWhite, square) & enemy;
+            for (; captures != 0; captures &= captures - 1) {
+                count = addPawn(board, isWhite, moves, count, square, Long.numberOfTrailingZeros(captures),
+                        Move.CAPTURE, lastRank);
+            }
+
+            final int enPassant = board.enPassant();
+            if (enPassant >= 0 && (Attacks.pawn(isWhite, square) & 1L << enPassant) != 0
+                    && board.contains(!isWhite, Piece.PAWN, enPassant - forward)) {
+                count = add(board, isWhite, moves, count,
+                        Move.of(square, enPassant, Piece.PAWN, Move.CAPTURE | Move.EN_PASSANT));
+            }
+
+            final int single = square + forward;
+            if ((occupied & 1L << single) != 0) continue;
+            count = addPawn(board, isWhite, moves, count, square, single, 0, lastRank);
+
+            final int start = isWhite ? 1 : 6;
+            if (square >>> 3 == start && (occupied & 1L << single + forward) == 0) {
+                count = add(board, isWhite, moves, count,
+                        Move.of(square, single + forward, Piece.PAWN, Move.DOUBLE_PUSH));
+            }
+        }
+
+        final int king = isWhite ? 4 : 60;
+        if (board.isCastlingLegal(isWhite, true)) {
+            moves[count++] = Move.of(king, king + 2, Piece.KING, Move.CASTLE);
+        }
+        if (board.isCastlingLegal(isWhite, false)) {
+            moves[count++] = Move.of(king, king - 2, Piece.KING, Move.CASTLE);
+        }
+
+        return count;
+    }
+
+    private static int addPawn(final Board board, final boolean isWhite, final int[] moves, int count,
+                               final int from, final int to, final int flags, final int lastRank) {
+        if (to >>> 3 != lastRank) return add(board, isWhite, moves, count, Move.of(from, to, Piece.PAWN, flags));
+
+        for (Piece promotion : PROMOTIONS) {
+            count = add(board, isWhite, moves, count, Move.of(from, to, Piece.PAWN, promotion, flags));
+        }
+
+        return count;
+    }
+
+    private static int add(final Board board, final boolean isWhite, final int[] moves, final int count,
+                           final int move) {
+        if (!board.isLegal(move, isWhite)) return count;
+
+        moves[count] = move;
+        return count + 1;
+    }
+}
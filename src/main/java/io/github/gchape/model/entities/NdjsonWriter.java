@@ -0,0 +1,214 @@
+package io.github.gchape.model.entities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Writes one JSON object per line for every game:
+ * <pre>
+ * {"id":1,"source":0,"valid":false,"errorPly":5,"errorReason":"...","headers":{"Event":"...","White":"..."}}
+ * </pre>
+ * {@code id} and {@code source} name the game, see {@link GameResult}. {@code errorPly} and {@code errorReason}
+ * are left out for valid games.
+ * <p>
+ * Each worker thread encodes its records straight to UTF-8 into a buffer of its own, so encoding takes no
+ * shared lock and builds no intermediate strings. A buffer is written to the channel only when it fills up, in
+ * one large write of whole lines, so lines from different threads never interleave. {@link #flush()} writes out
+ * every thread's buffer and must be called once the workers are done.
+ */
+public final class NdjsonWriter implements ResultSink {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final List<Buffer> buffers = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Buffer> buffer = ThreadLocal.withInitial(() -> {
+        var created = new Buffer();
+        buffers.add(created);
+        return created;
+    });
+
+    /**
+     * @param channel The channel receiving the lines, usually a {@link java.nio.channels.FileChannel}.
+     *                It is not closed by this writer.
+     */
+    public NdjsonWriter(final WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void accept(final GameResult result) {
+        final Buffer own = buffer.get();
+
+        synchronized (own) {
+            own.record(result);
+            if (own.size >= BUFFER_SIZE) write(own);
+        }
+    }
+
+    @Override
+    public void flush() {
+        for (Buffer each : buffers) {
+            synchronized (each) {
+                write(each);
+            }
+        }
+    }
+
+    private void write(final Buffer own) {
+        final ByteBuffer bytes = ByteBuffer.wrap(own.bytes, 0, own.size);
+
+        try {
+            synchronized (channel) {
+                while (bytes.hasRemaining()) channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        own.size = 0;
+    }
+
+    /**
+     * A growable byte array holding whole NDJSON lines.
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[2 * BUFFER_SIZE];
+        private int size = 0;
+
+        private void record(final GameResult result) {
+            ascii("{\"id\":");
+            number(result.id());
+            ascii(",\"source\":");
+            number(result.source());
+            ascii(result.valid() ? ",\"valid\":true" : ",\"valid\":false");
+
+            if (!result.valid()) {
+                ascii(",\"errorPly\":");
+                number(result.errorPly());
+                ascii(",\"errorReason\":");
+                string(result.errorReason());
+            }
+
+            ascii(",\"headers\":{");
+            if (result.headers() != null) {
+                boolean first = true;
+                for (Map.Entry<String, String> header : result.headers().entrySet()) {
+                    if (!first) put((byte) ',');
+                    first = false;
+
+                    string(header.getKey());
+                    put((byte) ':');
+                    string(header.getValue());
+                }
+            }
+            ascii("}}\n");
+        }
+
+        private void ensure(final int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+
+        private void put(final byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        private void ascii(final String text) {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) bytes[size++] = (byte) text.charAt(i);
+        }
+
+        private void number(final int value) {
+            if (value < 0) {
+                ascii(Integer.toString(value));
+                return;
+            }
+
+            int digits = 1;
+            for (int rest = value; rest >= 10; rest /= 10) digits++;
+            ensure(digits);
+
+            int remaining = value;
+            for (int i = size + digits - 1; i >= size; i--) {
+                bytes[i] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            }
+            size += digits;
+        }
+
+        /**
+         * Writes a JSON string: quotes, backslashes and control characters are escaped, everything else is
+         * encoded as UTF-8. A lone surrogate, which UTF-8 cannot encode, becomes U+FFFD.
+         */
+        private void string(final String value) {
+            if (value == null) {
+                ascii("null");
+                return;
+            }
+
+            ensure(value.length() * 6 + 2);
+            bytes[size++] = '"';
+
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+
+                if (c == '"' || c == '\\') {
+                    bytes[size++] = '\\';
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x20) {
+                    escapeControl(c);
+                } else if (c < 0x80) {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | c >> 6);
+                    bytes[size++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+
+                    bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    final char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+
+                    bytes[size++] = (byte) (0xE0 | encoded >> 12);
+                    bytes[size++] = (byte) (0x80 | encoded >> 6 & 0x3F);
+                    bytes[size++] = (byte) (0x80 | encoded & 0x3F);
+                }
+            }
+
+            bytes[size++] = '"';
+        }
+
+        private void escapeControl(final char c) {
+            bytes[size++] = '\\';
+
+            switch (c) {
+                case '\n' -> bytes[size++] = 'n';
+                case '\r' -> bytes[size++] = 'r';
+                case '\t' -> bytes[size++] = 't';
+                case '\b' -> bytes[size++] = 'b';
+                case '\f' -> bytes[size++] = 'f';
+                default -> {
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX[c >> 4];
+                    bytes[size++] = HEX[c & 0xF];
+                }
+            }
+        }
+    }
+}
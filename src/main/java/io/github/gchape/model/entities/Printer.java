@@ -1,46 +1,81 @@
 package io.github.gchape.model.entities;
 
 import io.github.gchape.model.Model;
+import io.github.gchape.model.ResultRows;
 import javafx.application.Platform;
-import javafx.beans.property.StringProperty;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public enum Printer {
+/**
+ * Collects game results off the FX thread and hands them to the UI in batches. Results are queued as they
+ * arrive; a background thread drains the queue every {@link #FLUSH_INTERVAL_MILLIS} ms and adds the whole batch
+ * to the {@link ResultRows} in one {@link Platform#runLater(Runnable)}. No new batch is sent until the previous
+ * one has been added, so the FX queue holds at most one update.
+ * <p>
+ * The queue holds at most {@value #MAX_PENDING} results. When the FX thread falls that far behind, workers
+ * reporting a result wait for the next batch to make room, so the pipeline's backpressure reaches the UI instead
+ * of results piling up in memory; every result is still shown.
+ */
+public enum Printer implements ResultSink {
     INSTANCE;
 
-    private final static StringProperty textInput = Model.INSTANCE.textInputProperty();
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+    private static final int MAX_PENDING = 1 << 16;
 
-    private static void append(final String text) {
-        Platform.runLater(() -> textInput.set(text));
+    private final static ResultRows resultRows = Model.INSTANCE.getResultRows();
+
+    private final BlockingQueue<GameResult> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+    private final AtomicBoolean showing = new AtomicBoolean(false);
+
+    Printer() {
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("pgnalyze-ui-flush").daemon().factory());
+
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
     }
 
-    public void appendHead(final Map<String, String> headers) {
-        String[] args = new String[]{
-                headers.get("Event"),
-                headers.get("Round"),
-                headers.get("White"),
-                headers.get("Black"),
-                headers.get("Result")
-        };
-
-        append("""
-                {
-                 Event: "%s",
-                 White: "%s",
-                 Black: "%s",
-                 Round: "%s",
-                 Result: "%s"
-                },
-                """.formatted(args[0], args[1], args[2], args[3], args[4]));
+    /**
+     * Sends everything queued so far to the UI as one batch, unless the previous batch is still waiting on the
+     * FX thread; in that case the results stay queued and join the next batch.
+     */
+    @Override
+    public void flush() {
+        if (pending.isEmpty() || !showing.compareAndSet(false, true)) return;
+
+        List<GameResult> batch = new ArrayList<>(pending.size());
+        pending.drainTo(batch);
+
+        try {
+            Platform.runLater(() -> {
+                try {
+                    resultRows.append(batch);
+                } finally {
+                    showing.set(false);
+                }
+            });
+        } catch (IllegalStateException e) {
+            showing.set(false);
+        }
     }
 
-    public void appendBody(final int id, final boolean isValid) {
-        append("""
-                {
-                   Id: "%d",
-                   Valid: "%s"
-                },
-                """.formatted(id, isValid));
+    /**
+     * Queues a result, waiting while the queue is full. A worker interrupted while waiting drops the result and
+     * keeps its interrupt status.
+     */
+    @Override
+    public void accept(final GameResult result) {
+        try {
+            pending.put(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
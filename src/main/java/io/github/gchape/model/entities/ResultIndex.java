@@ -0,0 +1,286 @@
+package io.github.gchape.model.entities;
+
+import io.github.gchape.model.entities.ResultStore.Column;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * A filtered and sorted order over the rows of a {@link ResultStore}, kept as a plain {@code int[]} of rows.
+ * <p>
+ * Filters test each distinct value once, not each row. A full sort ranks the distinct values, then sorts one
+ * {@code long} per row holding rank and row, so no comparator runs per row. Rows appended to the store later
+ * are merged in by {@link #update()}: only the new rows are sorted, ranking just the values they hold, and each
+ * is placed with a binary search, so keeping millions of rows sorted costs one array copy per batch.
+ * <p>
+ * Ties keep store order. Like the store, the index is confined to one thread.
+ */
+public final class ResultIndex {
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+
+    private final ResultStore store;
+
+    private Column filterColumn = null;
+    private String filterText = "";
+    private byte[] matches = new byte[0];
+
+    private Column sortColumn = null;
+    private boolean ascending = true;
+
+    private int[] rows = new int[0];
+    private int[] previousRows = rows;
+    private int size = 0;
+    private int indexed = 0;
+
+    public ResultIndex(final ResultStore store) {
+        this.store = store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The store row shown at a position.
+     */
+    public int row(final int position) {
+        return rows[position];
+    }
+
+    /**
+     * Returns the row that was at a position before the last change, for change notifications. Valid for
+     * positions from the one the change reported up to the size before the change.
+     */
+    public int previousRow(final int position) {
+        return previousRows[position];
+    }
+
+    /**
+     * Keeps only rows whose value in a column contains a text, ignoring case, and rebuilds the order.
+     *
+     * @param column The column to filter on, or null for no filter.
+     * @param text   The text to look for; blank means no filter.
+     */
+    public void filter(final Column column, final String text) {
+        final boolean active = column != null && text != null && !text.isBlank();
+
+        filterColumn = active ? column : null;
+        filterText = active ? text.strip().toLowerCase(Locale.ROOT) : "";
+        matches = new byte[0];
+
+        rebuild();
+    }
+
+    /**
+     * Sorts the rows by a column and rebuilds the order.
+     *
+     * @param column    The column to sort by, or null for store order.
+     * @param ascending A boolean indicating whether the order is ascending.
+     */
+    public void sort(final Column column, final boolean ascending) {
+        this.sortColumn = column;
+        this.ascending = ascending;
+
+        rebuild();
+    }
+
+    /**
+     * Adds the rows appended to the store since the last call, in order.
+     *
+     * @return The first position that changed, or {@link #size()} if nothing did.
+     */
+    public int update() {
+        previousRows = rows;
+
+        final int end = store.size();
+        int[] added = new int[end - indexed];
+        int count = 0;
+        for (int row = indexed; row < end; row++) {
+            if (matches(row)) added[count++] = row;
+        }
+        indexed = end;
+
+        if (count == 0) return size;
+        added = Arrays.copyOf(added, count);
+
+        if (sortColumn == null) {
+            ensureCapacity(size + count);
+            System.arraycopy(added, 0, rows, size, count);
+
+            final int first = size;
+            size += count;
+            return first;
+        }
+
+        return merge(added);
+    }
+
+    /**
+     * Sorts new rows and merges them into the current order. New rows come after every existing row in the
+     * store, so each goes after the existing rows it ties with, and the insertion points only move forward.
+     */
+    private int merge(final int[] added) {
+        sortByRank(added);
+
+        final int[] merged = new int[Math.max(16, (size + added.length) * 3 / 2)];
+        int first = -1;
+        int from = 0;
+        int out = 0;
+        for (int row : added) {
+            final int at = upperBound(from, row);
+            if (first < 0) first = at;
+
+            System.arraycopy(rows, from, merged, out, at - from);
+            out += at - from;
+            merged[out++] = row;
+            from = at;
+        }
+        System.arraycopy(rows, from, merged, out, size - from);
+
+        rows = merged;
+        size += added.length;
+
+        return first;
+    }
+
+    /**
+     * @return The first position at or after {@code from} whose row sorts after {@code row}.
+     */
+    private int upperBound(int from, final int row) {
+        int to = size;
+        while (from < to) {
+            final int middle = (from + to) >>> 1;
+
+            if (compare(rows[middle], row) <= 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+
+        return from;
+    }
+
+    private int compare(final int a, final int b) {
+        final int order = ORDER.compare(store.get(sortColumn, a), store.get(sortColumn, b));
+        if (order != 0) return ascending ? order : -order;
+
+        return Integer.compare(a, b);
+    }
+
+    private boolean matches(final int row) {
+        if (filterColumn == null) return true;
+
+        final int stringId = store.stringId(filterColumn, row);
+        if (stringId >= matches.length) {
+            matches = Arrays.copyOf(matches, Math.max(stringId + 1, matches.length * 2));
+        }
+
+        if (matches[stringId] == UNKNOWN) {
+            final String value = store.string(stringId).toLowerCase(Locale.ROOT);
+            matches[stringId] = value.contains(filterText) ? MATCH : NO_MATCH;
+        }
+
+        return matches[stringId] == MATCH;
+    }
+
+    private void rebuild() {
+        previousRows = rows;
+        rows = new int[Math.max(16, store.size())];
+        size = 0;
+
+        indexed = store.size();
+        for (int row = 0; row < indexed; row++) {
+            if (matches(row)) rows[size++] = row;
+        }
+
+        if (sortColumn != null) sortByRank();
+    }
+
+    /**
+     * Sorts the rows by the rank of their value among all distinct values, packed with the row into a long.
+     */
+    private void sortByRank() {
+        final int distinct = store.distinctStrings();
+        final int[] values = new int[distinct];
+        for (int i = 0; i < distinct; i++) values[i] = i;
+        final int[] ranks = rank(values);
+
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) keys[i] = key(ranks[store.stringId(sortColumn, rows[i])], distinct, rows[i]);
+        Arrays.parallelSort(keys);
+
+        for (int i = 0; i < size; i++) rows[i] = (int) keys[i];
+    }
+
+    /**
+     * Sorts new rows the same way, ranking only the distinct values they hold, found by sorting their string ids.
+     */
+    private void sortByRank(final int[] added) {
+        final int[] ids = new int[added.length];
+        for (int i = 0; i < added.length; i++) ids[i] = store.stringId(sortColumn, added[i]);
+        Arrays.sort(ids);
+
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+        }
+        final int[] values = Arrays.copyOf(ids, distinct);
+        final int[] ranks = rank(values);
+
+        final long[] keys = new long[added.length];
+        for (int i = 0; i < added.length; i++) {
+            final int value = Arrays.binarySearch(values, store.stringId(sortColumn, added[i]));
+
+            keys[i] = key(ranks[value], distinct, added[i]);
+        }
+        Arrays.sort(keys);
+
+        for (int i = 0; i < added.length; i++) added[i] = (int) keys[i];
+    }
+
+    /**
+     * Ranks distinct string ids by their value; values equal in {@link #ORDER} share a rank.
+     *
+     * @return The rank of each id, at the id's position.
+     */
+    private int[] rank(final int[] values) {
+        final Integer[] order = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> ORDER.compare(store.string(values[a]), store.string(values[b])));
+
+        final int[] ranks = new int[values.length];
+        for (int i = 1; i < values.length; i++) {
+            final boolean tie = ORDER.compare(store.string(values[order[i - 1]]), store.string(values[order[i]])) == 0;
+            ranks[order[i]] = tie ? ranks[order[i - 1]] : i;
+        }
+
+        return ranks;
+    }
+
+    /**
+     * @return The sort key of a row: its rank, reversed for a descending order, above the row itself.
+     */
+    private long key(final int rank, final int distinct, final int row) {
+        return (long) (ascending ? rank : distinct - rank) << 32 | row;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > rows.length) rows = Arrays.copyOf(rows, Math.max(capacity, rows.length * 2));
+    }
+
+    /**
+     * A sort order, as one value so a table can change column and direction in one step.
+     *
+     * @param column    The column to sort by, or null for store order.
+     * @param ascending A boolean indicating whether the order is ascending.
+     */
+    public record Order(Column column, boolean ascending) {
+    }
+}
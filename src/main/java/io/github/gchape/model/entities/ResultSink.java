@@ -0,0 +1,21 @@
+package io.github.gchape.model.entities;
+
+/**
+ * Receives the result of every game as it finishes. Games finish on many workers at once, so implementations
+ * must be thread-safe. {@link Printer} feeds the UI; headless runs write to a stream instead.
+ */
+public interface ResultSink {
+    /**
+     * A sink that drops every result.
+     */
+    ResultSink DISCARD = result -> {
+    };
+
+    void accept(GameResult result);
+
+    /**
+     * Writes out anything still buffered. Called once the last game has finished.
+     */
+    default void flush() {
+    }
+}
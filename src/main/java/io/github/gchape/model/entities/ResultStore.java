@@ -0,0 +1,132 @@
+package io.github.gchape.model.entities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only columnar store of game results. Each row costs a few {@code int}s: the source and game id, one
+ * interned string id per {@link Column}, and one bit of validity, so millions of rows fit in a few tens of megabytes.
+ * Game ids restart at zero in every source, so a row is only identified by the pair.
+ * Header values are interned, so a player appearing in a thousand games is stored once.
+ * <p>
+ * The store is not thread-safe; it is meant to be confined to one thread, the FX thread in the UI.
+ */
+public final class ResultStore {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final int[][] columns = new int[Column.values().length][INITIAL_CAPACITY];
+
+    private int[] sources = new int[INITIAL_CAPACITY];
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private long[] valid = new long[INITIAL_CAPACITY >>> 6];
+    private int size = 0;
+
+    /**
+     * Appends a result.
+     *
+     * @return The row of the result.
+     */
+    public int add(final GameResult result) {
+        if (size == ids.length) grow();
+
+        final int row = size++;
+        sources[row] = result.source();
+        ids[row] = result.id();
+        if (result.valid()) valid[row >>> 6] |= 1L << row;
+
+        for (Column column : Column.values()) {
+            columns[column.ordinal()][row] = intern(result.headers().getOrDefault(column.header(), ""));
+        }
+
+        return row;
+    }
+
+    private void grow() {
+        final int capacity = ids.length * 2;
+
+        sources = Arrays.copyOf(sources, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        valid = Arrays.copyOf(valid, capacity >>> 6);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], capacity);
+        }
+    }
+
+    private int intern(final String value) {
+        return stringIds.computeIfAbsent(value, __ -> {
+            strings.add(value);
+            return strings.size() - 1;
+        });
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int source(final int row) {
+        return sources[row];
+    }
+
+    public int id(final int row) {
+        return ids[row];
+    }
+
+    public boolean isValid(final int row) {
+        return (valid[row >>> 6] & 1L << row) != 0;
+    }
+
+    public String get(final Column column, final int row) {
+        return strings.get(columns[column.ordinal()][row]);
+    }
+
+    /**
+     * @return The interned id of the value in a cell; equal values share an id.
+     */
+    public int stringId(final Column column, final int row) {
+        return columns[column.ordinal()][row];
+    }
+
+    public String string(final int stringId) {
+        return strings.get(stringId);
+    }
+
+    /**
+     * @return The number of distinct values interned so far, across all columns.
+     */
+    public int distinctStrings() {
+        return strings.size();
+    }
+
+    /**
+     * The header columns of the store, which can be filtered and sorted on.
+     */
+    public enum Column {
+        EVENT("Event"),
+        WHITE("White"),
+        BLACK("Black"),
+        RESULT("Result");
+
+        private final String header;
+
+        Column(final String header) {
+            this.header = header;
+        }
+
+        /**
+         * @return The PGN tag the column is read from.
+         */
+        public String header() {
+            return header;
+        }
+
+        @Override
+        public String toString() {
+            return header;
+        }
+    }
+}
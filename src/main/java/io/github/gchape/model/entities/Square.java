@@ -6,6 +6,23 @@ public record Square(int x, int y) {
         this(chessNotation.charAt(0) - 'a', Character.getNumericValue(chessNotation.charAt(1)));
     }
 
+    /**
+     * Creates the square for a bitboard index, where a1 is 0, h1 is 7 and h8 is 63.
+     *
+     * @param index The bitboard index of the square.
+     * @return The square.
+     */
+    public static Square of(final int index) {
+        return new Square(index & 7, (index >>> 3) + 1);
+    }
+
+    /**
+     * @return The bitboard index of this square, where a1 is 0, h1 is 7 and h8 is 63.
+     */
+    public int index() {
+        return (y - 1) * 8 + x;
+    }
+
     public String toChessNotation() {
         return "" + (char) (x + 'a') + y;
     }
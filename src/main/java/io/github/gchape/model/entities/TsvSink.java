@@ -0,0 +1,65 @@
+package io.github.gchape.model.entities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes one tab-separated line per game: id, source (see {@link GameResult}), validity, then the Event, White,
+ * Black and Result headers.
+ * Tabs and line breaks inside header values are replaced by spaces so every game stays on one line.
+ */
+public final class TsvSink implements ResultSink {
+    private static final String[] HEADERS = {"Event", "White", "Black", "Result"};
+
+    private final Writer writer;
+
+    /**
+     * @param writer The writer receiving the lines; it is flushed, not closed, by {@link #flush()}.
+     */
+    public TsvSink(final Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void accept(final GameResult result) {
+        var line = new StringBuilder(128)
+                .append(result.id())
+                .append('\t')
+                .append(result.source())
+                .append('\t')
+                .append(result.valid());
+
+        for (String header : HEADERS) {
+            final String value = result.headers() == null ? null : result.headers().get(header);
+
+            line.append('\t');
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    final char c = value.charAt(i);
+                    line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+                }
+            }
+        }
+        line.append('\n');
+
+        try {
+            synchronized (writer) {
+                writer.append(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            synchronized (writer) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
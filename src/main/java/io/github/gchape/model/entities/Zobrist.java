@@ -0,0 +1,122 @@
+package io.github.gchape.model.entities;
+
+/**
+ * Zobrist keys: one random 64-bit value per piece on each square, per castling right, per en-passant file and
+ * for black to move. A position's key is the XOR of the values of its features, so {@link Board} can keep it
+ * up to date by toggling only what a move changes.
+ * <p>
+ * The values come from a fixed seed, so keys are stable across runs and can be stored.
+ */
+public final class Zobrist {
+    private static final Piece[] PIECES = Piece.values();
+    private static final int PIECE_COUNT = PIECES.length;
+
+    private static final long[][] PIECE_SQUARE = new long[2 * PIECE_COUNT][64];
+    private static final long[] CASTLING_RIGHT = new long[4];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = seed = splitMix(seed);
+            }
+        }
+        for (int i = 0; i < CASTLING_RIGHT.length; i++) CASTLING_RIGHT[i] = seed = splitMix(seed);
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) EN_PASSANT_FILE[i] = seed = splitMix(seed);
+
+        BLACK_TO_MOVE = splitMix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * One step of SplitMix64; the returned value also serves as the next state. Finalising the state rather
+     * than the counter is fine here since only a few hundred well-spread values are drawn.
+     */
+    private static long splitMix(final long state) {
+        long z = state + 0x9E3779B97F4A7C15L;
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+
+        return z ^ z >>> 31;
+    }
+
+    /**
+     * @param isWhite A boolean indicating whether the piece is white.
+     * @param piece   The type of piece.
+     * @param square  The index of the square.
+     * @return The value of that piece standing on that square.
+     */
+    public static long piece(final boolean isWhite, final Piece piece, final int square) {
+        return PIECE_SQUARE[(isWhite ? 0 : PIECE_COUNT) + piece.ordinal()][square];
+    }
+
+    /**
+     * Same as {@link #piece(boolean, Piece, int)}, keyed by the board's bitboard index (colour * 6 + ordinal).
+     */
+    static long piece(final int bitboard, final int square) {
+        return PIECE_SQUARE[bitboard][square];
+    }
+
+    /**
+     * @param rights A combination of the {@link Board} castling rights.
+     * @return The combined value of those rights.
+     */
+    public static long castling(final int rights) {
+        long key = 0;
+        for (int i = 0; i < CASTLING_RIGHT.length; i++) {
+            if ((rights & 1 << i) != 0) key ^= CASTLING_RIGHT[i];
+        }
+
+        return key;
+    }
+
+    /**
+     * Returns the value of the en-passant file, counted only when a pawn of the side to move can actually take
+     * en passant. A double step no pawn can answer does not change the position, so it does not change the key.
+     *
+     * @param board       The position.
+     * @param whiteToMove A boolean indicating whether white is to move.
+     * @return The en-passant value, or 0.
+     */
+    public static long enPassant(final Board board, final boolean whiteToMove) {
+        final int square = board.enPassant();
+        if (square < 0) return 0;
+
+        final long capturers = Attacks.pawn(!whiteToMove, square) & board.pieces(whiteToMove, Piece.PAWN);
+
+        return capturers != 0 ? EN_PASSANT_FILE[square & 7] : 0;
+    }
+
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+
+    /**
+     * Computes a key from scratch. {@link Board#key()} keeps the same value incrementally; this is for checking
+     * it and for positions built without replaying moves.
+     *
+     * @param board       The position.
+     * @param whiteToMove A boolean indicating whether white is to move.
+     * @return The key of the position.
+     */
+    public static long of(final Board board, final boolean whiteToMove) {
+        long key = castling(board.castlingRights()) ^ enPassant(board, whiteToMove);
+        if (!whiteToMove) key ^= BLACK_TO_MOVE;
+
+        for (Piece piece : PIECES) {
+            for (long bits = board.pieces(true, piece); bits != 0; bits &= bits - 1) {
+                key ^= piece(true, piece, Long.numberOfTrailingZeros(bits));
+            }
+            for (long bits = board.pieces(false, piece); bits != 0; bits &= bits - 1) {
+                key ^= piece(false, piece, Long.numberOfTrailingZeros(bits));
+            }
+        }
+
+        return key;
+    }
+}
@@ -1,15 +1,17 @@
 package io.github.gchape.view;
 
 import io.github.gchape.model.Model;
+import io.github.gchape.model.entities.ResultIndex;
+import io.github.gchape.model.entities.ResultStore;
+import io.github.gchape.model.entities.ResultStore.Column;
 import io.github.gchape.view.handlers.AnalyzeHandlers;
 import io.github.gchape.view.handlers.SelectFilesHandlers;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import io.github.gchape.view.handlers.SelectFolderHandlers;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.control.Button;
-import javafx.scene.control.TextArea;
-import javafx.scene.control.TreeView;
+import javafx.scene.control.*;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
@@ -22,16 +24,20 @@ public enum View {
 
     private final HBox topBar = new HBox();
     private final BorderPane root = new BorderPane();
-    private final TextArea textArea = new TextArea();
+    private final TableView<Integer> results = new TableView<>();
     private final TreeView<String> treeView = new TreeView<>();
 
-    private final StringProperty textInput = new SimpleStringProperty("");
-
     private final Button analyze = new Button("Analyze");
     private final Button selectFiles = new Button("Select files");
+    private final Button selectFolder = new Button("Select folder");
+    private final CheckBox strict = new CheckBox("Strict");
+    private final ComboBox<Column> filterColumn = new ComboBox<>(FXCollections.observableArrayList(Column.values()));
+    private final TextField filterText = new TextField();
+    private final Label metrics = new Label();
 
     private AnalyzeHandlers analyzeHandlers;
     private SelectFilesHandlers selectFilesHandlers;
+    private SelectFolderHandlers selectFolderHandlers;
 
     View() {
         composeView();
@@ -42,20 +48,68 @@ public enum View {
     }
 
     private void configureControls() {
-        // TextArea
+        // TableView
         {
-            textArea.setWrapText(true);
-            textArea.setEditable(false);
+            ResultStore store = model.getResultRows().store();
+
+            TableColumn<Integer, String> source = new TableColumn<>("Source");
+            source.setCellValueFactory(cell ->
+                    new ReadOnlyStringWrapper(String.valueOf(store.source(cell.getValue()))));
+            source.setSortable(false);
+            results.getColumns().add(source);
+
+            TableColumn<Integer, String> id = new TableColumn<>("Id");
+            id.setCellValueFactory(cell -> new ReadOnlyStringWrapper(String.valueOf(store.id(cell.getValue()))));
+            id.setSortable(false);
+            results.getColumns().add(id);
+
+            for (Column column : Column.values()) {
+                TableColumn<Integer, String> tableColumn = new TableColumn<>(column.header());
+                tableColumn.setCellValueFactory(cell ->
+                        new ReadOnlyStringWrapper(store.get(column, cell.getValue())));
+                tableColumn.setUserData(column);
+                results.getColumns().add(tableColumn);
+            }
+
+            TableColumn<Integer, String> valid = new TableColumn<>("Valid");
+            valid.setCellValueFactory(cell ->
+                    new ReadOnlyStringWrapper(String.valueOf(store.isValid(cell.getValue()))));
+            valid.setSortable(false);
+            results.getColumns().add(valid);
+
+            results.setItems(model.getResultRows());
+            results.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+            results.setSortPolicy(table -> {
+                var sortOrder = table.getSortOrder();
+                var sorted = sortOrder.isEmpty() ? null : sortOrder.getFirst();
+
+                model.sortOrderProperty().set(sorted == null
+                        ? new ResultIndex.Order(null, true)
+                        : new ResultIndex.Order((Column) sorted.getUserData(),
+                        sorted.getSortType() == TableColumn.SortType.ASCENDING));
+                return true;
+            });
+        }
+
+        // Filter
+        {
+            filterText.setPromptText("Filter");
+        }
+
+        // Metrics
+        {
+            metrics.setWrapText(true);
         }
     }
 
     private void configureStyle() {
         root.getStyleClass().add("root-pane");
         topBar.getStyleClass().add("top-bar");
+        metrics.getStyleClass().add("metrics");
 
-        treeView.setPrefWidth(112.5);
+        treeView.setPrefWidth(180);
 
-        BorderPane.setMargin(textArea, new Insets(0, 0, 0, 10));
+        BorderPane.setMargin(results, new Insets(0, 0, 0, 10));
     }
 
     private void configureBindings() {
@@ -63,23 +117,28 @@ public enum View {
 
         analyze.disableProperty().bind(model.analyzeButtonDisabledProperty());
         selectFiles.disableProperty().bind(model.selectFilesButtonDisabledProperty());
+        selectFolder.disableProperty().bind(model.selectFilesButtonDisabledProperty());
+        strict.selectedProperty().bindBidirectional(model.strictValidationProperty());
 
-        textInput.bind(model.textInputProperty());
+        filterColumn.valueProperty().bindBidirectional(model.filterColumnProperty());
+        filterText.textProperty().bindBidirectional(model.filterTextProperty());
+
+        metrics.textProperty().bind(model.metricsProperty());
     }
 
     private void mapEventHandlers() {
         analyze.setOnMouseClicked(e -> analyzeHandlers.onMouseClicked(e));
         selectFiles.setOnMouseClicked(e -> selectFilesHandlers.onMouseClicked(e));
-
-        textInput.addListener((__0, __1, newText) -> textArea.appendText(newText));
+        selectFolder.setOnMouseClicked(e -> selectFolderHandlers.onMouseClicked(e));
     }
 
     private void composeView() {
         root.setTop(topBar);
         root.setLeft(treeView);
-        root.setCenter(textArea);
+        root.setCenter(results);
+        root.setBottom(metrics);
 
-        topBar.getChildren().addAll(fileSection(), actionSection());
+        topBar.getChildren().addAll(fileSection(), filterSection(), actionSection());
     }
 
     private HBox actionSection() {
@@ -87,16 +146,26 @@ public enum View {
             setSpacing(10.0);
             setAlignment(Pos.CENTER_RIGHT);
 
-            getChildren().add(analyze);
+            getChildren().addAll(strict, analyze);
+        }};
+    }
+
+    private HBox filterSection() {
+        return new HBox() {{
+            setSpacing(10.0);
+            setAlignment(Pos.CENTER);
+
+            getChildren().addAll(filterColumn, filterText);
         }};
     }
 
     private HBox fileSection() {
         return new HBox() {{
+            setSpacing(10.0);
             setAlignment(Pos.CENTER_LEFT);
             HBox.setHgrow(this, Priority.ALWAYS);
 
-            getChildren().add(selectFiles);
+            getChildren().addAll(selectFiles, selectFolder);
         }};
     }
 
@@ -111,4 +180,8 @@ public enum View {
     public void setSelectFilesHandlers(final SelectFilesHandlers selectFilesHandlers) {
         this.selectFilesHandlers = selectFilesHandlers;
     }
+
+    public void setSelectFolderHandlers(final SelectFolderHandlers selectFolderHandlers) {
+        this.selectFolderHandlers = selectFolderHandlers;
+    }
 }
@@ -0,0 +1,7 @@
+package io.github.gchape.view.handlers;
+
+import javafx.scene.input.MouseEvent;
+
+public interface SelectFolderHandlers {
+    void onMouseClicked(final MouseEvent mouseEvent);
+}
@@ -3,7 +3,10 @@ module io.github.gchape.pgnalyzefx {
 
     requires atlantafx.base;
     requires javafx.controls;
-    requires java.logging;
+    requires java.management;
+    requires com.github.luben.zstd_jni;
+    requires org.apache.commons.compress;
 
     exports io.github.gchape;
+    exports io.github.gchape.metrics to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package io.github.gchape;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnalyzeCliTest {
+    private static final String PGN = """
+            [Event "Good"]
+            [White "A"]
+            [Black "B"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            [Event "Bad"]
+            [White "C"]
+            [Black "D"]
+            [Result "*"]
+
+            1. e4 e5 2. Ke3 *
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Path pgn() throws IOException {
+        return Files.writeString(directory.resolve("games.pgn"), PGN);
+    }
+
+    /**
+     * Test that every game gets one NDJSON record, with the failing ply and reason for invalid games.
+     */
+    @Test
+    void writesOneRecordPerGame() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        int code = PgnalyzeCli.run(new String[]{"--workers", "2", pgn().toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        assertEquals(0, code);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.matches(
+                "\\{\"id\":0,\"source\":0,\"valid\":true,\"headers\":\\{.*\"Event\":\"Good\".*}}")), lines::toString);
+        assertTrue(lines.stream().anyMatch(line -> line.matches(
+                "\\{\"id\":1,\"source\":0,\"valid\":false,\"errorPly\":3,\"errorReason\":\".+\",\"headers\":\\{.*\"Event\":\"Bad\".*}}")),
+                lines::toString);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("2 games, 1 invalid"));
+    }
+
+    /**
+     * Test that every game gets one line on the output and the summary goes to the error stream.
+     */
+    @Test
+    void writesOneLinePerGame() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        int code = PgnalyzeCli.run(new String[]{"--workers", "2", "--format", "tsv", pgn().toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        assertEquals(0, code);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().sorted().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.stream().anyMatch(line -> line.endsWith("\ttrue\tGood\tA\tB\t1-0")), lines::toString);
+        assertTrue(lines.stream().anyMatch(line -> line.endsWith("\tfalse\tBad\tC\tD\t*")), lines::toString);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("2 games, 1 invalid"));
+    }
+
+    /**
+     * Test that directories are searched for PGN files, which are then reported one by one.
+     */
+    @Test
+    void analyzesDirectories() throws IOException {
+        Files.createDirectories(directory.resolve("a/b"));
+        Files.writeString(directory.resolve("a/one.pgn"), PGN);
+        Files.writeString(directory.resolve("a/b/two.pgn"), PGN);
+        Files.writeString(directory.resolve("a/b/skipped.txt"), PGN);
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        int code = PgnalyzeCli.run(new String[]{directory.resolve("a").toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        String summary = err.toString(StandardCharsets.UTF_8);
+        assertEquals(0, code);
+        assertEquals(4, out.toString(StandardCharsets.UTF_8).lines().count());
+        assertTrue(summary.contains("one.pgn: 2 games"), summary);
+        assertTrue(summary.contains("two.pgn: 2 games"), summary);
+        assertTrue(summary.contains("4 games, 2 invalid"), summary);
+        assertTrue(summary.contains("2 file(s)"), summary);
+    }
+
+    /**
+     * Test that an archive written by one run reports the same results when given as input to the next.
+     */
+    @Test
+    void reloadsArchives() throws IOException {
+        Path archive = directory.resolve("games.pgna");
+        var first = new ByteArrayOutputStream();
+        var second = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        assertEquals(0, PgnalyzeCli.run(
+                new String[]{"--format", "tsv", "--archive", archive.toString(), pgn().toString()},
+                new PrintStream(first, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8)));
+        assertEquals(0, PgnalyzeCli.run(new String[]{"--format", "tsv", archive.toString()},
+                new PrintStream(second, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8)));
+
+        assertEquals(withoutIds(first), withoutIds(second));
+        assertEquals(2, err.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.startsWith("2 games, 1 invalid")).count());
+    }
+
+    /**
+     * Test that a run with a cache writes a sidecar file and that the next run reports the same results from it.
+     */
+    @Test
+    void reusesCachedResults() throws IOException {
+        Path pgn = pgn();
+        var first = new ByteArrayOutputStream();
+        var second = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        for (var out : List.of(first, second)) {
+            assertEquals(0, PgnalyzeCli.run(new String[]{"--format", "tsv", "--cache", pgn.toString()},
+                    new PrintStream(out, true, StandardCharsets.UTF_8),
+                    new PrintStream(err, true, StandardCharsets.UTF_8)));
+        }
+
+        assertTrue(Files.exists(directory.resolve("games.pgn.cache")));
+        assertEquals(withoutIds(first), withoutIds(second));
+    }
+
+    /**
+     * Test that games repeated across input files are reported once each and left out with {@code skip}.
+     */
+    @Test
+    void skipsDuplicateGames() throws IOException {
+        Path copy = Files.writeString(directory.resolve("copy.pgn"), PGN);
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        assertEquals(0, PgnalyzeCli.run(new String[]{"--format", "tsv", "--dedup", "skip", pgn().toString(),
+                        copy.toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8)));
+
+        assertEquals(2, out.toString(StandardCharsets.UTF_8).lines().count());
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("2 duplicate(s) of 4 games checked, skipped"),
+                err::toString);
+    }
+
+    /**
+     * Test that only the games the filter accepts are reported.
+     */
+    @Test
+    void filtersGamesByHeaders() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        assertEquals(0, PgnalyzeCli.run(new String[]{"--format", "tsv", "--filter", "White != A & (Result = 1-0 | Black ~ d)",
+                        pgn().toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("\t0\tfalse\tBad\tC\tD\t*"), withoutIds(out));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("1 game(s) filtered out"), err::toString);
+    }
+
+    private static List<String> withoutIds(ByteArrayOutputStream out) {
+        return out.toString(StandardCharsets.UTF_8).lines().map(line -> line.substring(line.indexOf('\t'))).sorted()
+                .toList();
+    }
+
+    /**
+     * Test that bad arguments print the usage and exit with code 2.
+     */
+    @Test
+    void rejectsBadArguments() {
+        var err = new ByteArrayOutputStream();
+        var stream = new PrintStream(err, true, StandardCharsets.UTF_8);
+
+        assertEquals(2, PgnalyzeCli.run(new String[]{}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--workers"}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--bogus", "x.pgn"}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--format", "xml", "x.pgn"}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--metrics", "-1", "x.pgn"}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--dedup", "drop", "x.pgn"}, System.out, stream));
+        assertEquals(2, PgnalyzeCli.run(new String[]{"--filter", "White ==", "x.pgn"}, System.out, stream));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage:"));
+    }
+
+    /**
+     * Test that a headless run in a fresh JVM never loads a JavaFX class.
+     */
+    @Test
+    void loadsNoJavaFxClass() throws IOException, InterruptedException {
+        Path output = directory.resolve("results.ndjson");
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-verbose:class",
+                "-cp", Path.of("target", "classes").toAbsolutePath().toString(),
+                PgnalyzeCli.class.getName(),
+                "--output", output.toString(),
+                pgn().toString())
+                .redirectErrorStream(true)
+                .start();
+
+        String log = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertEquals(0, process.waitFor(), log);
+        assertEquals(2, Files.readAllLines(output).size());
+        assertFalse(log.contains("javafx."), "JavaFX was loaded");
+    }
+}
@@ -0,0 +1,246 @@
+package io.github.gchape.controller.logic;
+
+import com.github.luben.zstd.Zstd;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedInputTest {
+    private static final String GAME = """
+            [Event "Game %d"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            """;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] pgn(int games) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < games; i++) text.append(GAME.formatted(i));
+
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses into BGZF blocks of at most 64 KB, each a gzip member recording its own size, followed by the
+     * empty end-of-file block.
+     */
+    private static byte[] bgzf(byte[] bytes) {
+        var out = new ByteArrayOutputStream();
+        for (int start = 0; start < bytes.length; start += 60_000) {
+            out.writeBytes(bgzfBlock(Arrays.copyOfRange(bytes, start, Math.min(bytes.length, start + 60_000))));
+        }
+        out.writeBytes(bgzfBlock(new byte[0]));
+
+        return out.toByteArray();
+    }
+
+    private static byte[] bgzfBlock(byte[] chunk) {
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(chunk);
+        deflater.finish();
+        byte[] deflated = new byte[70_000];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+
+        var crc = new CRC32();
+        crc.update(chunk);
+
+        var block = ByteBuffer.allocate(18 + length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        return block.put(new byte[]{0x1F, (byte) 0x8B, 8, 4, 0, 0, 0, 0, 0, (byte) 0xFF})
+                .putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2)
+                .putShort((short) (block.capacity() - 1))
+                .put(deflated, 0, length)
+                .putInt((int) crc.getValue()).putInt(chunk.length)
+                .array();
+    }
+
+    /**
+     * Compresses into independent Zstandard frames of 100 KB, ending with a skippable frame the way the seekable
+     * format stores its seek table.
+     */
+    private static byte[] zstdFrames(byte[] bytes) {
+        var out = new ByteArrayOutputStream();
+        for (int start = 0; start < bytes.length; start += 100_000) {
+            out.writeBytes(Zstd.compress(Arrays.copyOfRange(bytes, start, Math.min(bytes.length, start + 100_000))));
+        }
+        out.writeBytes(ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(0x184D2A5E).putInt(4).putInt(42).array());
+
+        return out.toByteArray();
+    }
+
+    private static byte[] bzip2(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var bzip2 = new BZip2CompressorOutputStream(out)) {
+            bzip2.write(bytes);
+        }
+
+        return out.toByteArray();
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(directory.resolve(name), bytes);
+    }
+
+    private static byte[] readAll(Path file) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var buffer = ByteBuffer.allocate(10_000);
+
+        try (ReadableByteChannel channel = CompressedInput.open(file)) {
+            while (channel.read(buffer.clear()) >= 0) out.write(buffer.array(), 0, buffer.position());
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Test that the format is told by the first bytes, whatever the file name.
+     */
+    @Test
+    void detectsFormats() throws IOException {
+        byte[] text = pgn(3);
+        var files = List.of(
+                write("a.txt", text), write("b.pgn", gzip(text)), write("c.pgn", Zstd.compress(text)),
+                write("d.pgn", bzip2(text)));
+        var formats = List.of(CompressedInput.Format.PLAIN, CompressedInput.Format.GZIP,
+                CompressedInput.Format.ZSTD, CompressedInput.Format.BZIP2);
+
+        for (int i = 0; i < files.size(); i++) {
+            try (var channel = FileChannel.open(files.get(i))) {
+                assertEquals(formats.get(i), CompressedInput.format(channel));
+            }
+        }
+    }
+
+    /**
+     * Test that every format decompresses to the original bytes, including the parallel paths over several
+     * segments, which use incompressible data so that they cover several megabytes of input.
+     */
+    @Test
+    void decompressesEveryFormat() throws IOException {
+        byte[] text = pgn(2_000);
+        byte[] noise = new byte[3 * CompressedInput.SEGMENT_SIZE + 12_345];
+        new SplittableRandom(1).nextBytes(noise);
+
+        for (byte[] bytes : List.of(text, noise)) {
+            assertArrayEquals(bytes, readAll(write("plain", bytes)));
+            assertArrayEquals(bytes, readAll(write("gzip", gzip(bytes))));
+            assertArrayEquals(bytes, readAll(write("multi.gz", concat(gzip(Arrays.copyOf(bytes, 1000)),
+                    gzip(Arrays.copyOfRange(bytes, 1000, bytes.length))))));
+            assertArrayEquals(bytes, readAll(write("bgzf", bgzf(bytes))));
+            assertArrayEquals(bytes, readAll(write("zstd", Zstd.compress(bytes))));
+            assertArrayEquals(bytes, readAll(write("frames.zst", zstdFrames(bytes))));
+            assertArrayEquals(bytes, readAll(write("bzip2", bzip2(bytes))));
+        }
+    }
+
+    /**
+     * Test that a frame too large to decompress in memory, behind small ones, is streamed in its turn.
+     */
+    @Test
+    void streamsLargeFrames() throws IOException {
+        byte[] text = pgn(2_000);
+        byte[] noise = new byte[CompressedInput.MAX_PARALLEL_FRAME + 12_345];
+        new SplittableRandom(1).nextBytes(noise);
+
+        byte[] large = Zstd.compress(noise);
+        assertTrue(large.length > CompressedInput.MAX_PARALLEL_FRAME);
+
+        byte[] file = concat(concat(Zstd.compress(Arrays.copyOf(text, 1000)), large),
+                zstdFrames(Arrays.copyOfRange(text, 1000, text.length)));
+        assertArrayEquals(concat(concat(Arrays.copyOf(text, 1000), noise), Arrays.copyOfRange(text, 1000, text.length)),
+                readAll(write("large.zst", file)));
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+
+        return joined;
+    }
+
+    /**
+     * Test that only files made of independent pieces are cut into segments.
+     */
+    @Test
+    void findsIndependentPieces() throws IOException {
+        byte[] text = pgn(500);
+
+        try (var bgzf = FileChannel.open(write("bgzf", bgzf(text)));
+             var gzip = FileChannel.open(write("gzip", gzip(text)));
+             var frames = FileChannel.open(write("frames.zst", zstdFrames(text)))) {
+            assertTrue(CompressedInput.bgzfBlockSize(bgzf, 0) > 0);
+            assertEquals(0, CompressedInput.bgzfBlockSize(gzip, 0));
+
+            long offset = 0;
+            int count = 0;
+            while (offset < frames.size()) {
+                offset += CompressedInput.zstdFrameSize(frames, offset);
+                count++;
+            }
+            assertEquals(offset, frames.size());
+            assertEquals((text.length + 99_999) / 100_000 + 1, count);
+        }
+    }
+
+    /**
+     * Test that the parser yields the same games from a compressed file, sequentially and in parallel.
+     */
+    @Test
+    void parserReadsCompressedFiles() throws IOException {
+        byte[] text = pgn(1_000);
+
+        for (Path file : List.of(write("games.pgn.gz", bgzf(text)), write("games.pgn.zst", zstdFrames(text)),
+                write("games.pgn.bz2", bzip2(text)))) {
+            var parser = new Parser(file.toFile());
+
+            assertEquals(1_000, StreamSupport.stream(parser.spliterator(), false).count(), file.toString());
+            assertEquals(1_000, parser.parallelStream(4).count(), file.toString());
+        }
+    }
+
+    /**
+     * Test that a truncated file fails the parser instead of ending early.
+     */
+    @Test
+    void truncatedFileFails() throws IOException {
+        byte[] gzip = gzip(pgn(1_000));
+        var file = write("cut.pgn.gz", Arrays.copyOf(gzip, gzip.length / 2));
+
+        assertThrows(UncheckedIOException.class, () -> new Parser(file.toFile()).forEach(game -> {
+        }));
+    }
+}
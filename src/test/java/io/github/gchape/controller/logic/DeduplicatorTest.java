@@ -0,0 +1,124 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeduplicatorTest {
+    private static final String GAME = """
+            [Event "Open %d"]
+            [Site "Here"]
+            [White "PlayerA"]
+            [Black "PlayerB"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            """;
+
+    @TempDir
+    Path directory;
+
+    private static String games(int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) text.append(GAME.formatted(i));
+
+        return text.toString();
+    }
+
+    private List<Game> parse(String name, String pgn, Deduplicator deduplicator) throws IOException {
+        var parser = new Parser(Files.writeString(directory.resolve(name), pgn).toFile());
+        parser.setDeduplicator(deduplicator);
+
+        List<Game> games = new ArrayList<>();
+        parser.forEach(games::add);
+        return games;
+    }
+
+    /**
+     * Test that the fingerprint ignores what databases format differently, but not the players or the moves.
+     */
+    @Test
+    void fingerprintIgnoresFormatting() {
+        long game = Deduplicator.fingerprint(Map.of("White", "Carlsen, Magnus", "Result", "1-0"),
+                "1. e4 e5 2. Nf3 Nc6 1-0");
+
+        assertEquals(game, Deduplicator.fingerprint(
+                Map.of("White", " carlsen,  MAGNUS ", "Result", "1-0", "ECO", "C44", "PlyCount", "4"),
+                "1.e4 {best by test} e5 2.Nf3! (2. f4 exf4) Nc6 $1 1-0"));
+        assertNotEquals(game, Deduplicator.fingerprint(Map.of("White", "Caruana, Fabiano", "Result", "1-0"),
+                "1. e4 e5 2. Nf3 Nc6 1-0"));
+        assertNotEquals(game, Deduplicator.fingerprint(Map.of("White", "Carlsen, Magnus", "Result", "1-0"),
+                "1. e4 e5 2. Nf3 Nf6 1-0"));
+    }
+
+    /**
+     * Test that duplicates are found within and across files, through the exact set once it has spilled several
+     * times and through a Bloom filter far too small to decide alone, and that the spilled files are deleted.
+     */
+    @Test
+    void skipsDuplicatesAcrossSpills() throws IOException {
+        try (var deduplicator = new Deduplicator(directory, Deduplicator.Mode.SKIP, 4, 8)) {
+            assertEquals(300, parse("a.pgn", games(300) + games(100), deduplicator).size());
+            assertEquals(50, parse("b.pgn", games(350), deduplicator).size());
+
+            assertEquals(750, deduplicator.games());
+            assertEquals(400, deduplicator.duplicates());
+            try (var files = Files.list(directory)) {
+                assertTrue(files.anyMatch(file -> file.getFileName().toString().endsWith(".run")));
+            }
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of("a.pgn", "b.pgn"), files.map(file -> file.getFileName().toString()).sorted()
+                    .toList());
+        }
+    }
+
+    /**
+     * Test that reported duplicates are still yielded, also from a parallel stream.
+     */
+    @Test
+    void reportsDuplicates() throws IOException {
+        try (var deduplicator = Deduplicator.create(directory, Deduplicator.Mode.REPORT)) {
+            var parser = new Parser(Files.writeString(directory.resolve("a.pgn"), games(500).repeat(3)).toFile());
+            parser.setDeduplicator(deduplicator);
+
+            assertEquals(1_500, parser.parallelStream(4).count());
+            assertEquals(1_000, deduplicator.duplicates());
+        }
+    }
+
+    /**
+     * Test that threads recording the same fingerprints at once find each of them new exactly once, across
+     * spills.
+     */
+    @Test
+    void countsExactlyUnderContention() throws IOException, InterruptedException {
+        try (var deduplicator = new Deduplicator(directory, Deduplicator.Mode.REPORT, 1 << 10, 256)) {
+            AtomicInteger fresh = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (long fingerprint = 0; fingerprint < 20_000; fingerprint++) {
+                        if (!deduplicator.isDuplicate(fingerprint * 0x9E3779B97F4A7C15L)) fresh.incrementAndGet();
+                    }
+                }));
+            }
+            for (Thread thread : threads) thread.join();
+
+            assertEquals(20_000, fresh.get());
+            assertEquals(160_000, deduplicator.games());
+            assertEquals(140_000, deduplicator.duplicates());
+        }
+    }
+}
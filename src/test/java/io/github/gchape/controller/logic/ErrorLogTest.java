@@ -0,0 +1,116 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ErrorLogTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that failures logged from many threads are all written, one line each.
+     */
+    @Test
+    void writesEveryFailure() throws IOException, InterruptedException {
+        Path file = directory.resolve("errors.tsv");
+        List<Thread> threads = new ArrayList<>();
+
+        try (var log = new ErrorLog(file, 1 << 16)) {
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        log.log(new ErrorLog.Failure(thread, i, 3, "Ke3", "NoPieceFoundException", "a\tb"));
+                    }
+                }));
+            }
+            for (Thread thread : threads) thread.join();
+
+            log.flush();
+            assertEquals(0, log.dropped());
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        Set<String> games = new HashSet<>();
+
+        assertEquals(20_000, lines.size());
+        for (String line : lines) {
+            assertTrue(line.endsWith("\t3\tKe3\tNoPieceFoundException\ta b"), line);
+            assertTrue(games.add(line.substring(0, line.indexOf('\t', line.indexOf('\t') + 1))), line);
+        }
+    }
+
+    /**
+     * Test that failures logged while the log closes are either written or counted as dropped, never lost.
+     */
+    @Test
+    void closeLosesNothing() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            var out = new StringWriter();
+            var log = new ErrorLog(() -> out, 1 << 16);
+            var start = new CountDownLatch(1);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 2_000; i++) log.log(new ErrorLog.Failure(0, i, 1, "e4", "Type", null));
+                }));
+            }
+
+            start.countDown();
+            log.close();
+            for (Thread thread : threads) thread.join();
+
+            long written = out.toString().lines().filter(line -> !line.startsWith("Dropped")).count();
+            assertEquals(8_000, written + log.dropped());
+        }
+    }
+
+    /**
+     * Test that a full buffer drops new failures instead of blocking, and counts them.
+     */
+    @Test
+    void dropsWhenFull() throws InterruptedException {
+        var opened = new CountDownLatch(1);
+        var out = new StringWriter();
+
+        var log = new ErrorLog(() -> {
+            opened.await();
+            return out;
+        }, 3);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i < 4, log.log(new ErrorLog.Failure(0, i, 1, null, "InvalidMoveException", null)));
+        }
+        assertEquals(6, log.dropped());
+
+        opened.countDown();
+        log.close();
+
+        assertEquals("""
+                0\t0\t1\t\tInvalidMoveException\t
+                0\t1\t1\t\tInvalidMoveException\t
+                0\t2\t1\t\tInvalidMoveException\t
+                0\t3\t1\t\tInvalidMoveException\t
+                Dropped 6 failures
+                """, out.toString());
+        assertFalse(log.log(new ErrorLog.Failure(0, 10, 1, null, "InvalidMoveException", null)));
+    }
+}
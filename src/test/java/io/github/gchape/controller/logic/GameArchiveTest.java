@@ -0,0 +1,246 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.GameResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameArchiveTest {
+    private static final String PGN = """
+            [Event "First"]
+            [White "PlayerA"]
+            [Black "PlayerB"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 1-0
+
+            [Event "Bad"]
+            [White "PlayerA"]
+            [Result "*"]
+
+            1. e4 e5 2. Ke3 *
+
+            [Event "Third"]
+            [White "PlayerB"]
+            [Black "PlayerA"]
+            [Result "0-1"]
+
+            1. d4 d5 2. c4 dxc4 3. e4 b5 4. a4 c6 5. axb5 cxb5 0-1
+            """;
+
+    @TempDir
+    Path directory;
+
+    private static Board board(Game game) {
+        try {
+            Field field = Game.class.getDeclaredField("board");
+            field.setAccessible(true);
+
+            return (Board) field.get(game);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Replays the games of a PGN file once, writing them to an archive, and returns their results in order.
+     */
+    private List<GameResult> archive(Path archive) throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), PGN);
+        List<GameResult> results = new ArrayList<>();
+
+        try (var writer = GameArchive.create(archive, true)) {
+            var parser = new Parser(pgn.toFile());
+            parser.setStrict(true);
+            parser.setSink(results::add);
+            parser.setArchive(writer);
+
+            parser.forEach(Game::run);
+            assertEquals(3, writer.size());
+        }
+
+        return results;
+    }
+
+    private static void assertSameResults(List<GameResult> expected, List<GameResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            GameResult a = expected.get(i), b = actual.get(i);
+
+            assertEquals(a.valid(), b.valid());
+            assertEquals(a.headers(), b.headers());
+            assertEquals(a.errorPly(), b.errorPly());
+            assertEquals(a.errorReason(), b.errorReason());
+        }
+    }
+
+    /**
+     * Test that an archive yields the games and results of the run that wrote it, invalid games included,
+     * whether or not the moves are replayed.
+     */
+    @Test
+    void reloadsTheSameResults() throws IOException {
+        Path file = directory.resolve("games.pgna");
+        List<GameResult> expected = archive(file);
+        assertFalse(expected.get(1).valid());
+
+        for (boolean replay : new boolean[]{true, false}) {
+            var archive = GameArchive.open(file);
+            List<GameResult> results = new ArrayList<>();
+            archive.setSink(results::add);
+            archive.setReplay(replay);
+
+            archive.forEach(Game::run);
+
+            assertTrue(archive.isStrict());
+            assertEquals(3, archive.size());
+            assertSameResults(expected, results);
+        }
+    }
+
+    /**
+     * Test that replaying archived moves reaches the same final position as replaying the text.
+     */
+    @Test
+    void replaysTheSamePositions() throws IOException {
+        Path file = directory.resolve("games.pgna");
+        archive(file);
+
+        var archive = GameArchive.open(file);
+        var parser = new Parser(Files.writeString(directory.resolve("again.pgn"), PGN).toFile());
+        var texts = new ArrayList<Game>();
+        parser.forEach(texts::add);
+
+        for (int i = 0; i < 3; i++) {
+            Game text = texts.get(i), stored = archive.game(i);
+            text.run();
+            stored.run();
+
+            Board expected = board(text), actual = board(stored);
+            assertEquals(expected.key(), actual.key());
+            assertEquals(expected.occupancy(true), actual.occupancy(true));
+            assertEquals(expected.occupancy(false), actual.occupancy(false));
+        }
+    }
+
+    /**
+     * Test that any game can be read through the index, in any order, and that the headers share the
+     * dictionary's strings.
+     */
+    @Test
+    void readsAnyGame() throws IOException {
+        Path file = directory.resolve("games.pgna");
+        archive(file);
+        var archive = GameArchive.open(file);
+
+        List<Map<String, String>> headers = new ArrayList<>();
+        archive.setSink(result -> headers.add(result.headers()));
+        for (int i : new int[]{2, 0, 1, 2}) archive.game(i).run();
+
+        assertEquals(List.of("Third", "First", "Bad", "Third"),
+                headers.stream().map(map -> map.get("Event")).toList());
+        assertSame(headers.get(0).get("White"), headers.get(1).get("Black"));
+        assertThrows(IndexOutOfBoundsException.class, () -> archive.game(3));
+    }
+
+    /**
+     * Test that several workers finishing games out of order still give an archive in file order, through the
+     * index and the iterator alike.
+     */
+    @Test
+    void keepsFileOrder() throws IOException, InterruptedException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) text.append(PGN.replace("First", "G" + i));
+        Path pgn = Files.writeString(directory.resolve("many.pgn"), text);
+        Path file = directory.resolve("many.pgna");
+
+        try (var writer = GameArchive.create(file, false)) {
+            var parser = new Parser(pgn.toFile());
+            parser.setArchive(writer);
+            new Pipeline(4, 8).run(List.of(new Pipeline.Source(pgn.toString(), parser)));
+        }
+
+        var archive = GameArchive.open(file);
+        assertEquals(1500, archive.size());
+
+        List<String> events = new ArrayList<>();
+        archive.setSink(result -> events.add(result.headers().get("Event")));
+        for (int i = 0; i < 500; i++) {
+            archive.game(3 * i).run();
+            assertEquals("G" + i, events.getLast());
+            archive.game(3 * i + 2).run();
+            assertEquals("Third", events.getLast());
+        }
+
+        events.clear();
+        archive.forEach(Game::run);
+        for (int i = 0; i < 500; i++) assertEquals(List.of("G" + i, "Bad", "Third"), events.subList(3 * i, 3 * i + 3));
+    }
+
+    /**
+     * Test that games from several files, with some filtered out, reload under the source and id they were
+     * written with rather than their position in the archive.
+     */
+    @Test
+    void keepsSourcesAndIds() throws IOException, InterruptedException {
+        Path file = directory.resolve("two.pgna");
+        List<String> expected = new ArrayList<>();
+        List<Pipeline.Source> sources = new ArrayList<>();
+
+        try (var writer = GameArchive.create(file, false)) {
+            for (int source = 0; source < 2; source++) {
+                var parser = new Parser(Files.writeString(directory.resolve(source + ".pgn"), PGN).toFile());
+                parser.setSource(source);
+                parser.setArchive(writer);
+                parser.setFilter(HeaderFilter.parse("Event != First"));
+                parser.setSink(result -> {
+                    synchronized (expected) {
+                        expected.add(result.source() + ":" + result.id() + ":" + result.headers().get("Event"));
+                    }
+                });
+                sources.add(new Pipeline.Source(source + ".pgn", parser));
+            }
+            new Pipeline(2, 8).run(sources);
+        }
+
+        var archive = GameArchive.open(file);
+        List<String> results = new ArrayList<>();
+        archive.setSink(result -> results.add(result.source() + ":" + result.id() + ":"
+                + result.headers().get("Event")));
+        archive.forEach(Game::run);
+
+        assertEquals(List.of("0:1:Bad", "0:2:Third", "1:1:Bad", "1:2:Third"), results);
+        assertEquals(results, expected.stream().sorted().toList());
+        assertEquals(4, archive.size());
+    }
+
+    /**
+     * Test that archives are told apart from PGN, and that a truncated archive does not open.
+     */
+    @Test
+    void rejectsIncompleteArchives() throws IOException {
+        Path file = directory.resolve("games.pgna");
+        archive(file);
+
+        try (var archive = FileChannel.open(file); var pgn = FileChannel.open(directory.resolve("games.pgn"))) {
+            assertTrue(GameArchive.isArchive(archive));
+            assertFalse(GameArchive.isArchive(pgn));
+        }
+
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = Files.write(directory.resolve("cut.pgna"), Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IOException.class, () -> GameArchive.open(truncated));
+    }
+}
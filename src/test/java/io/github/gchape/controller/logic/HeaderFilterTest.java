@@ -0,0 +1,82 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeaderFilterTest {
+    private static final Map<String, String> GAME = Map.of("White", "Carlsen, Magnus", "Black", "Nepomniachtchi, Ian",
+            "Date", "2021.12.03", "Result", "1-0", "WhiteElo", "2856", "Event", "World Championship");
+
+    @TempDir
+    Path directory;
+
+    private static boolean accepts(String expression, Map<String, String> headers) {
+        return HeaderFilter.parse(expression).test(headers);
+    }
+
+    /**
+     * Test each operator, value ordering, precedence and the empty value of missing tags.
+     */
+    @Test
+    void evaluatesExpressions() {
+        assertTrue(accepts("White = \"Carlsen, Magnus\"", GAME));
+        assertFalse(accepts("White = Carlsen", GAME));
+        assertTrue(accepts("White ~ carlsen & Event~CHAMPION", GAME));
+        assertTrue(accepts("Date >= 2021.01.01 & Date < 2022", GAME));
+        assertFalse(accepts("Date < 2021", GAME));
+        assertTrue(accepts("Date <= 2021.12.03 & Date > 2021.12.02", GAME));
+        assertTrue(accepts("WhiteElo > 900 & WhiteElo >= 2856 & WhiteElo < 10000", GAME));
+        assertTrue(accepts("Result = 0-1 | Result = 1-0 & !(Black != \"Nepomniachtchi, Ian\")", GAME));
+        assertFalse(accepts("(Result = 0-1 | Result = 1-0) & Round = 1", GAME));
+        assertTrue(accepts("Round != 1 & Round = \"\"", GAME));
+    }
+
+    /**
+     * Test that malformed expressions are rejected with the position of the error.
+     */
+    @Test
+    void rejectsMalformedExpressions() {
+        for (String expression : List.of("", "White", "White ==", "White = \"A", "(White = A", "White = A)",
+                "= A", "White = A &", "White ! A")) {
+            var e = assertThrows(IllegalArgumentException.class, () -> HeaderFilter.parse(expression), expression);
+            assertTrue(e.getMessage().contains(" at "), e.getMessage());
+        }
+    }
+
+    /**
+     * Test that raw headers compare like decoded ones, and that a parser drops rejected games and counts them.
+     */
+    @Test
+    void filtersParsedGames() throws IOException {
+        byte[] bytes = "[White \"Müller\"]\n[Date \"2020.??.??\"]".getBytes(StandardCharsets.UTF_8);
+        var raw = Headers.parse(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertTrue(accepts("White = Müller & Date >= 2020 & Date < 2021", raw));
+        assertTrue(accepts("White = Müller & Date >= 2020 & Date < 2021", Map.copyOf(raw)));
+
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            pgn.append("[Event \"E%d\"]\n[Result \"%s\"]\n\n1. e4 e5 %2$s\n\n".formatted(i, i % 3 == 0 ? "1-0" : "0-1"));
+        }
+        var parser = new Parser(Files.writeString(directory.resolve("games.pgn"), pgn).toFile());
+        var filter = HeaderFilter.parse("Result = 1-0");
+        parser.setFilter(filter);
+
+        List<String> events = new ArrayList<>();
+        parser.setSink(result -> events.add(result.headers().get("Event")));
+        parser.forEach(Game::run);
+        assertEquals(List.of("E0", "E3", "E6", "E9"), events);
+        assertEquals(6, filter.rejected());
+        assertEquals(4, parser.parallelStream(3).count());
+    }
+}
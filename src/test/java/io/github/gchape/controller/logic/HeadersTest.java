@@ -0,0 +1,62 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadersTest {
+    private static Headers parse(String text) {
+        byte[] bytes = ("\n\n" + text + "\n").getBytes(StandardCharsets.UTF_8);
+        return Headers.parse(ByteBuffer.wrap(bytes), 2, bytes.length - 1);
+    }
+
+    /**
+     * Test that tag pairs are found as {@code [Name "value"]} anywhere in the section, that malformed ones are
+     * skipped, and that a repeated tag keeps its last value.
+     */
+    @Test
+    void findsTagPairs() {
+        var headers = parse("""
+                [Event "Open"] [Site   "Here"]
+                [White "Müller, Jörg"]
+                [Bad"no space"]
+                [Round "1" ]
+                [Annotator ""]
+                [Event "Closed"]""");
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("Event", "Closed");
+        expected.put("Site", "Here");
+        expected.put("White", "Müller, Jörg");
+        expected.put("Annotator", "");
+
+        assertEquals(expected, headers);
+        assertEquals(List.of("Site", "White", "Annotator", "Event"), List.copyOf(headers.keySet()));
+        assertNull(headers.get("Round"));
+        assertFalse(headers.containsKey("Bad"));
+        assertTrue(headers.containsKey("Annotator"));
+        assertNull(headers.get(42));
+        assertThrows(UnsupportedOperationException.class, () -> headers.put("Black", "B"));
+    }
+
+    /**
+     * Test that names and common values are shared between games, while other values are not.
+     */
+    @Test
+    void internsCommonStrings() {
+        var a = parse("[White \"Carlsen, Magnus\"]\n[Date \"2024.01.01\"]");
+        var b = parse("[White \"Carlsen, Magnus\"]\n[Date \"2024.01.01\"]");
+
+        assertSame(a.get("White"), b.get("White"));
+        assertSame(a.keySet().iterator().next(), b.keySet().iterator().next());
+        assertEquals(a.get("Date"), b.get("Date"));
+        assertNotSame(a.get("Date"), b.get("Date"));
+        assertSame(a.get("Date"), a.get("Date"));
+    }
+}
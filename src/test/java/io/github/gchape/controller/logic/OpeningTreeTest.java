@@ -0,0 +1,132 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningTreeTest {
+    private static final String PGN = """
+            [Event "First"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            [Event "Second"]
+            [Result "1/2-1/2"]
+
+            1. e4 c5 2. Nf3 d6 1/2-1/2
+
+            [Event "Third"]
+            [Result "0-1"]
+
+            1. d4 d5 2. c4 e6 0-1
+
+            [Event "Bad"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Ke3 1-0
+            """;
+
+    @TempDir
+    Path directory;
+
+    private OpeningTree build(int maxPlies) throws IOException {
+        var tree = new OpeningTree(maxPlies);
+        var parser = new Parser(Files.writeString(directory.resolve("games.pgn"), PGN).toFile());
+        parser.setStrict(true);
+        parser.setOpeningTree(tree);
+
+        parser.forEach(Game::run);
+        return tree;
+    }
+
+    private static Board after(String... moves) {
+        Board board = new Board();
+        boolean isWhite = true;
+        for (String san : moves) {
+            board.make(SanDecoder.decode(board, san, 0, san.length(), isWhite, true), isWhite);
+            isWhite = !isWhite;
+        }
+
+        return board;
+    }
+
+    /**
+     * Test that each position counts the moves played from it and how those games ended, that invalid games are
+     * left out and that nothing past the depth is added.
+     */
+    @Test
+    void countsMovesAndResults() throws IOException {
+        var tree = build(2);
+
+        List<OpeningTree.Continuation> start = tree.continuations(new Board());
+        assertEquals(List.of("e2e4", "d2d4"), start.stream().map(OpeningTree.Continuation::uci).toList());
+        assertEquals(new OpeningTree.Continuation(start.get(0).move(), 2, 1, 1, 0), start.get(0));
+        assertEquals(75.0, start.get(0).score(true));
+        assertEquals(100.0, start.get(1).score(false));
+
+        assertEquals(List.of("c7c5", "e7e5"),
+                tree.continuations(after("e4")).stream().map(OpeningTree.Continuation::uci).toList());
+        assertEquals(List.of(), tree.continuations(after("e4", "e5")));
+        assertEquals(3, tree.size());
+    }
+
+    /**
+     * Test that a saved tree maps back to the same answers, and that other files are refused.
+     */
+    @Test
+    void mapsTheSavedTree() throws IOException {
+        var tree = build(OpeningTree.DEFAULT_MAX_PLIES);
+        Path file = directory.resolve("games.pgno");
+        tree.write(file);
+
+        var book = OpeningBook.open(file);
+        assertEquals(tree.size(), book.size());
+        assertEquals(OpeningTree.DEFAULT_MAX_PLIES, book.maxPlies());
+        for (Board board : List.of(new Board(), after("e4"), after("e4", "e5", "Nf3"), after("d4", "d5"),
+                after("e4", "e5", "Nf3", "Nc6", "Bb5", "a6"), after("a4"))) {
+            assertEquals(tree.continuations(board), book.continuations(board));
+        }
+
+        assertThrows(IOException.class, () -> OpeningBook.open(directory.resolve("games.pgn")));
+    }
+
+    /**
+     * Test that games added by several workers at once are all counted, and that an archive builds the same tree
+     * even when it is told not to replay.
+     */
+    @Test
+    void aggregatesConcurrently() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("many.pgn"), PGN.repeat(500));
+        var parallel = new OpeningTree(4);
+        var parser = new Parser(pgn.toFile());
+        parser.setOpeningTree(parallel);
+        Path archiveFile = directory.resolve("many.pgna");
+        try (var writer = GameArchive.create(archiveFile, false)) {
+            parser.setArchive(writer);
+            parser.parallelStream(4).forEach(Game::run);
+        }
+
+        var start = parallel.continuations(new Board());
+        assertEquals(1_500, start.stream().mapToInt(OpeningTree.Continuation::games).sum());
+        assertEquals(1_000, start.get(0).games());
+
+        var archived = new OpeningTree(4);
+        var archive = GameArchive.open(archiveFile);
+        archive.setReplay(false);
+        archive.setOpeningTree(archived);
+        archive.forEach(Game::run);
+
+        assertEquals(parallel.size(), archived.size());
+        for (Board board : List.of(new Board(), after("e4"), after("e4", "c5"), after("d4", "d5", "c4"))) {
+            assertEquals(parallel.continuations(board), archived.continuations(board));
+        }
+    }
+}
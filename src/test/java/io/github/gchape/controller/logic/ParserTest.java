@@ -0,0 +1,217 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserTest {
+    private static final String PGN = """
+            [Event "First"]
+            [White "PlayerA"]
+            [Black "PlayerB"]
+            [Result "1-0"]
+
+            1. e4 {best by test} e5 2. Nf3! Nc6 3. Bb5+ a6
+            4. Ba4 Nf6 1-0
+
+            [Event "Second"]
+            [Result "0-1"]
+
+            1. d4 d5 0-1
+            """;
+
+    @TempDir
+    Path directory;
+
+    private static Object getFieldReflectively(Game game, String name) {
+        try {
+            Field field = Game.class.getDeclaredField(name);
+            field.setAccessible(true);
+
+            return field.get(game);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException("Error accessing '" + name + "' field reflectively", e);
+        }
+    }
+
+    /**
+     * Joins the SAN and result tokens of a game's movetext the way the movetext reads once cleaned.
+     */
+    private static String tokens(Game game) {
+        String moves = (String) getFieldReflectively(game, "moves");
+        Tokenizer tokenizer = new Tokenizer().reset(moves);
+        StringBuilder joined = new StringBuilder();
+
+        for (int token = tokenizer.next(); token != Tokenizer.END; token = tokenizer.next()) {
+            if (token == Tokenizer.SAN || token == Tokenizer.RESULT) {
+                if (!joined.isEmpty()) joined.append(' ');
+                joined.append(moves, tokenizer.start(), tokenizer.end());
+            }
+        }
+
+        return joined.toString();
+    }
+
+    private List<Game> parse(String content) throws IOException {
+        Path file = directory.resolve("games.pgn");
+        Files.writeString(file, content);
+
+        List<Game> games = new ArrayList<>();
+        new Parser(file.toFile()).forEach(games::add);
+
+        return games;
+    }
+
+    /**
+     * Test that every game is yielded with its own headers and movetext.
+     */
+    @Test
+    void streamsGamesInFileOrder() throws IOException {
+        List<Game> games = parse(PGN);
+
+        assertEquals(2, games.size());
+        assertEquals(Map.of("Event", "First", "White", "PlayerA", "Black", "PlayerB", "Result", "1-0"),
+                getFieldReflectively(games.get(0), "headers"));
+        assertEquals("e4 e5 Nf3 Nc6 Bb5 a6 Ba4 Nf6 1-0", tokens(games.get(0)));
+        assertEquals(Map.of("Event", "Second", "Result", "0-1"), getFieldReflectively(games.get(1), "headers"));
+        assertEquals("d4 d5 0-1", tokens(games.get(1)));
+    }
+
+    /**
+     * Test that a game larger than the read buffer is still yielded whole.
+     */
+    @Test
+    void growsBufferForLargeGame() throws IOException {
+        String comment = "{" + "x".repeat(200_000) + "}";
+        List<Game> games = parse("[Event \"Long\"]\n\n1. e4 " + comment + " e5 *\n");
+
+        assertEquals(1, games.size());
+        assertEquals("e4 e5 *", tokens(games.getFirst()));
+    }
+
+    /**
+     * Test that Windows line endings, a byte order mark and a missing blank line between games are tolerated.
+     */
+    @Test
+    void toleratesLooseFormatting() throws IOException {
+        List<Game> games = parse("\uFEFF[Event \"A\"]\r\n\r\n1. e4 *\r\n[Event \"B\"]\r\n1. d4 *");
+
+        assertEquals(2, games.size());
+        assertEquals("e4 *", tokens(games.get(0)));
+        assertEquals(Map.of("Event", "B"), getFieldReflectively(games.get(1), "headers"));
+        assertEquals("d4 *", tokens(games.get(1)));
+    }
+
+    /**
+     * Test that the memory-mapped, chunk-parallel mode yields exactly the games the streaming mode yields.
+     */
+    @Test
+    void parallelStreamMatchesIterator() throws IOException {
+        Path file = directory.resolve("many.pgn");
+        Files.writeString(file, PGN.repeat(500));
+
+        Parser parser = new Parser(file.toFile());
+        List<String> expected = new ArrayList<>();
+        parser.forEach(game -> expected.add(tokens(game)));
+
+        List<String> actual = parser.parallelStream(7)
+                .map(ParserTest::tokens)
+                .collect(Collectors.toList());
+
+        assertEquals(1000, actual.size());
+        assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList());
+    }
+
+    /**
+     * Test that every game gets its position in the file as its id, in streaming and chunk-parallel mode alike,
+     * counting the games a filter drops.
+     */
+    @Test
+    void idsAreFilePositions() throws IOException {
+        Path file = directory.resolve("numbered.pgn");
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < 1000; i++) pgn.append("[Event \"G%d\"]\n\n1. e4 e5 *\n\n".formatted(i));
+        Files.writeString(file, pgn);
+
+        Parser parser = new Parser(file.toFile());
+        parser.setSource(3);
+        parser.setFilter(HeaderFilter.parse("Event != G7"));
+
+        List<Game> streamed = new ArrayList<>();
+        parser.forEach(streamed::add);
+        for (List<Game> games : List.of(streamed, parser.parallelStream(7).toList())) {
+            assertEquals(999, games.size());
+            for (Game game : games) {
+                int id = (int) getFieldReflectively(game, "id");
+                assertEquals("G" + id, ((Map<?, ?>) getFieldReflectively(game, "headers")).get("Event"));
+                assertEquals(3, getFieldReflectively(game, "source"));
+            }
+        }
+    }
+
+    /**
+     * Test that the ranges of a split file, run as sources of the same name, run every game once and are
+     * reported as one file.
+     */
+    @Test
+    void splitRangesFeedThePipeline() throws IOException, InterruptedException {
+        Path file = directory.resolve("many.pgn");
+        Files.writeString(file, PGN.repeat(500));
+
+        Parser parser = new Parser(file.toFile());
+        List<Integer> ids = Collections.synchronizedList(new ArrayList<>());
+        parser.setSink(result -> ids.add(result.id()));
+
+        List<Iterable<Game>> ranges = parser.split(4);
+        assertTrue(ranges.size() > 1);
+
+        List<Pipeline.Source> sources = new ArrayList<>();
+        for (Iterable<Game> range : ranges) sources.add(new Pipeline.Source(file.toString(), range));
+        var report = new Pipeline(4, 8).run(sources);
+
+        assertEquals(List.of(file.toString()), List.copyOf(report.sources().keySet()));
+        assertEquals(1000, report.sources().get(file.toString()).games());
+        assertEquals(IntStream.range(0, 1000).boxed().toList(), ids.stream().sorted().toList());
+    }
+
+    /**
+     * Test that several split files all start at once: a small file cut into its share of the workers finishes
+     * early instead of waiting for the ranges of a large file listed before it.
+     */
+    @Test
+    void splitFilesShareTheReaders() throws IOException, InterruptedException {
+        List<Path> files = List.of(Files.writeString(directory.resolve("large.pgn"), PGN.repeat(2000)),
+                Files.writeString(directory.resolve("small.pgn"), PGN.repeat(50)));
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        Pipeline pipeline = new Pipeline(4, 8);
+
+        List<Pipeline.Source> sources = new ArrayList<>();
+        for (int source = 0; source < files.size(); source++) {
+            Parser parser = new Parser(files.get(source).toFile());
+            parser.setSource(source);
+            parser.setSink(result -> order.add(result.source()));
+
+            List<Iterable<Game>> ranges = parser.split(pipeline.rangesPerFile(files.size()));
+            assertEquals(2, ranges.size());
+            for (Iterable<Game> range : ranges) sources.add(new Pipeline.Source(files.get(source).toString(), range));
+        }
+        pipeline.run(sources);
+
+        assertEquals(4_100, order.size());
+        assertEquals(100, Collections.frequency(order, 1));
+        assertTrue(order.lastIndexOf(1) < 2_000, "Small file finished at " + order.lastIndexOf(1));
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnFilesTest {
+    @TempDir
+    Path directory;
+
+    private Path touch(String name) throws IOException {
+        Path file = directory.resolve(name);
+        Files.createDirectories(file.getParent());
+
+        return Files.writeString(file, "");
+    }
+
+    /**
+     * Test that directories are walked at any depth for matching files, while files given directly are kept.
+     */
+    @Test
+    void expandsDirectories() throws IOException {
+        Path b = touch("b.pgn");
+        Path a = touch("a.PGN");
+        Path nested = touch("x/y/c.pgn");
+        Path compressed = touch("x/d.pgn.zst");
+        Path text = touch("notes.txt");
+        touch("x/readme.md");
+
+        assertEquals(List.of(a, b, compressed, nested),
+                PgnFiles.expand(List.of(directory), PgnFiles.DEFAULT_GLOB));
+        assertEquals(List.of(text, a, b, compressed, nested),
+                PgnFiles.expand(List.of(text, directory, b), PgnFiles.DEFAULT_GLOB));
+        assertEquals(List.of(text), PgnFiles.expand(List.of(directory), "*.txt"));
+    }
+
+    /**
+     * Test that a missing path is reported.
+     */
+    @Test
+    void rejectsMissingPaths() {
+        assertThrows(IOException.class, () -> PgnFiles.expand(List.of(directory.resolve("none")), "*.pgn"));
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+    /**
+     * A source of {@code size} identical games that counts how many were pulled.
+     */
+    private static Iterable<Runnable> source(int size, AtomicInteger pulled, Runnable game) {
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < size;
+            }
+
+            @Override
+            public Runnable next() {
+                pulled.incrementAndGet();
+                return game;
+            }
+        };
+    }
+
+    /**
+     * Test that every game runs exactly once, including games that throw.
+     */
+    @Test
+    void runsEveryGame() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger pulled = new AtomicInteger();
+
+        var summary = new Pipeline(4, 8).run(source(10_000, pulled, () -> {
+            if (runs.incrementAndGet() % 1000 == 0) throw new IllegalStateException("Bad game");
+        }));
+
+        assertEquals(10_000, summary.games());
+        assertEquals(10_000, runs.get());
+        assertTrue(summary.gamesPerSecond() > 0);
+    }
+
+    /**
+     * Test that the producer blocks once the queue is full while the workers are busy.
+     */
+    @Test
+    void producerBlocksWhenWorkersFallBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger pulled = new AtomicInteger();
+        Pipeline pipeline = new Pipeline(2, 4);
+
+        Thread producer = Thread.ofPlatform().start(() -> {
+            try {
+                pipeline.run(source(1_000, pulled, () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Thread.sleep(200);
+        assertTrue(pulled.get() <= pipeline.workers() + pipeline.capacity() + 1, "Pulled " + pulled.get());
+        assertEquals(Thread.State.WAITING, producer.getState());
+
+        release.countDown();
+        producer.join(10_000);
+        assertEquals(1_000, pulled.get());
+    }
+
+    /**
+     * Test that every source is counted on its own and in the total.
+     */
+    @Test
+    void reportsEverySource() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        List<Pipeline.Source> sources = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            sources.add(new Pipeline.Source("file" + i, source(i * 100, new AtomicInteger(), runs::incrementAndGet)));
+        }
+
+        var report = new Pipeline(2, 4).run(sources);
+
+        assertEquals(1_500, runs.get());
+        assertEquals(1_500, report.total().games());
+        assertEquals(List.of("file1", "file2", "file3", "file4", "file5"), List.copyOf(report.sources().keySet()));
+        for (int i = 1; i <= 5; i++) assertEquals(i * 100, report.sources().get("file" + i).games());
+    }
+
+    /**
+     * Test that small sources finish long before a huge one started at the same time, instead of waiting
+     * behind it.
+     */
+    @Test
+    void sourcesShareTheWorkers() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Pipeline.Source> sources = new ArrayList<>();
+
+        sources.add(new Pipeline.Source("huge", source(20_000, new AtomicInteger(), () -> order.add("huge"))));
+        for (int i = 0; i < 3; i++) {
+            String name = "small" + i;
+            sources.add(new Pipeline.Source(name, source(200, new AtomicInteger(), () -> order.add(name))));
+        }
+
+        new Pipeline(4, 8).run(sources);
+
+        int lastSmall = 0;
+        for (int i = 0; i < order.size(); i++) {
+            if (order.get(i).startsWith("small")) lastSmall = i;
+        }
+        assertEquals(20_600, order.size());
+        assertTrue(lastSmall < 2_000, "Small sources finished at " + lastSmall);
+    }
+
+    /**
+     * Test that a failing source does not stop the others and its failure is rethrown at the end.
+     */
+    @Test
+    void failingSourceDoesNotStopTheOthers() {
+        AtomicInteger runs = new AtomicInteger();
+        Iterable<Runnable> broken = () -> {
+            throw new UncheckedIOException(new IOException("Unreadable"));
+        };
+
+        var thrown = assertThrows(UncheckedIOException.class, () -> new Pipeline(2, 4).run(List.of(
+                new Pipeline.Source("broken", broken),
+                new Pipeline.Source("good", source(300, new AtomicInteger(), runs::incrementAndGet)))));
+
+        assertEquals("Unreadable", thrown.getCause().getMessage());
+        assertEquals(300, runs.get());
+    }
+
+    /**
+     * Test that the pool size and queue capacity are validated.
+     */
+    @Test
+    void rejectsEmptyPool() {
+        assertThrows(IllegalArgumentException.class, () -> new Pipeline(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Pipeline(1, 0));
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.GameResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionIndexTest {
+    private static final String PGN = """
+            [Event "First"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            [Event "Second"]
+            [Result "1/2-1/2"]
+
+            1. Nf3 Nc6 2. e4 e5 1/2-1/2
+
+            [Event "Third"]
+            [Result "0-1"]
+
+            1. d4 d5 2. c4 e6 0-1
+
+            [Event "Bad"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Ke3 1-0
+            """;
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String AFTER_E4_E5_NF3_NC6 = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq -";
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Replays the games of a PGN text into an index and returns the result id of each game by event.
+     */
+    private Map<String, Integer> index(String pgn, Path file, int bufferPairs) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        var parser = new Parser(Files.writeString(directory.resolve("games.pgn"), pgn).toFile());
+        parser.setStrict(true);
+        parser.setSink(result -> ids.put(result.headers().get("Event"), result.id()));
+
+        try (var writer = PositionIndex.create(file, bufferPairs)) {
+            parser.setPositionIndex(writer);
+            parser.forEach(Game::run);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Test that a FEN finds every valid game that reached it, at the ply it was reached, whatever the move
+     * order, and that invalid games and unknown positions find nothing.
+     */
+    @Test
+    void findsGamesByFen() throws IOException {
+        Path file = directory.resolve("games.pgnp");
+        Map<String, Integer> ids = index(PGN, file, PositionIndex.Writer.BUFFER_PAIRS);
+
+        try (var index = PositionIndex.open(file)) {
+            assertEquals(6 + 4 + 4 + 3, index.pairs());
+            assertEquals(List.of(new PositionIndex.Hit(0, ids.get("First"), 0),
+                    new PositionIndex.Hit(0, ids.get("Second"), 0), new PositionIndex.Hit(0, ids.get("Third"), 0)),
+                    index.find(START));
+            assertEquals(List.of(new PositionIndex.Hit(0, ids.get("First"), 4),
+                    new PositionIndex.Hit(0, ids.get("Second"), 4)),
+                    index.find(AFTER_E4_E5_NF3_NC6));
+            assertEquals(List.of(new PositionIndex.Hit(0, ids.get("Third"), 4)),
+                    index.find("rnbqkbnr/ppp2ppp/4p3/3p4/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 0 3"));
+            assertEquals(List.of(), index.find("8/8/8/8/8/8/8/K6k w - -"));
+        }
+    }
+
+    /**
+     * Test that hits name games by source and position in the file, whatever order several workers finish them
+     * in, so two runs give the same index.
+     */
+    @Test
+    void namesGamesByFilePosition() throws IOException, InterruptedException {
+        Path a = Files.writeString(directory.resolve("a.pgn"), PGN.repeat(50));
+        Path b = Files.writeString(directory.resolve("b.pgn"), PGN.repeat(20));
+
+        List<List<PositionIndex.Hit>> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            Path file = directory.resolve("run" + run + ".pgnp");
+            try (var writer = PositionIndex.create(file, 97)) {
+                List<Pipeline.Source> sources = new ArrayList<>();
+                for (Path pgn : List.of(a, b)) {
+                    var parser = new Parser(pgn.toFile());
+                    parser.setSource(sources.size());
+                    parser.setPositionIndex(writer);
+                    sources.add(new Pipeline.Source(pgn.toString(), parser));
+                }
+                new Pipeline(4, 8).run(sources);
+            }
+
+            try (var index = PositionIndex.open(file)) {
+                runs.add(index.find(AFTER_E4_E5_NF3_NC6));
+            }
+        }
+
+        List<PositionIndex.Hit> expected = new ArrayList<>();
+        for (int source = 0; source < 2; source++) {
+            for (int copy = 0; copy < (source == 0 ? 50 : 20); copy++) {
+                expected.add(new PositionIndex.Hit(source, 4 * copy, 4));
+                expected.add(new PositionIndex.Hit(source, 4 * copy + 1, 4));
+            }
+        }
+        assertEquals(expected, runs.get(0));
+        assertEquals(expected, runs.get(1));
+    }
+
+    /**
+     * Test that an index spilled to many small runs, merged over several passes, equals one built in memory, and
+     * that no temporary file is left behind.
+     */
+    @Test
+    void mergesSpilledRuns() throws IOException {
+        String pgn = PGN.repeat(100);
+        Path whole = directory.resolve("whole.pgnp"), spilled = directory.resolve("spilled.pgnp");
+        index(pgn, whole, PositionIndex.Writer.BUFFER_PAIRS);
+        index(pgn, spilled, 13);
+
+        try (var a = PositionIndex.open(whole); var b = PositionIndex.open(spilled)) {
+            assertEquals(a.size(), b.size());
+            assertEquals(a.pairs(), b.pairs());
+            assertEquals(300, b.find(START).size());
+            assertEquals(a.find(AFTER_E4_E5_NF3_NC6).stream().map(PositionIndex.Hit::ply).toList(),
+                    b.find(AFTER_E4_E5_NF3_NC6).stream().map(PositionIndex.Hit::ply).toList());
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of("games.pgn", "spilled.pgnp", "whole.pgnp"),
+                    files.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+        assertThrows(IOException.class, () -> PositionIndex.open(directory.resolve("games.pgn")));
+    }
+
+    /**
+     * Test that pairs are sorted by unsigned key, then value, including long runs of equal keys.
+     */
+    @Test
+    void sortsPairs() {
+        var random = new SplittableRandom(7);
+        int n = 10_000;
+        long[] keys = new long[n], values = new long[n];
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            keys[i] = random.nextInt(4) == 0 ? random.nextLong() : random.nextLong(3) - 1;
+            values[i] = random.nextLong(1_000);
+            expected.add(new long[]{keys[i], values[i]});
+        }
+        expected.sort(Comparator.<long[]>comparingLong(pair -> pair[0] ^ Long.MIN_VALUE)
+                .thenComparingLong(pair -> pair[1]));
+
+        PositionIndex.Writer.sort(keys, values, 0, n);
+
+        for (int i = 0; i < n; i++) {
+            assertArrayEquals(expected.get(i), new long[]{keys[i], values[i]}, "at " + i);
+        }
+    }
+}
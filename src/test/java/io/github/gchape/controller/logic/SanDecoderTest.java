@@ -0,0 +1,167 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.exceptions.AmbiguousMoveException;
+import io.github.gchape.exceptions.IllegalMoveException;
+import io.github.gchape.exceptions.InvalidMoveException;
+import io.github.gchape.model.entities.Board;
+import io.github.gchape.model.entities.Move;
+import io.github.gchape.model.entities.Piece;
+import io.github.gchape.model.entities.Square;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SanDecoderTest {
+    private static final String CYCLE = "Nf3 Nf6 Ng1 Ng8";
+
+    private static int decode(Board board, String san, boolean isWhite) {
+        return SanDecoder.decode(board, san, 0, san.length(), isWhite);
+    }
+
+    private static int decodeStrict(Board board, String san, boolean isWhite) {
+        return SanDecoder.decode(board, san, 0, san.length(), isWhite, true);
+    }
+
+    /**
+     * Replays the knight shuffle once, tokenizing, decoding and applying every move.
+     */
+    private static void replayCycle(Board board, Tokenizer tokenizer) {
+        boolean isWhite = false;
+        tokenizer.reset(CYCLE);
+
+        for (int token = tokenizer.next(); token != Tokenizer.END; token = tokenizer.next()) {
+            isWhite = !isWhite;
+            board.make(SanDecoder.decode(board, CYCLE, tokenizer.start(), tokenizer.end(), isWhite), isWhite);
+        }
+    }
+
+    /**
+     * Test that strict decoding ignores a pinned knight when resolving SAN, while both knights reaching the
+     * target without a pin make the token ambiguous.
+     */
+    @Test
+    void strictResolvesAmbiguityWithPins() {
+        Board board = new Board();
+        board.getWhitePieces().clear();
+        board.getBlackPieces().clear();
+        board.getWhitePieces().put(Piece.KING, new HashSet<>(Set.of("e1")));
+        board.getWhitePieces().put(Piece.KNIGHT, new HashSet<>(Set.of("b1", "e2")));
+        board.getBlackPieces().put(Piece.KING, new HashSet<>(Set.of("h8")));
+
+        assertThrows(AmbiguousMoveException.class, () -> decodeStrict(board, "Nc3", true));
+
+        board.getBlackPieces().put(Piece.ROOK, new HashSet<>(Set.of("e8")));
+        assertEquals(new Square("b1").index(), Move.from(decodeStrict(board, "Nc3", true)));
+        assertThrows(IllegalMoveException.class, () -> decodeStrict(board, "Nec3", true));
+        assertEquals(new Square("e2").index(), Move.from(decode(board, "Nec3", true)));
+    }
+
+    /**
+     * Test that strict decoding rejects castling through check and moves that ignore a check, both of which
+     * lenient decoding accepts.
+     */
+    @Test
+    void strictRejectsIllegalMoves() {
+        Board board = new Board();
+        board.getWhitePieces().clear();
+        board.getBlackPieces().clear();
+        board.getWhitePieces().put(Piece.KING, new HashSet<>(Set.of("e1")));
+        board.getWhitePieces().put(Piece.ROOK, new HashSet<>(Set.of("h1")));
+        board.getWhitePieces().put(Piece.PAWN, new HashSet<>(Set.of("a2")));
+        board.getBlackPieces().put(Piece.KING, new HashSet<>(Set.of("h8")));
+        board.getBlackPieces().put(Piece.BISHOP, new HashSet<>(Set.of("c4")));
+
+        assertThrows(IllegalMoveException.class, () -> decodeStrict(board, "O-O", true));
+        assertTrue(Move.is(decode(board, "O-O", true), Move.CASTLE));
+
+        board.getBlackPieces().put(Piece.BISHOP, new HashSet<>());
+        board.getBlackPieces().put(Piece.QUEEN, new HashSet<>(Set.of("e7")));
+
+        assertThrows(IllegalMoveException.class, () -> decodeStrict(board, "a3", true));
+        assertEquals(new Square("a2").index(), Move.from(decode(board, "a3", true)));
+        assertThrows(IllegalMoveException.class, () -> decodeStrict(board, "Rxh5", true));
+        assertThrows(IllegalMoveException.class, () -> decodeStrict(board, "Qxe1", false));
+        assertEquals(new Square("e1").index(), Move.from(decodeStrict(board, "Kf1", true)));
+    }
+
+    /**
+     * Test that every field of a decoded move is packed as expected.
+     */
+    @Test
+    void packsMoveFields() {
+        Board board = new Board();
+
+        int move = decode(board, "e4", true);
+
+        assertEquals(new Square("e2").index(), Move.from(move));
+        assertEquals(new Square("e4").index(), Move.to(move));
+        assertEquals(Piece.PAWN, Move.piece(move));
+        assertTrue(Move.is(move, Move.DOUBLE_PUSH));
+        assertFalse(Move.is(move, Move.CAPTURE));
+        assertNull(Move.promotion(move));
+
+        int castle = decode(board, "O-O", false);
+
+        assertEquals(Piece.KING, Move.piece(castle));
+        assertTrue(Move.is(castle, Move.CASTLE));
+        assertEquals(new Square("g8").index(), Move.to(castle));
+    }
+
+    /**
+     * Test that an en passant capture is flagged only right after the double step.
+     */
+    @Test
+    void flagsEnPassant() {
+        Board board = new Board();
+        boolean isWhite = true;
+
+        for (String san : new String[]{"e4", "a6", "e5", "d5"}) {
+            board.make(decode(board, san, isWhite), isWhite);
+            isWhite = !isWhite;
+        }
+
+        int move = decode(board, "exd6", true);
+
+        assertTrue(Move.is(move, Move.EN_PASSANT));
+        board.make(move, true);
+        assertFalse(board.getBlackPieces().get(Piece.PAWN).contains("d5"));
+    }
+
+    /**
+     * Test that tokens that are not SAN are rejected.
+     */
+    @Test
+    void rejectsGarbage() {
+        Board board = new Board();
+
+        assertThrows(InvalidMoveException.class, () -> decode(board, "z9", true));
+        assertThrows(InvalidMoveException.class, () -> decode(board, "N", true));
+        assertThrows(InvalidMoveException.class, () -> decode(board, "Nf3=Q", true));
+    }
+
+    /**
+     * Test that the tokenize, decode and apply path allocates nothing per move once warmed up.
+     * Allocation is measured with the per-thread allocation counter of the HotSpot thread MX bean.
+     */
+    @Test
+    void replayAllocatesNothingPerMove() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Board board = new Board();
+        Tokenizer tokenizer = new Tokenizer();
+
+        for (int i = 0; i < 50_000; i++) replayCycle(board, tokenizer);
+
+        final int cycles = 250_000;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < cycles; i++) replayCycle(board, tokenizer);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated < 4096, allocated + " bytes allocated over " + 4 * cycles + " moves");
+    }
+}
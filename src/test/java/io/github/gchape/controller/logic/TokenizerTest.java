@@ -0,0 +1,89 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenizerTest {
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    private static final Pattern ANNOTATIONS_PATTERN = Pattern.compile("[+#?!]");
+    private static final Pattern MOVE_NUMBERS_PATTERN = Pattern.compile("\\d+\\.");
+    private static final Pattern COMMENT_PATTERN = Pattern.compile(";.*|\\{[^}]*}");
+
+    /**
+     * The four regex passes the parser used to clean movetext before the tokenizer replaced them.
+     */
+    private static String legacyClean(String moves) {
+        var __ = moves;
+        __ = COMMENT_PATTERN.matcher(__).replaceAll("");
+        __ = MOVE_NUMBERS_PATTERN.matcher(__).replaceAll("");
+        __ = ANNOTATIONS_PATTERN.matcher(__).replaceAll("");
+        __ = WHITESPACE_PATTERN.matcher(__).replaceAll(" ").trim();
+
+        return __;
+    }
+
+    private static List<String> tokens(String moves, int... types) {
+        Tokenizer tokenizer = new Tokenizer().reset(moves);
+        List<String> tokens = new ArrayList<>();
+
+        for (int token = tokenizer.next(); token != Tokenizer.END; token = tokenizer.next()) {
+            for (int type : types) {
+                if (token == type) tokens.add(moves.substring(tokenizer.start(), tokenizer.end()));
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Test that SAN and result tokens match what the legacy regex passes produced.
+     */
+    @Test
+    void matchesLegacyCleaning() {
+        String[] samples = {
+                "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 1-0",
+                "1.d4 {A queen's pawn} d5 2.c4 ; classical\n e6 3. Nc3 Nf6 1/2-1/2",
+                "1. e4 c5 2. Nf3! d6?! 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6 6. Bg5+ e6 *",
+                "45. Qxf7# 0-1",
+                "1. e4 e5 2. f4 exf4 3. Bc4 Qh4+ 4. Kf1 b5?? 5. Bxb5 Nf6 6. Nf3 Qh6 7. d3 Nh5 8. Nh4 Qg5",
+                "8. exd8=Q+ Kxd8 9. gxh8=N"
+        };
+
+        for (String sample : samples) {
+            assertEquals(legacyClean(sample),
+                    String.join(" ", tokens(sample, Tokenizer.SAN, Tokenizer.RESULT)),
+                    sample);
+        }
+    }
+
+    /**
+     * Test that comments, NAGs and variations are emitted as their own tokens and never leak into SAN tokens.
+     */
+    @Test
+    void emitsCommentsNagsAndVariations() {
+        String moves = "1. e4 $1 {[%clk 0:03:00]} 1... c5 (1... e5 2. Nf3 (2. f4) {gambit} Nc6) 2. Nf3 $14 d6 0-1";
+
+        assertEquals(List.of("e4", "c5", "Nf3", "d6"), tokens(moves, Tokenizer.SAN));
+        assertEquals(List.of("[%clk 0:03:00]"), tokens(moves, Tokenizer.COMMENT));
+        assertEquals(List.of("1", "14"), tokens(moves, Tokenizer.NAG));
+        assertEquals(List.of("(1... e5 2. Nf3 (2. f4) {gambit} Nc6)"), tokens(moves, Tokenizer.VARIATION));
+        assertEquals(List.of("0-1"), tokens(moves, Tokenizer.RESULT));
+    }
+
+    /**
+     * Test that one tokenizer can be reused across games.
+     */
+    @Test
+    void resetsBetweenGames() {
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertEquals(Tokenizer.SAN, tokenizer.reset("e4").next());
+        assertEquals(Tokenizer.END, tokenizer.next());
+        assertEquals(Tokenizer.RESULT, tokenizer.reset("*").next());
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.gchape.controller.logic;
+
+import io.github.gchape.metrics.Metrics;
+import io.github.gchape.model.entities.GameResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationCacheTest {
+    private static final String FIRST = """
+            [Event "First"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0
+
+            """;
+    private static final String BAD = """
+            [Event "Bad"]
+            [Result "*"]
+
+            1. e4 e5 2. Ke3 *
+
+            """;
+    private static final String THIRD = """
+            [Event "Third"]
+            [Result "0-1"]
+
+            1. d4 d5 2. c4 e6 0-1
+
+            """;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Runs every game of a file with a cache, and returns the results sorted by event.
+     */
+    private static List<GameResult> run(Path pgn, boolean strict) throws IOException {
+        List<GameResult> results = new ArrayList<>();
+
+        try (var cache = ValidationCache.open(ValidationCache.sidecar(pgn), strict)) {
+            var parser = new Parser(pgn.toFile());
+            parser.setStrict(strict);
+            parser.setSink(results::add);
+            parser.setCache(cache);
+
+            parser.forEach(Game::run);
+        }
+
+        results.sort(Comparator.comparing(result -> result.headers().get("Event")));
+        return results;
+    }
+
+    private static void assertSameResults(List<GameResult> expected, List<GameResult> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).valid(), actual.get(i).valid());
+            assertEquals(expected.get(i).headers(), actual.get(i).headers());
+            assertEquals(expected.get(i).errorPly(), actual.get(i).errorPly());
+            assertEquals(expected.get(i).errorReason(), actual.get(i).errorReason());
+        }
+    }
+
+    /**
+     * Test that a second run reports the same results without replaying any game, and that only new or changed
+     * games are replayed once the file grows.
+     */
+    @Test
+    void replaysOnlyNewGames() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), FIRST + BAD);
+
+        List<GameResult> first = run(pgn, false);
+        assertTrue(Files.exists(ValidationCache.sidecar(pgn)));
+
+        long replayed = Metrics.INSTANCE.getGamesReplayed();
+        long skipped = Metrics.INSTANCE.getGamesSkipped();
+        assertSameResults(first, run(pgn, false));
+        assertEquals(replayed, Metrics.INSTANCE.getGamesReplayed());
+        assertEquals(skipped + 2, Metrics.INSTANCE.getGamesSkipped());
+
+        Files.writeString(pgn, FIRST.replace("a6", "Nf6") + BAD + THIRD);
+        List<GameResult> third = run(pgn, false);
+        assertEquals(replayed + 2, Metrics.INSTANCE.getGamesReplayed());
+        assertEquals(skipped + 3, Metrics.INSTANCE.getGamesSkipped());
+        assertEquals(List.of("Bad", "First", "Third"), third.stream().map(r -> r.headers().get("Event")).toList());
+        assertFalse(third.get(0).valid());
+        assertEquals(3, third.get(0).errorPly());
+    }
+
+    /**
+     * Test that the sidecar file keeps only the games of the last run.
+     */
+    @Test
+    void dropsRemovedGames() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), FIRST + BAD + THIRD);
+        run(pgn, false);
+        assertEquals(3, ValidationCache.open(ValidationCache.sidecar(pgn), false).size());
+
+        Files.writeString(pgn, THIRD);
+        run(pgn, false);
+        assertEquals(1, ValidationCache.open(ValidationCache.sidecar(pgn), false).size());
+    }
+
+    /**
+     * Test that a filtered run keeps the cached results of the games it drops, and still drops games removed
+     * from the file.
+     */
+    @Test
+    void filterKeepsDroppedGames() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), FIRST + BAD + THIRD);
+        List<GameResult> expected = run(pgn, false);
+
+        Files.writeString(pgn, FIRST + BAD + THIRD + FIRST.replace("First", "Fourth"));
+        try (var cache = ValidationCache.open(ValidationCache.sidecar(pgn), false)) {
+            var parser = new Parser(pgn.toFile());
+            parser.setCache(cache);
+            parser.setFilter(HeaderFilter.parse("Event = Third"));
+            parser.forEach(Game::run);
+        }
+        assertEquals(3, ValidationCache.open(ValidationCache.sidecar(pgn), false).size());
+
+        Files.writeString(pgn, FIRST + BAD + THIRD);
+        long skipped = Metrics.INSTANCE.getGamesSkipped();
+        assertSameResults(expected, run(pgn, false));
+        assertEquals(skipped + 3, Metrics.INSTANCE.getGamesSkipped());
+    }
+
+    /**
+     * Test that an aborted run leaves the sidecar file as the last completed run wrote it.
+     */
+    @Test
+    void abortKeepsThePreviousFile() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), FIRST + BAD + THIRD);
+        run(pgn, false);
+        byte[] saved = Files.readAllBytes(ValidationCache.sidecar(pgn));
+
+        var cache = ValidationCache.open(ValidationCache.sidecar(pgn), false);
+        var parser = new Parser(pgn.toFile());
+        parser.setCache(cache);
+        parser.iterator().next().run();
+        cache.abort();
+        cache.close();
+
+        assertArrayEquals(saved, Files.readAllBytes(ValidationCache.sidecar(pgn)));
+        assertEquals(3, ValidationCache.open(ValidationCache.sidecar(pgn), false).size());
+    }
+
+    /**
+     * Test that results cached in one mode are not used in the other, where they may differ.
+     */
+    @Test
+    void ignoresTheOtherMode() throws IOException {
+        Path pgn = Files.writeString(directory.resolve("games.pgn"), FIRST + THIRD);
+        run(pgn, false);
+
+        assertEquals(2, ValidationCache.open(ValidationCache.sidecar(pgn), false).size());
+        assertEquals(0, ValidationCache.open(ValidationCache.sidecar(pgn), true).size());
+    }
+
+    /**
+     * Test that a file that is not a cache is reported rather than overwritten.
+     */
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = Files.writeString(directory.resolve("games.pgn.cache"), FIRST);
+
+        assertThrows(IOException.class, () -> ValidationCache.open(file, false));
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.gchape.controller.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XxHash64Test {
+    private static long hash(String text, long seed) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+        return XxHash64.hash(ByteBuffer.wrap(bytes), 0, bytes.length, seed);
+    }
+
+    /**
+     * Test against the reference implementation, for inputs below and above the 32-byte stripe.
+     */
+    @Test
+    void matchesReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash("", 0));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a", 0));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc", 0));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition", 0));
+        assertEquals(0x44582824CA1018B5L, hash("Nobody inspects the spammish repetition", 42));
+    }
+
+    /**
+     * Test that the hash depends only on the bytes of the range, not on the buffer's order or on what surrounds
+     * the range.
+     */
+    @Test
+    void hashesTheRangeOnly() {
+        byte[] bytes = "xx[Event \"Game\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1-0yy".getBytes(StandardCharsets.US_ASCII);
+        byte[] range = new byte[bytes.length - 4];
+        System.arraycopy(bytes, 2, range, 0, range.length);
+
+        long expected = XxHash64.hash(ByteBuffer.wrap(range), 0, range.length, 0);
+        assertEquals(expected, XxHash64.hash(ByteBuffer.wrap(bytes), 2, bytes.length - 2, 0));
+        assertEquals(expected,
+                XxHash64.hash(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN), 2, bytes.length - 2, 0));
+        assertEquals(expected, XxHash64.hash(ByteBuffer.allocateDirect(bytes.length).put(bytes), 2,
+                bytes.length - 2, 0));
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.gchape.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+    /**
+     * Test that every value falls into a bucket whose highest value is at most about 3% above it.
+     */
+    @Test
+    void bucketsAreTight() {
+        SplittableRandom random = new SplittableRandom(7);
+
+        for (long value = 0; value < 1_000; value++) {
+            assertBucketHolds(value);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertBucketHolds(random.nextLong(1L << 40));
+        }
+    }
+
+    private static void assertBucketHolds(long value) {
+        long highest = Histogram.highestValue(Histogram.bucket(value));
+
+        assertTrue(highest >= value, value + " above " + highest);
+        assertTrue(highest - value <= value / 32, value + " far below " + highest);
+    }
+
+    /**
+     * Test that percentiles of a uniform distribution land within the precision of the buckets.
+     */
+    @Test
+    void percentiles() {
+        Histogram histogram = new Histogram(4);
+        for (long value = 1; value <= 100_000; value++) histogram.record(value);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.count());
+        assertEquals(50_000.5, snapshot.mean(), 1e-9);
+        assertEquals(50_000, snapshot.percentile(50), 50_000 / 32.0);
+        assertEquals(99_000, snapshot.percentile(99), 99_000 / 32.0);
+        assertEquals(100_000, snapshot.max(), 100_000 / 32.0);
+        assertEquals(0, new Histogram(1).snapshot().percentile(99));
+    }
+
+    /**
+     * Test that values recorded concurrently are all counted.
+     */
+    @Test
+    void recordsFromManyThreads() throws InterruptedException {
+        Histogram histogram = new Histogram(2);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) histogram.record(i);
+            }));
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(80_000, histogram.snapshot().count());
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.gchape.metrics;
+
+import io.github.gchape.controller.logic.Parser;
+import io.github.gchape.controller.logic.Pipeline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    private static final String PGN = """
+            [Event "Good"]
+
+            1. e4 e5 2. Nf3 Nc6 1-0
+
+            [Event "Bad"]
+
+            1. e4 e5 2. Ke3 *
+            """;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Test that a run is counted by the parser, the games and the sink. Other tests share the counters, so only
+     * differences are checked.
+     */
+    @Test
+    void countsARun() throws Exception {
+        Path file = Files.writeString(directory.resolve("games.pgn"), PGN);
+        Metrics.Snapshot before = Metrics.INSTANCE.snapshot();
+
+        new Pipeline(2, 4).run(new Parser(file.toFile()));
+        Metrics.Snapshot after = Metrics.INSTANCE.snapshot();
+
+        assertTrue(after.gamesParsed() - before.gamesParsed() >= 2);
+        assertTrue(after.bytesParsed() - before.bytesParsed() >= Files.size(file) - 2);
+        assertTrue(after.gamesReplayed() - before.gamesReplayed() >= 2);
+        assertTrue(after.invalidGames() - before.invalidGames() >= 1);
+        assertTrue(after.plies() - before.plies() >= 7);
+        assertTrue(after.resultsDelivered() - before.resultsDelivered() >= 2);
+        assertTrue(after.replay().count() - before.replay().count() >= 2);
+        assertEquals(0, after.queueCapacity(), "The queue is no longer watched");
+        assertTrue(after.format(before).startsWith("games "), after.format(before));
+    }
+
+    /**
+     * Test that the metrics can be read over JMX once registered.
+     */
+    @Test
+    void readableOverJmx() throws Exception {
+        Metrics.INSTANCE.registerMBean();
+        Metrics.INSTANCE.registerMBean();
+
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName(Metrics.OBJECT_NAME);
+
+        assertEquals(Metrics.INSTANCE.getGamesReplayed(), (long) server.getAttribute(name, "GamesReplayed"));
+        assertTrue(((String) server.getAttribute(name, "Snapshot")).startsWith("games "));
+    }
+
+    /**
+     * Test that reports arrive periodically until the reporter is closed.
+     */
+    @Test
+    void reportsPeriodically() throws InterruptedException {
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        try (Metrics.Reporter ignored = Metrics.INSTANCE.report(lines::add, 10)) {
+            while (lines.size() < 2) Thread.sleep(5);
+        }
+        int reported = lines.size();
+        Thread.sleep(50);
+
+        assertTrue(lines.size() <= reported + 1);
+        assertTrue(lines.getFirst().contains("| replay p50 "), lines.getFirst());
+    }
+}
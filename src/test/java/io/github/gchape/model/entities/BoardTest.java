@@ -0,0 +1,69 @@
+package io.github.gchape.model.entities;
+
+import io.github.gchape.exceptions.NoPieceFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTest {
+    private Board board;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board();
+        board.getWhitePieces().clear();
+        board.getBlackPieces().clear();
+    }
+
+    /**
+     * Test that a queen blocked on its diagonal is not picked when another queen has a clear path.
+     */
+    @Test
+    void blockedQueenIsNotPicked() {
+        board.getWhitePieces().put(Piece.QUEEN, new HashSet<>(Set.of("a1", "h8")));
+        board.getWhitePieces().put(Piece.PAWN, new HashSet<>(Set.of("b2")));
+
+        assertEquals(new Square("h8"), board.findPiece(Piece.QUEEN, new Square("d4"), null, true, false));
+    }
+
+    /**
+     * Test that a bishop cannot move through a piece of either colour.
+     */
+    @Test
+    void blockedBishopIsNotFound() {
+        board.getWhitePieces().put(Piece.BISHOP, new HashSet<>(Set.of("c1")));
+        board.getBlackPieces().put(Piece.KNIGHT, new HashSet<>(Set.of("e3")));
+
+        assertThrows(NoPieceFoundException.class,
+                () -> board.findPiece(Piece.BISHOP, new Square("g5"), null, true, false));
+        assertTrue(board.isValidMove(new Square("c1"), new Square("e3"), Piece.BISHOP, true, true));
+        assertFalse(board.isValidMove(new Square("c1"), new Square("f4"), Piece.BISHOP, true, false));
+    }
+
+    /**
+     * Test that a pawn cannot jump over a piece with its double step.
+     */
+    @Test
+    void pawnDoubleStepNeedsFreePath() {
+        board.getWhitePieces().put(Piece.PAWN, new HashSet<>(Set.of("e2")));
+        board.getBlackPieces().put(Piece.KNIGHT, new HashSet<>(Set.of("e3")));
+
+        assertThrows(NoPieceFoundException.class,
+                () -> board.findPiece(Piece.PAWN, new Square("e4"), null, true, false));
+    }
+
+    /**
+     * Test the precomputed knight and king tables on corner and centre squares.
+     */
+    @Test
+    void leaperTables() {
+        assertEquals(2, Long.bitCount(Attacks.knight(new Square("a1").index())));
+        assertEquals(8, Long.bitCount(Attacks.knight(new Square("d4").index())));
+        assertEquals(3, Long.bitCount(Attacks.king(new Square("h8").index())));
+        assertEquals(8, Long.bitCount(Attacks.king(new Square("e5").index())));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.gchape.model.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveGeneratorTest {
+    /**
+     * Counts the leaf positions reachable in {@code depth} plies.
+     */
+    private static long perft(Board board, boolean isWhite, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, isWhite, moves);
+        if (depth == 1) return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            Board next = board.copy();
+            next.make(moves[i], isWhite);
+            nodes += perft(next, !isWhite, depth - 1);
+        }
+
+        return nodes;
+    }
+
+    private static Board empty() {
+        Board board = new Board();
+        board.getWhitePieces().clear();
+        board.getBlackPieces().clear();
+
+        return board;
+    }
+
+    /**
+     * Test the move counts from the initial position against the published perft figures.
+     */
+    @Test
+    void matchesPerftFromInitialPosition() {
+        assertEquals(20, perft(new Board(), true, 1));
+        assertEquals(400, perft(new Board(), true, 2));
+        assertEquals(8_902, perft(new Board(), true, 3));
+        assertEquals(197_281, perft(new Board(), true, 4));
+    }
+
+    /**
+     * Test that a pinned piece may only move along the pin and that a king in check must be answered.
+     */
+    @Test
+    void respectsPinsAndChecks() {
+        Board board = empty();
+        board.getWhitePieces().put(Piece.KING, new HashSet<>(Set.of("e1")));
+        board.getWhitePieces().put(Piece.ROOK, new HashSet<>(Set.of("e2")));
+        board.getWhitePieces().put(Piece.KNIGHT, new HashSet<>(Set.of("d2")));
+        board.getBlackPieces().put(Piece.KING, new HashSet<>(Set.of("h8")));
+        board.getBlackPieces().put(Piece.ROOK, new HashSet<>(Set.of("e8")));
+        board.getBlackPieces().put(Piece.BISHOP, new HashSet<>(Set.of("a5")));
+
+        int e2 = new Square("e2").index();
+        int d2 = new Square("d2").index();
+
+        assertFalse(board.isLegal(Move.of(e2, new Square("a2").index(), Piece.ROOK, 0), true));
+        assertTrue(board.isLegal(Move.of(e2, new Square("e5").index(), Piece.ROOK, 0), true));
+        assertFalse(board.isLegal(Move.of(d2, new Square("f3").index(), Piece.KNIGHT, 0), true));
+
+        board.getWhitePieces().put(Piece.ROOK, new HashSet<>());
+        assertTrue(board.isInCheck(true));
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, true, moves);
+        for (int i = 0; i < count; i++) {
+            assertTrue(Move.piece(moves[i]) == Piece.KING || Move.to(moves[i]) == new Square("e2").index(),
+                    "Move does not answer the check");
+        }
+    }
+
+    /**
+     * Test that castling needs empty squares between king and rook and no attacked square on the king's path.
+     */
+    @Test
+    void castlingNeedsSafePath() {
+        Board board = empty();
+        board.getWhitePieces().put(Piece.KING, new HashSet<>(Set.of("e1")));
+        board.getWhitePieces().put(Piece.ROOK, new HashSet<>(Set.of("a1", "h1")));
+        board.getBlackPieces().put(Piece.KING, new HashSet<>(Set.of("e8")));
+
+        assertTrue(board.isCastlingLegal(true, true));
+        assertTrue(board.isCastlingLegal(true, false));
+
+        board.getBlackPieces().put(Piece.ROOK, new HashSet<>(Set.of("f8")));
+        assertFalse(board.isCastlingLegal(true, true));
+        assertTrue(board.isCastlingLegal(true, false));
+
+        board.getBlackPieces().put(Piece.ROOK, new HashSet<>(Set.of("b8")));
+        assertTrue(board.isCastlingLegal(true, true));
+        assertTrue(board.isCastlingLegal(true, false), "Only the rook passes b1");
+
+        board.getBlackPieces().put(Piece.KNIGHT, new HashSet<>(Set.of("b1")));
+        assertFalse(board.isCastlingLegal(true, false));
+    }
+}
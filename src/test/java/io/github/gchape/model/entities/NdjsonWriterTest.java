@@ -0,0 +1,86 @@
+package io.github.gchape.model.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonWriterTest {
+    private static String write(final GameResult... results) {
+        var out = new ByteArrayOutputStream();
+        var writer = new NdjsonWriter(Channels.newChannel(out));
+
+        for (GameResult result : results) writer.accept(result);
+        writer.flush();
+
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test that valid games leave out the error fields and invalid games carry them.
+     */
+    @Test
+    void writesErrorFieldsOnlyForInvalidGames() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Event", "E");
+        headers.put("White", "W");
+
+        assertEquals("""
+                        {"id":1,"source":0,"valid":true,"headers":{"Event":"E","White":"W"}}
+                        {"id":20,"source":0,"valid":false,"errorPly":7,"errorReason":"No piece found","headers":{}}
+                        """,
+                write(new GameResult(1, true, headers), new GameResult(20, false, Map.of(), 7, "No piece found")));
+    }
+
+    /**
+     * Test that quotes, backslashes and control characters are escaped and other characters are UTF-8.
+     */
+    @Test
+    void escapesStrings() {
+        String value = "\"a\\b\"\n\r\t\b\f\u0001 é € 😀 \uD800";
+
+        assertEquals("{\"id\":3,\"source\":0,\"valid\":true,\"headers\":{\"Event\":"
+                        + "\"\\\"a\\\\b\\\"\\n\\r\\t\\b\\f\\u0001 é € 😀 �\"}}\n",
+                write(new GameResult(3, true, Map.of("Event", value))));
+    }
+
+    /**
+     * Test that records written concurrently from many threads come out as whole, distinct lines.
+     */
+    @Test
+    void keepsLinesWholeAcrossThreads() throws InterruptedException {
+        var out = new ByteArrayOutputStream();
+        var writer = new NdjsonWriter(Channels.newChannel(out));
+        String event = "x".repeat(500);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    writer.accept(new GameResult(thread * 2_000 + i, true, Map.of("Event", event)));
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.join();
+        writer.flush();
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        Set<String> ids = new HashSet<>();
+
+        assertEquals(16_000, lines.size());
+        for (String line : lines) {
+            assertTrue(line.startsWith("{\"id\":") && line.endsWith("\"Event\":\"" + event + "\"}}"), line);
+            assertTrue(ids.add(line.substring(6, line.indexOf(','))), line);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.gchape.model.entities;
+
+import io.github.gchape.model.entities.ResultStore.Column;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultIndexTest {
+    private static final String[] PLAYERS = {"Carlsen", "caruana", "Nakamura", "Ding", "ding", "Firouzja"};
+    private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};
+
+    private static GameResult result(int id, SplittableRandom random) {
+        return new GameResult(id % 3, id, random.nextBoolean(), Map.of(
+                "Event", "Event " + random.nextInt(20),
+                "White", PLAYERS[random.nextInt(PLAYERS.length)],
+                "Black", PLAYERS[random.nextInt(PLAYERS.length)],
+                "Result", RESULTS[random.nextInt(RESULTS.length)]), 0, null);
+    }
+
+    private static List<Integer> rows(ResultIndex index) {
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) rows.add(index.row(i));
+
+        return rows;
+    }
+
+    /**
+     * Test that rows keep their values and that header values are interned.
+     */
+    @Test
+    void storesColumns() {
+        ResultStore store = new ResultStore();
+        SplittableRandom random = new SplittableRandom(1);
+
+        for (int id = 1; id <= 5_000; id++) {
+            GameResult result = result(id, random);
+            int row = store.add(result);
+
+            assertEquals(id % 3, store.source(row));
+            assertEquals(id, store.id(row));
+            assertEquals(result.valid(), store.isValid(row));
+            assertEquals(result.headers().get("White"), store.get(Column.WHITE, row));
+        }
+
+        assertEquals(5_000, store.size());
+        assertTrue(store.distinctStrings() <= 20 + PLAYERS.length + RESULTS.length);
+        assertEquals("", store.get(Column.EVENT, store.add(new GameResult(0, true, Map.of()))));
+    }
+
+    /**
+     * Test that filtering keeps rows whose value contains the text, ignoring case, and sorting orders them with
+     * ties in store order.
+     */
+    @Test
+    void filtersAndSorts() {
+        ResultStore store = new ResultStore();
+        ResultIndex index = new ResultIndex(store);
+        SplittableRandom random = new SplittableRandom(2);
+        for (int id = 1; id <= 2_000; id++) store.add(result(id, random));
+
+        index.filter(Column.WHITE, "DING");
+        index.sort(Column.BLACK, false);
+
+        assertTrue(index.size() > 0);
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals("ding", store.get(Column.WHITE, index.row(i)).toLowerCase());
+
+            if (i > 0) {
+                int order = String.CASE_INSENSITIVE_ORDER.thenComparing(String::compareTo)
+                        .compare(store.get(Column.BLACK, index.row(i - 1)), store.get(Column.BLACK, index.row(i)));
+
+                assertTrue(order > 0 || order == 0 && index.row(i - 1) < index.row(i));
+            }
+        }
+
+        index.filter(null, null);
+        index.sort(null, true);
+        assertEquals(store.size(), index.size());
+        assertEquals(5, index.row(5));
+    }
+
+    /**
+     * Test that rows appended in batches are merged into a sorted, filtered order exactly as a full rebuild
+     * would place them, in either direction.
+     */
+    @Test
+    void mergesAppendedRows() {
+        for (var order : List.of(new ResultIndex.Order(Column.EVENT, true),
+                new ResultIndex.Order(Column.WHITE, false))) {
+            ResultStore store = new ResultStore();
+            ResultIndex index = new ResultIndex(store);
+            SplittableRandom random = new SplittableRandom(3);
+
+            index.filter(Column.RESULT, "1");
+            index.sort(order.column(), order.ascending());
+
+            for (int batch = 0; batch < 50; batch++) {
+                int before = index.size();
+                for (int i = random.nextInt(200); i > 0; i--) store.add(result(store.size() + 1, random));
+
+                int first = index.update();
+                assertTrue(first <= before);
+            }
+
+            ResultIndex rebuilt = new ResultIndex(store);
+            rebuilt.filter(Column.RESULT, "1");
+            rebuilt.sort(order.column(), order.ascending());
+
+            assertEquals(rows(rebuilt), rows(index), order.toString());
+        }
+    }
+}
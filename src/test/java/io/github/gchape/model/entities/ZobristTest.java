@@ -0,0 +1,117 @@
+package io.github.gchape.model.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZobristTest {
+    /**
+     * Plays the legal move between two squares, given as "g1f3".
+     */
+    private static void play(Board board, String fromTo) {
+        int from = new Square(fromTo.substring(0, 2)).index();
+        int to = new Square(fromTo.substring(2, 4)).index();
+        boolean isWhite = board.whiteToMove();
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(board, isWhite, moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.from(moves[i]) == from && Move.to(moves[i]) == to) {
+                board.make(moves[i], isWhite);
+                return;
+            }
+        }
+
+        fail("No legal move " + fromTo);
+    }
+
+    private static Board play(String... moves) {
+        Board board = new Board();
+        for (String move : moves) play(board, move);
+
+        return board;
+    }
+
+    /**
+     * Test that the incremental key always equals the key computed from scratch over random legal games, which
+     * between them cover captures, castling, en passant and promotions.
+     */
+    @Test
+    void incrementalKeyMatchesFullKey() {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] seen = new int[Move.PROMOTION << 1];
+
+        for (int game = 0; game < 200; game++) {
+            Board board = new Board();
+            assertEquals(Zobrist.of(board, true), board.key());
+
+            for (int ply = 0; ply < 300; ply++) {
+                boolean isWhite = board.whiteToMove();
+                int count = MoveGenerator.generate(board, isWhite, moves);
+                if (count == 0) break;
+
+                int move = moves[random.nextInt(count)];
+                board.make(move, isWhite);
+                seen[move & (Move.CAPTURE | Move.EN_PASSANT | Move.CASTLE | Move.PROMOTION)]++;
+
+                assertEquals(Zobrist.of(board, board.whiteToMove()), board.key());
+            }
+        }
+
+        assertTrue(seen[Move.CASTLE] > 0);
+        assertTrue(seen[Move.CAPTURE | Move.EN_PASSANT] > 0);
+        assertTrue(seen[Move.PROMOTION] + seen[Move.PROMOTION | Move.CAPTURE] > 0);
+    }
+
+    /**
+     * Test that transpositions share a key while positions differing only in side to move, castling rights or
+     * a possible en-passant capture do not.
+     */
+    @Test
+    void keyIdentifiesPositions() {
+        long start = new Board().key();
+
+        assertEquals(play("g1f3", "g8f6", "b1c3", "b8c6").key(), play("b1c3", "b8c6", "g1f3", "g8f6").key());
+        assertEquals(start, play("g1f3", "g8f6", "f3g1", "f6g8").key());
+        assertNotEquals(start, play("g1f3").key());
+        assertNotEquals(start, play("g1f3", "g8f6", "h1g1", "f6g8", "g1h1", "b8c6", "f3g1", "c6b8").key());
+
+        Board enPassant = play("e2e4", "b8c6", "e4e5", "c6b8", "g1f3", "d7d5");
+        Board samePieces = new Board();
+        samePieces.getWhitePieces().get(Piece.PAWN).remove("e2");
+        samePieces.getWhitePieces().get(Piece.PAWN).add("e5");
+        samePieces.getWhitePieces().get(Piece.KNIGHT).remove("g1");
+        samePieces.getWhitePieces().get(Piece.KNIGHT).add("f3");
+        samePieces.getBlackPieces().get(Piece.PAWN).remove("d7");
+        samePieces.getBlackPieces().get(Piece.PAWN).add("d5");
+        assertNotEquals(Zobrist.of(samePieces, true), enPassant.key());
+
+        Board doubleStep = play("e2e4");
+        Board singleSteps = play("e2e3", "g8f6", "e3e4", "f6g8");
+        assertEquals(singleSteps.key() ^ Zobrist.blackToMove(), doubleStep.key());
+    }
+
+    /**
+     * Test that a board set up from FEN has the key of the same position reached by moves, en passant included,
+     * and that malformed records are refused.
+     */
+    @Test
+    void fenGivesTheReplayedKey() {
+        assertEquals(new Board().key(),
+                Board.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1").key());
+        assertEquals(play("e2e4").key(),
+                Board.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").key());
+        assertEquals(play("e2e4", "b8c6", "e4e5", "c6b8", "g1f3", "d7d5").key(),
+                Board.fromFen("rnbqkbnr/ppp1pppp/8/3pP3/8/5N2/PPPP1PPP/RNBQKB1R w KQkq d6 0 4").key());
+        assertEquals(play("g1f3", "g8f6", "h1g1", "f6g8", "g1h1", "g8f6").key(),
+                Board.fromFen("rnbqkb1r/pppppppp/5n2/8/8/5N2/PPPPPPPP/RNBQKB1R w Qkq -").key());
+
+        for (String fen : new String[]{"8/8/8 w - -", "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq -", "8/8/8/8/8/8/8/K6k w X -"}) {
+            assertThrows(IllegalArgumentException.class, () -> Board.fromFen(fen), fen);
+        }
+    }
+}